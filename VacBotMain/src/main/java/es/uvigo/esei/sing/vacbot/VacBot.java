@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +18,7 @@ import com.beust.jcommander.IValueValidator;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.Parameters;
 import com.beust.jcommander.converters.FileConverter;
 import com.github.lalyos.jfiglet.FigletFont;
 
@@ -37,6 +39,8 @@ import es.uvigo.esei.sing.vacbot.settings.VacBotSettings;
 public final class VacBot {
 	private static final String WELCOME_BANNER;
 	private static final Logger LOGGER = LoggerFactory.getLogger(VacBot.class);
+	private static final String KNOWLEDGE_BASE_COMMAND_NAME = "kb";
+	private static final String KNOWLEDGE_BASE_ANALYZE_COMMAND_NAME = "analyze";
 
 	@Parameter(
 		converter = FileConverter.class, validateValueWith = SettingsFileParameterValidator.class,
@@ -100,7 +104,23 @@ public final class VacBot {
 	 */
 	private void run(final String[] args) {
 		// Parse the command line
+		final KnowledgeBaseAnalyzeCommand knowledgeBaseAnalyzeCommand = new KnowledgeBaseAnalyzeCommand();
 		final JCommander jCommander = new JCommander(this);
+
+		// JCommander doesn't accept a main parameter when commands are
+		// registered, and our main options take no values, so only register
+		// the commands if the first non-option argument is a command
+		final boolean commandRequested = Arrays.stream(args)
+			.filter((final String arg) -> !arg.startsWith("-"))
+			.findFirst()
+			.map(KNOWLEDGE_BASE_COMMAND_NAME::equals)
+			.orElse(false);
+
+		if (commandRequested) {
+			jCommander.addCommand(new KnowledgeBaseCommand());
+			jCommander.getCommands().get(KNOWLEDGE_BASE_COMMAND_NAME).addCommand(knowledgeBaseAnalyzeCommand);
+		}
+
 		jCommander.parse(args);
 		jCommander.setProgramName(VacBot.class.getSimpleName());
 
@@ -113,26 +133,21 @@ public final class VacBot {
 			System.out.println(WELCOME_BANNER);
 		}
 
-		final TextMessageDispatcher<? extends TextMessage, ? extends Object> messageDispatcher;
-		try {
-			final InputStream settingsStream;
+		if (commandRequested) {
+			final JCommander knowledgeBaseJCommander = jCommander.getCommands().get(KNOWLEDGE_BASE_COMMAND_NAME);
 
-			if (settingsFile == null) {
-				if (!quietMode) {
-					System.err.println("> Reading settings from the standard input stream...");
-				}
-
-				settingsStream = System.in;
+			if (KNOWLEDGE_BASE_ANALYZE_COMMAND_NAME.equals(knowledgeBaseJCommander.getParsedCommand())) {
+				analyzeKnowledgeBase(knowledgeBaseAnalyzeCommand.settingsFile);
 			} else {
-				if (!quietMode) {
-					System.err.println("> Reading settings from \"" + settingsFile + "\"...");
-				}
-
-				settingsStream = new FileInputStream(settingsFile);
+				knowledgeBaseJCommander.usage();
 			}
 
-			final VacBotSettings settings = SettingsFacade.loadFromInputStream(settingsStream);
-			System.err.println("> Read settings: " + settings);
+			return;
+		}
+
+		final TextMessageDispatcher<? extends TextMessage, ? extends Object> messageDispatcher;
+		try {
+			final VacBotSettings settings = loadSettings(settingsFile);
 
 			ResponseGenerator.initialize(settings);
 
@@ -176,6 +191,75 @@ public final class VacBot {
 		messageDispatcher.dispatchUntilInterrupted();
 	}
 
+	/**
+	 * Reads the application settings from the specified file, or the standard
+	 * input stream if no file is specified.
+	 *
+	 * @param settingsFile The file to read the settings from. It may be
+	 *                     {@code null}.
+	 * @return The read settings.
+	 * @throws FileNotFoundException If the settings file couldn't be opened.
+	 * @throws SettingsLoadException If the settings couldn't be loaded.
+	 */
+	private VacBotSettings loadSettings(final File settingsFile) throws FileNotFoundException, SettingsLoadException {
+		final InputStream settingsStream;
+
+		if (settingsFile == null) {
+			if (!quietMode) {
+				System.err.println("> Reading settings from the standard input stream...");
+			}
+
+			settingsStream = System.in;
+		} else {
+			if (!quietMode) {
+				System.err.println("> Reading settings from \"" + settingsFile + "\"...");
+			}
+
+			settingsStream = new FileInputStream(settingsFile);
+		}
+
+		final VacBotSettings settings = SettingsFacade.loadFromInputStream(settingsStream);
+		System.err.println("> Read settings: " + settings);
+
+		return settings;
+	}
+
+	/**
+	 * Computes the query optimizer statistics of the knowledge base configured in
+	 * the specified settings file, and stores them alongside the knowledge base.
+	 *
+	 * @param settingsFile The file to read the settings from. It may be
+	 *                     {@code null}.
+	 */
+	private void analyzeKnowledgeBase(final File settingsFile) {
+		try (final VacBotSettings settings = loadSettings(settingsFile)) {
+			final Path statisticsFile = settings.getKnowledgeBaseSettings().writeQueryOptimizerStatistics();
+
+			if (!quietMode) {
+				System.err.println(
+					"> Knowledge base statistics written to \"" + statisticsFile +
+					"\". Restart the bot to use them."
+				);
+			}
+		} catch (final FileNotFoundException | SettingsLoadException exc) {
+			if (!quietMode) {
+				System.err.println("! Couldn't load the application settings.");
+			}
+
+			LOGGER.error("Couldn't load the application settings", exc);
+
+			System.exit(1);
+		} catch (final Exception exc) {
+			if (!quietMode) {
+				System.err.println("! Couldn't compute the knowledge base statistics.");
+			}
+
+			LOGGER.error("Couldn't compute the knowledge base statistics", exc);
+
+			System.exit(3);
+		}
+	}
+
 	/**
 	 * Validates the settings file command line parameter.
 	 *
@@ -192,4 +276,34 @@ public final class VacBot {
 			}
 		}
 	}
+
+	/**
+	 * The command that groups knowledge base maintenance subcommands.
+	 *
+	 * @author Alejandro González García
+	 */
+	@Parameters(
+		commandNames = KNOWLEDGE_BASE_COMMAND_NAME,
+		commandDescription = "Knowledge base maintenance commands."
+	)
+	private static final class KnowledgeBaseCommand {}
+
+	/**
+	 * The command that computes the statistics the knowledge base query optimizer
+	 * uses to plan queries.
+	 *
+	 * @author Alejandro González García
+	 */
+	@Parameters(
+		commandNames = KNOWLEDGE_BASE_ANALYZE_COMMAND_NAME,
+		commandDescription = "Computes the predicate and object cardinalities of the knowledge base and stores " +
+			"them alongside it, so its query optimizer can plan queries better."
+	)
+	private static final class KnowledgeBaseAnalyzeCommand {
+		@Parameter(
+			converter = FileConverter.class, validateValueWith = SettingsFileParameterValidator.class,
+			description = "settings file"
+		)
+		private File settingsFile = null;
+	}
 }
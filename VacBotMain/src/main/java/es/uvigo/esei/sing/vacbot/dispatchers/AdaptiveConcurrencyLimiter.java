@@ -0,0 +1,237 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.dispatchers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits how many responses are generated concurrently, adapting the limit at
+ * runtime to the one that achieves the best throughput, according to the
+ * measured response generation latency.
+ * <p>
+ * The limit follows a gradient algorithm: the latency observed when few
+ * responses are being generated is taken as the no-load latency, and the ratio
+ * between it and the current latency tells whether concurrency is
+ * counterproductive because responses compete for the CPU or other resources.
+ * When the current latency is close to the no-load latency, the limit grows
+ * by its square root, to find more throughput. Otherwise, it shrinks
+ * proportionally to the ratio. The no-load latency is measured again every
+ * once in a while, in case the workload changes.
+ * </p>
+ * <p>
+ * Waiting for the limit does not block any thread: permits are handed out as
+ * futures, which are completed in arrival order as other permits are
+ * released.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ * @see <a href="https://github.com/Netflix/concurrency-limits">Netflix
+ *      concurrency limits library</a>
+ */
+final class AdaptiveConcurrencyLimiter implements ConcurrencyLimiterMXBean {
+	/**
+	 * How much the latency may exceed the no-load latency before the limit is
+	 * decreased.
+	 */
+	private static final double LATENCY_TOLERANCE = 2;
+	/**
+	 * How much a new limit estimate contributes to the current limit.
+	 */
+	private static final double SMOOTHING = 0.2;
+	/**
+	 * The number of latency samples after which the no-load latency is measured
+	 * again.
+	 */
+	private static final int NO_LOAD_LATENCY_SAMPLES = 1000;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Queue<CompletableFuture<Void>> waitingAcquisitions = new ArrayDeque<>();
+	private final int minimumLimit;
+	private final int maximumLimit;
+
+	private double limit;
+	private int inFlight = 0;
+	private long noLoadLatencyNanos = Long.MAX_VALUE;
+	private int samplesUntilNoLoadLatencyReset = NO_LOAD_LATENCY_SAMPLES;
+
+	/**
+	 * Creates a new adaptive concurrency limiter.
+	 *
+	 * @param initialLimit The initial concurrency limit.
+	 * @param minimumLimit The minimum concurrency limit.
+	 * @param maximumLimit The maximum concurrency limit.
+	 * @throws IllegalArgumentException If the limits are not positive, or are
+	 *                                  inconsistent.
+	 */
+	AdaptiveConcurrencyLimiter(final int initialLimit, final int minimumLimit, final int maximumLimit) {
+		if (minimumLimit < 1 || maximumLimit < minimumLimit) {
+			throw new IllegalArgumentException("The concurrency limits must be positive and consistent");
+		}
+
+		this.minimumLimit = minimumLimit;
+		this.maximumLimit = maximumLimit;
+		this.limit = Math.max(minimumLimit, Math.min(initialLimit, maximumLimit));
+	}
+
+	/**
+	 * Acquires a permit to generate a response without exceeding the concurrency
+	 * limit, as soon as one is available. The caller must call
+	 * {@link #release(long)} when the response is generated, or
+	 * {@link #release()} if it ends up not using the permit.
+	 *
+	 * @return A future that completes when the permit is acquired. It may
+	 *         already be complete. Otherwise, it is completed by the thread that
+	 *         releases another permit, so actions that depend on it should not
+	 *         block or take long.
+	 */
+	CompletableFuture<Void> acquireAsync() {
+		lock.lock();
+		try {
+			if (waitingAcquisitions.isEmpty() && inFlight < (int) limit) {
+				++inFlight;
+				return CompletableFuture.completedFuture(null);
+			}
+
+			final CompletableFuture<Void> permit = new CompletableFuture<>();
+			waitingAcquisitions.add(permit);
+
+			return permit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Accounts for a generated response, updating the concurrency limit with the
+	 * latency it took to generate it.
+	 *
+	 * @param latencyNanos The time it took to generate the response, in
+	 *                     nanoseconds.
+	 */
+	void release(final long latencyNanos) {
+		final List<CompletableFuture<Void>> grantedPermits;
+
+		lock.lock();
+		try {
+			final int previousInFlight = inFlight--;
+
+			if (--samplesUntilNoLoadLatencyReset < 1) {
+				noLoadLatencyNanos = Long.MAX_VALUE;
+				samplesUntilNoLoadLatencyReset = NO_LOAD_LATENCY_SAMPLES;
+			}
+			noLoadLatencyNanos = Math.max(Math.min(noLoadLatencyNanos, latencyNanos), 1);
+
+			final double gradient = Math.max(
+				0.5, Math.min(1, LATENCY_TOLERANCE * noLoadLatencyNanos / Math.max(latencyNanos, 1))
+			);
+
+			// Do not grow the limit if it is not being used, as that
+			// tells nothing about whether more concurrency is better
+			double newLimit = limit * gradient;
+			if (gradient >= 1 && previousInFlight * 2 >= limit) {
+				newLimit += Math.sqrt(limit);
+			}
+
+			limit = Math.max(minimumLimit, Math.min(
+				limit * (1 - SMOOTHING) + newLimit * SMOOTHING, maximumLimit
+			));
+
+			grantedPermits = grantPermits();
+		} finally {
+			lock.unlock();
+		}
+
+		completePermits(grantedPermits);
+	}
+
+	/**
+	 * Accounts for a permit that was acquired but not used to generate a
+	 * response, without updating the concurrency limit.
+	 */
+	void release() {
+		final List<CompletableFuture<Void>> grantedPermits;
+
+		lock.lock();
+		try {
+			--inFlight;
+			grantedPermits = grantPermits();
+		} finally {
+			lock.unlock();
+		}
+
+		completePermits(grantedPermits);
+	}
+
+	/**
+	 * Hands out permits to the waiting acquisitions, in arrival order, while the
+	 * concurrency limit allows it. The lock must be held by the calling thread.
+	 *
+	 * @return The permits that were granted, which must be completed once the
+	 *         lock is released.
+	 */
+	private List<CompletableFuture<Void>> grantPermits() {
+		List<CompletableFuture<Void>> grantedPermits = null;
+
+		while (!waitingAcquisitions.isEmpty() && inFlight < (int) limit) {
+			if (grantedPermits == null) {
+				grantedPermits = new ArrayList<>();
+			}
+
+			grantedPermits.add(waitingAcquisitions.poll());
+			++inFlight;
+		}
+
+		return grantedPermits;
+	}
+
+	/**
+	 * Completes the permits granted to waiting acquisitions, outside the lock, so
+	 * that the actions that depend on them can acquire or release permits too.
+	 *
+	 * @param grantedPermits The granted permits. It may be {@code null}.
+	 */
+	private static void completePermits(final List<CompletableFuture<Void>> grantedPermits) {
+		if (grantedPermits != null) {
+			for (final CompletableFuture<Void> permit : grantedPermits) {
+				permit.complete(null);
+			}
+		}
+	}
+
+	@Override
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long getNoLoadLatencyMillis() {
+		lock.lock();
+		try {
+			return noLoadLatencyNanos != Long.MAX_VALUE ? TimeUnit.NANOSECONDS.toMillis(noLoadLatencyNanos) : -1;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.dispatchers;
+
+/**
+ * Decides which messages should be shed because the bot is overloaded, by
+ * applying the controlled delay (CoDel) active queue management algorithm to
+ * the time messages wait before being processed.
+ * <p>
+ * Waiting times above a target are tolerated for a while, as they may be due to
+ * a short burst of messages. If the waiting time stays above the target for an
+ * interval, the bot is considered overloaded, and messages are shed at an
+ * increasing rate until the waiting time drops below the target again. This
+ * way, the standing queue of messages is drained fast, and the messages that
+ * are not shed are responded in a timely manner.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ * @see <a href="https://tools.ietf.org/html/rfc8289">RFC 8289</a>
+ */
+final class CoDelAdmissionController {
+	private final long targetNanos;
+	private final long intervalNanos;
+
+	/**
+	 * The time when the waiting time will have been above target for an
+	 * interval, or zero if it is below target.
+	 */
+	private long firstAboveTime = 0;
+	/**
+	 * The time when the next message will be shed while overloaded.
+	 */
+	private long shedNext = 0;
+	/**
+	 * The number of messages shed since entering the overloaded state.
+	 */
+	private int shedCount = 0;
+	private int lastShedCount = 0;
+	private boolean overloaded = false;
+
+	/**
+	 * Creates a new CoDel admission controller.
+	 *
+	 * @param targetMillis   The acceptable waiting time, in milliseconds.
+	 * @param intervalMillis How long the waiting time must stay above target to
+	 *                       start shedding messages, in milliseconds.
+	 * @throws IllegalArgumentException If some parameter is not positive.
+	 */
+	CoDelAdmissionController(final long targetMillis, final long intervalMillis) {
+		if (targetMillis < 1 || intervalMillis < 1) {
+			throw new IllegalArgumentException("The target and interval must be positive");
+		}
+
+		this.targetNanos = targetMillis * 1000000;
+		this.intervalNanos = intervalMillis * 1000000;
+	}
+
+	/**
+	 * Updates the state of this controller with the waiting time of a message
+	 * that is about to be processed, and decides whether it should be shed.
+	 *
+	 * @param waitingNanos The time the message waited since it was received, in
+	 *                     nanoseconds.
+	 * @param now          The current value of {@link System#nanoTime()}.
+	 * @return True if the message should be shed, false otherwise.
+	 */
+	synchronized boolean shouldShed(final long waitingNanos, final long now) {
+		final boolean aboveTargetForInterval;
+		boolean shed = false;
+
+		if (waitingNanos < targetNanos) {
+			firstAboveTime = 0;
+			aboveTargetForInterval = false;
+		} else if (firstAboveTime == 0) {
+			firstAboveTime = now + intervalNanos;
+			aboveTargetForInterval = false;
+		} else {
+			aboveTargetForInterval = now - firstAboveTime >= 0;
+		}
+
+		if (overloaded) {
+			if (!aboveTargetForInterval) {
+				overloaded = false;
+			} else if (now - shedNext >= 0) {
+				++shedCount;
+				shedNext = controlLaw(shedNext);
+				shed = true;
+			}
+		} else if (aboveTargetForInterval) {
+			overloaded = true;
+			shed = true;
+
+			// If we were overloaded recently, resume shedding at about the
+			// previous rate, as the load is likely similar
+			final int shedCountDelta = shedCount - lastShedCount;
+			shedCount = shedCountDelta > 1 && now - shedNext < 16 * intervalNanos ? shedCountDelta : 1;
+			lastShedCount = shedCount;
+			shedNext = controlLaw(now);
+		}
+
+		return shed;
+	}
+
+	/**
+	 * Computes the time when the next message should be shed while overloaded,
+	 * which gets closer to the last time as more messages are shed.
+	 *
+	 * @param time The time a message was last shed.
+	 * @return The time when the next message should be shed.
+	 */
+	private long controlLaw(final long time) {
+		return time + (long) (intervalNanos / Math.sqrt(shedCount));
+	}
+}
@@ -0,0 +1,35 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.dispatchers;
+
+/**
+ * The management interface of the adaptive concurrency limiter of a text
+ * message dispatcher, which exposes how many responses may be generated
+ * concurrently.
+ *
+ * @author Alejandro González García
+ */
+public interface ConcurrencyLimiterMXBean {
+	/**
+	 * Returns the current limit of responses that may be generated concurrently.
+	 *
+	 * @return The described limit.
+	 */
+	public int getLimit();
+
+	/**
+	 * Returns the number of responses that are being generated right now.
+	 *
+	 * @return The described number of responses.
+	 */
+	public int getInFlight();
+
+	/**
+	 * Returns the latency of response generation when few responses are being
+	 * generated concurrently, which is the reference to adapt the limit.
+	 *
+	 * @return The described latency, in milliseconds, or -1 if it was not
+	 *         measured yet.
+	 */
+	public long getNoLoadLatencyMillis();
+}
@@ -0,0 +1,397 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.dispatchers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.IntSupplier;
+import java.util.function.LongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.NonNull;
+
+/**
+ * Hands tasks to a backing executor in a fair manner among the conversations
+ * they belong to, following a deficit round robin discipline.
+ * <p>
+ * Each conversation, identified by a key, has its own task queue. At most a
+ * configured number of tasks are handed to the backing executor at once, and
+ * the rest wait in their queues. When a task can be handed, the conversations
+ * with waiting tasks are visited in round robin order, and each of them may
+ * hand as many tasks as its weight before yielding its turn to the next one.
+ * Therefore, a very active conversation can't starve the others, and
+ * conversations with higher weights get a proportionally bigger share of the
+ * backing executor under load.
+ * </p>
+ * <p>
+ * Like with {@link StripedSerialExecutor}, the tasks of a conversation are run
+ * one at a time, in submission order, and asynchronous tasks are considered
+ * running until the completion stage they return completes. Tasks are told when
+ * they became eligible to run, that is, when their conversation had no running
+ * task and they were at the head of its queue, so that they can tell the time
+ * spent waiting for the backing executor apart from the time spent waiting for
+ * tasks of their own conversation.
+ * </p>
+ * <p>
+ * When the backing executor rejects the tasks being handed, because it is shut
+ * down, they are dropped and their rejection handlers are run, so that their
+ * submitters can account for them. Their conversations may then hand their
+ * next tasks.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ * @see <a href="https://doi.org/10.1109/90.502236">Efficient fair queuing using
+ *      deficit round-robin</a>
+ */
+final class DeficitRoundRobinScheduler implements FairSchedulerMXBean {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DeficitRoundRobinScheduler.class);
+
+	private final Executor executor;
+	private final IntSupplier maximumInFlightTasks;
+
+	/**
+	 * The conversations with waiting or running tasks. Conversations are removed
+	 * from here when they have no tasks left, so their deficit is reset.
+	 */
+	private final Map<Object, Conversation> conversations = new HashMap<>();
+	/**
+	 * The conversations with waiting tasks and no running task, in visiting
+	 * order.
+	 */
+	private final Deque<Conversation> eligibleConversations = new ArrayDeque<>();
+	private int queuedTaskCount = 0;
+	private int inFlightTaskCount = 0;
+
+	/**
+	 * Creates a new deficit round robin scheduler.
+	 *
+	 * @param executor             The executor that will run the tasks.
+	 * @param maximumInFlightTasks Supplies the maximum number of tasks that will be
+	 *                             handed to {@code executor} at once, which may
+	 *                             change over time. Changes are taken into
+	 *                             account the next time a task is submitted or
+	 *                             completes.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	DeficitRoundRobinScheduler(@NonNull final Executor executor, @NonNull final IntSupplier maximumInFlightTasks) {
+		this.executor = executor;
+		this.maximumInFlightTasks = maximumInFlightTasks;
+	}
+
+	/**
+	 * Schedules the specified task for execution, after the previously submitted
+	 * tasks with the same key.
+	 *
+	 * @param key         The key of the conversation the task belongs to.
+	 * @param weight      The number of tasks of the conversation that may be
+	 *                    handed to the backing executor in each round. It is only
+	 *                    taken into account when the conversation has no other
+	 *                    waiting or running task.
+	 * @param task        The task to execute, which receives the value of
+	 *                    {@link System#nanoTime()} when it became eligible to
+	 *                    run. It may return {@code null} if it finished
+	 *                    synchronously.
+	 * @param onRejection The action to run if the backing executor rejects the
+	 *                    task when it is handed, which might happen after this
+	 *                    method returns. The task won't be run then.
+	 * @throws IllegalArgumentException   If some parameter is {@code null}, or
+	 *                                    {@code weight} is not positive.
+	 * @throws RejectedExecutionException If the backing executor rejects some
+	 *                                    task handed by this call, which is not
+	 *                                    necessarily the submitted one. The
+	 *                                    rejection handlers of the rejected
+	 *                                    tasks were run before.
+	 */
+	void execute(
+		@NonNull final Object key, final int weight, @NonNull final LongFunction<? extends CompletionStage<?>> task,
+		@NonNull final Runnable onRejection
+	) {
+		if (weight < 1) {
+			throw new IllegalArgumentException("The weight must be positive");
+		}
+
+		final List<HandedTask> tasksToHand;
+
+		synchronized (this) {
+			final Conversation conversation = conversations.computeIfAbsent(
+				key, (final Object conversationKey) -> new Conversation(conversationKey, weight)
+			);
+
+			conversation.tasks.add(new QueuedTask(task, onRejection));
+			++queuedTaskCount;
+
+			if (conversation.tasks.size() == 1 && !conversation.running) {
+				conversation.eligibleTime = System.nanoTime();
+				eligibleConversations.addLast(conversation);
+			}
+
+			tasksToHand = pollTasksToHand();
+		}
+
+		handTasks(tasksToHand);
+	}
+
+	@Override
+	public synchronized int getQueuedMessageCount() {
+		return queuedTaskCount;
+	}
+
+	@Override
+	public synchronized int getInFlightMessageCount() {
+		return inFlightTaskCount;
+	}
+
+	@Override
+	public synchronized int getBackloggedConversationCount() {
+		int backloggedConversations = 0;
+
+		for (final Conversation conversation : conversations.values()) {
+			if (!conversation.tasks.isEmpty()) {
+				++backloggedConversations;
+			}
+		}
+
+		return backloggedConversations;
+	}
+
+	@Override
+	public synchronized Map<String, Integer> getQueueDepths() {
+		final Map<String, Integer> queueDepths = new HashMap<>();
+
+		for (final Conversation conversation : conversations.values()) {
+			if (!conversation.tasks.isEmpty()) {
+				queueDepths.put(conversation.key.toString(), conversation.tasks.size());
+			}
+		}
+
+		return queueDepths;
+	}
+
+	/**
+	 * Dequeues the tasks that can be handed to the backing executor now, in
+	 * deficit round robin order. The caller must hold the lock of this object.
+	 *
+	 * @return The tasks to hand to the backing executor, wrapped so that they
+	 *         notify their completion to this scheduler.
+	 */
+	private List<HandedTask> pollTasksToHand() {
+		List<HandedTask> tasksToHand = null;
+
+		final int maximumInFlightTaskCount = Math.max(maximumInFlightTasks.getAsInt(), 1);
+
+		while (inFlightTaskCount < maximumInFlightTaskCount && !eligibleConversations.isEmpty()) {
+			final Conversation conversation = eligibleConversations.removeFirst();
+
+			// A conversation that used its quantum gets a new one when its turn comes
+			if (conversation.deficit < 1) {
+				conversation.deficit += conversation.weight;
+			}
+
+			final QueuedTask task = conversation.tasks.remove();
+			--conversation.deficit;
+			conversation.running = true;
+			--queuedTaskCount;
+			++inFlightTaskCount;
+
+			if (tasksToHand == null) {
+				tasksToHand = new ArrayList<>(2);
+			}
+
+			tasksToHand.add(new HandedTask(conversation, task, conversation.eligibleTime));
+		}
+
+		return tasksToHand;
+	}
+
+	/**
+	 * Updates the scheduler state after a task of a conversation stopped being
+	 * in flight, making the conversation eligible again if it has waiting tasks.
+	 * The caller must hold the lock of this object.
+	 *
+	 * @param conversation The conversation of the task.
+	 */
+	private void taskLeftFlight(final Conversation conversation) {
+		--inFlightTaskCount;
+		conversation.running = false;
+
+		if (conversation.tasks.isEmpty()) {
+			conversations.remove(conversation.key);
+			return;
+		}
+
+		conversation.eligibleTime = System.nanoTime();
+		if (conversation.deficit > 0) {
+			// Continue the turn of this conversation, as it has quantum left
+			eligibleConversations.addFirst(conversation);
+		} else {
+			eligibleConversations.addLast(conversation);
+		}
+	}
+
+	/**
+	 * Updates the scheduler state after a task of a conversation completed, and
+	 * hands the next tasks to the backing executor.
+	 *
+	 * @param conversation The conversation of the completed task.
+	 */
+	private void taskCompleted(final Conversation conversation) {
+		final List<HandedTask> tasksToHand;
+
+		synchronized (this) {
+			taskLeftFlight(conversation);
+			tasksToHand = pollTasksToHand();
+		}
+
+		try {
+			handTasks(tasksToHand);
+		} catch (final RejectedExecutionException exc) {
+			// The backing executor is shutting down
+			LOGGER.debug("Couldn't hand waiting tasks to the executor", exc);
+		}
+	}
+
+	/**
+	 * Hands the specified tasks to the backing executor. This is done without
+	 * holding the lock of this object, as the executor may run the tasks in the
+	 * caller thread.
+	 *
+	 * @param tasksToHand The tasks to hand. It may be {@code null} if there are
+	 *                    no tasks to hand.
+	 * @throws RejectedExecutionException If the backing executor rejects some
+	 *                                    task. That task and the next ones are
+	 *                                    dropped, and their rejection handlers
+	 *                                    are run.
+	 */
+	private void handTasks(final List<HandedTask> tasksToHand) {
+		if (tasksToHand == null) {
+			return;
+		}
+
+		for (int i = 0; i < tasksToHand.size(); ++i) {
+			try {
+				executor.execute(tasksToHand.get(i));
+			} catch (final RejectedExecutionException exc) {
+				tasksRejected(tasksToHand.subList(i, tasksToHand.size()));
+				throw exc;
+			}
+		}
+	}
+
+	/**
+	 * Updates the scheduler state after the backing executor rejected some handed
+	 * tasks, so that their conversations are not considered running forever, and
+	 * runs their rejection handlers.
+	 * <p>
+	 * No more tasks are handed meanwhile, as the backing executor would most
+	 * likely reject them too.
+	 * </p>
+	 *
+	 * @param rejectedTasks The rejected tasks.
+	 */
+	private void tasksRejected(final List<HandedTask> rejectedTasks) {
+		synchronized (this) {
+			for (final HandedTask rejectedTask : rejectedTasks) {
+				taskLeftFlight(rejectedTask.conversation);
+			}
+		}
+
+		for (final HandedTask rejectedTask : rejectedTasks) {
+			try {
+				rejectedTask.task.onRejection.run();
+			} catch (final RuntimeException exc) {
+				LOGGER.error("An unexpected exception has occurred while running a rejection handler", exc);
+			}
+		}
+	}
+
+	/**
+	 * The scheduling state of a conversation.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class Conversation {
+		private final Object key;
+		private final int weight;
+		private final Deque<QueuedTask> tasks = new ArrayDeque<>();
+		/**
+		 * The number of tasks this conversation may still hand to the backing
+		 * executor in its current turn.
+		 */
+		private int deficit = 0;
+		/**
+		 * Whether a task of this conversation was handed to the backing executor
+		 * and didn't complete yet, or its completion stage didn't complete.
+		 */
+		private boolean running = false;
+		/**
+		 * The value of {@link System#nanoTime()} when the task at the head of the
+		 * queue of this conversation became eligible to run.
+		 */
+		private long eligibleTime;
+
+		private Conversation(final Object key, final int weight) {
+			this.key = key;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * A task waiting in the queue of a conversation, with its rejection handler.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class QueuedTask {
+		private final LongFunction<? extends CompletionStage<?>> task;
+		private final Runnable onRejection;
+
+		private QueuedTask(final LongFunction<? extends CompletionStage<?>> task, final Runnable onRejection) {
+			this.task = task;
+			this.onRejection = onRejection;
+		}
+	}
+
+	/**
+	 * A task handed to the backing executor, which notifies its completion to
+	 * this scheduler.
+	 *
+	 * @author Alejandro González García
+	 */
+	private final class HandedTask implements Runnable {
+		private final Conversation conversation;
+		private final QueuedTask task;
+		private final long eligibleTime;
+
+		private HandedTask(final Conversation conversation, final QueuedTask task, final long eligibleTime) {
+			this.conversation = conversation;
+			this.task = task;
+			this.eligibleTime = eligibleTime;
+		}
+
+		@Override
+		public void run() {
+			CompletionStage<?> taskStage = null;
+
+			try {
+				taskStage = task.task.apply(eligibleTime);
+			} finally {
+				if (taskStage != null) {
+					taskStage.whenComplete(
+						(final Object result, final Throwable exc) -> taskCompleted(conversation)
+					);
+				} else {
+					taskCompleted(conversation);
+				}
+			}
+		}
+	}
+}
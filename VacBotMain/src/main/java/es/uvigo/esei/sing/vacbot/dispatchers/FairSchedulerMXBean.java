@@ -0,0 +1,47 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.dispatchers;
+
+import java.util.Map;
+
+/**
+ * The management interface of the fair scheduler of a text message dispatcher,
+ * which exposes how many messages of each conversation are waiting to be
+ * responded.
+ *
+ * @author Alejandro González García
+ */
+public interface FairSchedulerMXBean {
+	/**
+	 * Returns the number of messages that are waiting to be handed to a worker
+	 * thread, among all conversations.
+	 *
+	 * @return The described number of messages.
+	 */
+	public int getQueuedMessageCount();
+
+	/**
+	 * Returns the number of messages that were handed to a worker thread and are
+	 * being responded right now.
+	 *
+	 * @return The described number of messages.
+	 */
+	public int getInFlightMessageCount();
+
+	/**
+	 * Returns the number of conversations with messages that are waiting to be
+	 * handed to a worker thread.
+	 *
+	 * @return The described number of conversations.
+	 */
+	public int getBackloggedConversationCount();
+
+	/**
+	 * Returns the number of messages that are waiting to be handed to a worker
+	 * thread, for every conversation with waiting messages.
+	 *
+	 * @return A snapshot of the queue depth of each conversation, keyed by the
+	 *         string representation of its serialization key.
+	 */
+	public Map<String, Integer> getQueueDepths();
+}
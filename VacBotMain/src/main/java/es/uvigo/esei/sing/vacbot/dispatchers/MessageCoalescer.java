@@ -0,0 +1,206 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.dispatchers;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.NonNull;
+
+/**
+ * Merges bursts of messages with the same key that arrive close together into a
+ * single message, before handing it to a consumer.
+ * <p>
+ * A burst is handed over once no message with its key arrived during the
+ * coalescing window, or when its first message has been held for the maximum
+ * delay, whichever happens first. Messages that can't be merged with the burst
+ * they would belong to end that burst, and start a new one.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @param <T> The type of the messages.
+ * @implNote The implementation of this class is thread-safe.
+ */
+final class MessageCoalescer<T> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MessageCoalescer.class);
+
+	private final long windowNanos;
+	private final long maximumDelayNanos;
+	private final BinaryOperator<T> merger;
+	private final BurstConsumer<T> consumer;
+	private final Executor executor;
+	private final ConcurrentMap<Object, Burst<T>> bursts = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a new message coalescer.
+	 *
+	 * @param window       The coalescing window, in milliseconds.
+	 * @param maximumDelay The maximum time the first message of a burst may be
+	 *                     held, in milliseconds.
+	 * @param merger       The function that merges a message into the previous
+	 *                     messages of its burst. It returns {@code null} if the
+	 *                     messages should not be merged.
+	 * @param consumer     The consumer of the coalesced messages.
+	 * @param executor     The executor that hands the bursts whose window
+	 *                     elapsed to the consumer.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	MessageCoalescer(
+		final long window, final long maximumDelay, @NonNull final BinaryOperator<T> merger,
+		@NonNull final BurstConsumer<T> consumer, @NonNull final Executor executor
+	) {
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(window);
+		this.maximumDelayNanos = TimeUnit.MILLISECONDS.toNanos(maximumDelay);
+		this.merger = merger;
+		this.consumer = consumer;
+		this.executor = executor;
+	}
+
+	/**
+	 * Adds a message to the burst of its key, starting a new burst if there is
+	 * none or the message can't be merged into it.
+	 *
+	 * @param key           The coalescing key of the message.
+	 * @param message       The message.
+	 * @param receptionTime The value of {@link System#nanoTime()} when the
+	 *                      message was received.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	void add(@NonNull final Object key, @NonNull final T message, final long receptionTime) {
+		@SuppressWarnings("unchecked")
+		final Burst<T>[] endedBurst = new Burst[1];
+
+		bursts.compute(key, (final Object burstKey, final Burst<T> burst) -> {
+			if (burst != null) {
+				final T mergedMessage = receptionTime - burst.firstReceptionTime < maximumDelayNanos ?
+					merger.apply(burst.message, message) : null;
+
+				if (mergedMessage != null) {
+					burst.message = mergedMessage;
+					burst.lastReceptionTime = receptionTime;
+
+					return burst;
+				}
+
+				endedBurst[0] = burst;
+			}
+
+			final Burst<T> newBurst = new Burst<>(message, receptionTime);
+			scheduleExpiration(burstKey, newBurst, windowNanos);
+
+			return newBurst;
+		});
+
+		// Hand the ended burst outside of the map lock, and before the new one
+		if (endedBurst[0] != null) {
+			consumer.accept(endedBurst[0].message, endedBurst[0].lastReceptionTime);
+		}
+	}
+
+	/**
+	 * Hands every pending burst to the consumer right away, without waiting for
+	 * their coalescing windows to elapse.
+	 */
+	void flush() {
+		for (final Map.Entry<Object, Burst<T>> burstEntry : bursts.entrySet()) {
+			final Burst<T> burst = burstEntry.getValue();
+
+			if (bursts.remove(burstEntry.getKey(), burst)) {
+				try {
+					consumer.accept(burst.message, burst.lastReceptionTime);
+				} catch (final RuntimeException exc) {
+					LOGGER.warn("Couldn't dispatch a coalesced message", exc);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a burst should be handed to the consumer after the
+	 * specified delay, checking again later if more messages were added to it.
+	 *
+	 * @param key   The coalescing key of the burst.
+	 * @param burst The burst.
+	 * @param delay The delay, in nanoseconds.
+	 */
+	private void scheduleExpiration(final Object key, final Burst<T> burst, final long delay) {
+		CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS, executor).execute(() -> {
+			@SuppressWarnings("unchecked")
+			final Burst<T>[] expiredBurst = new Burst[1];
+
+			bursts.computeIfPresent(key, (final Object burstKey, final Burst<T> currentBurst) -> {
+				// The burst might have been handed already
+				if (currentBurst != burst) {
+					return currentBurst;
+				}
+
+				final long remainingNanos = Math.min(
+					burst.lastReceptionTime + windowNanos, burst.firstReceptionTime + maximumDelayNanos
+				) - System.nanoTime();
+
+				if (remainingNanos > 0) {
+					scheduleExpiration(burstKey, burst, remainingNanos);
+					return burst;
+				}
+
+				expiredBurst[0] = burst;
+				return null;
+			});
+
+			if (expiredBurst[0] != null) {
+				try {
+					consumer.accept(expiredBurst[0].message, expiredBurst[0].lastReceptionTime);
+				} catch (final RejectedExecutionException exc) {
+					LOGGER.debug("Couldn't dispatch a coalesced message because the dispatcher was stopped", exc);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Receives the messages that result from coalescing bursts.
+	 *
+	 * @author Alejandro González García
+	 * @param <T> The type of the messages.
+	 */
+	@FunctionalInterface
+	interface BurstConsumer<T> {
+		/**
+		 * Receives the message that results from coalescing a burst.
+		 *
+		 * @param message       The coalesced message.
+		 * @param receptionTime The value of {@link System#nanoTime()} when the
+		 *                      last message of the burst was received.
+		 * @throws RejectedExecutionException If the message can't be dispatched.
+		 */
+		void accept(T message, long receptionTime);
+	}
+
+	/**
+	 * The messages with the same key that are being coalesced. Its mutable fields
+	 * are only accessed while holding the map lock for its key.
+	 *
+	 * @author Alejandro González García
+	 * @param <T> The type of the messages.
+	 */
+	private static final class Burst<T> {
+		private final long firstReceptionTime;
+		private T message;
+		private long lastReceptionTime;
+
+		private Burst(final T message, final long receptionTime) {
+			this.firstReceptionTime = receptionTime;
+			this.message = message;
+			this.lastReceptionTime = receptionTime;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.dispatchers;
+
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.NonNull;
+
+/**
+ * Runs tasks associated to a key in a backing executor, guaranteeing that the
+ * tasks with the same key are run one at a time, in submission order, while
+ * tasks with different keys may run concurrently.
+ * <p>
+ * Keys are hashed to a fixed number of stripes, each of them with a lock-free
+ * task queue. A stripe is submitted to the backing executor only when it has
+ * pending tasks and is not already submitted, so every stripe uses at most one
+ * thread of the backing executor at a time. Different keys may share a stripe,
+ * which just serializes them too.
+ * </p>
+ * <p>
+ * Tasks may also be asynchronous, returning a completion stage. In that case,
+ * the next tasks with the same key wait until the stage completes, without
+ * holding a thread of the backing executor meanwhile.
+ * </p>
+ * <p>
+ * Tasks are told when they became eligible to run, that is, when the previous
+ * task with the same key finished or, if they were the first, when they were
+ * handed to the backing executor. Time spent before that waiting for tasks of
+ * the same key is not a sign of the backing executor being overloaded.
+ * </p>
+ * <p>
+ * When the backing executor rejects a stripe, because it is saturated or shut
+ * down, only the task being submitted fails. The tasks that were already
+ * accepted are run in the thread that was about to hand them over instead, so
+ * they are never dropped.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+final class StripedSerialExecutor {
+	private static final Logger LOGGER = LoggerFactory.getLogger(StripedSerialExecutor.class);
+
+	/**
+	 * The number of stripes. It must be a power of two.
+	 */
+	private static final int STRIPE_COUNT = 1024;
+	/**
+	 * The maximum number of tasks a stripe runs before yielding its thread to
+	 * other tasks of the backing executor.
+	 */
+	private static final int MAXIMUM_TASKS_PER_RUN = 32;
+
+	private final Executor executor;
+	private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+	/**
+	 * Creates a new striped serial executor.
+	 *
+	 * @param executor The executor that will run the tasks.
+	 * @throws IllegalArgumentException If {@code executor} is {@code null}.
+	 */
+	StripedSerialExecutor(@NonNull final Executor executor) {
+		this.executor = executor;
+
+		for (int i = 0; i < stripes.length; ++i) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Executes the specified task after the previously submitted tasks with the
+	 * same key have finished.
+	 *
+	 * @param key  The key of the task.
+	 * @param task The task to execute.
+	 * @throws IllegalArgumentException   If some parameter is {@code null}.
+	 * @throws RejectedExecutionException If the backing executor rejects the
+	 *                                    task.
+	 */
+	void execute(@NonNull final Object key, @NonNull final Runnable task) {
+		executeAsync(key, (final long eligibleTime) -> {
+			task.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Executes the specified asynchronous task after the previously submitted
+	 * tasks with the same key have finished, and considers it finished when the
+	 * completion stage it returns completes.
+	 *
+	 * @param key  The key of the task.
+	 * @param task The task to execute, which receives the value of
+	 *             {@link System#nanoTime()} when it became eligible to run. It
+	 *             may return {@code null} if it finished synchronously.
+	 * @throws IllegalArgumentException   If some parameter is {@code null}.
+	 * @throws RejectedExecutionException If the backing executor rejects the
+	 *                                    task. The task won't be run then.
+	 */
+	void executeAsync(@NonNull final Object key, @NonNull final LongFunction<? extends CompletionStage<?>> task) {
+		final int hashCode = key.hashCode();
+		final Stripe stripe = stripes[(hashCode ^ (hashCode >>> 16)) & (STRIPE_COUNT - 1)];
+
+		stripe.tasks.add(task);
+		try {
+			stripe.schedule();
+		} catch (final RejectedExecutionException exc) {
+			// Fail just this task. Other tasks might have been added meanwhile,
+			// and their submitters expect them to run
+			stripe.tasks.remove(task);
+			if (!stripe.tasks.isEmpty() && stripe.scheduled.compareAndSet(false, true)) {
+				stripe.eligibleTime = System.nanoTime();
+				stripe.run();
+			}
+
+			throw exc;
+		}
+	}
+
+	/**
+	 * A queue of tasks that are run serially in the backing executor.
+	 *
+	 * @author Alejandro González García
+	 */
+	private final class Stripe implements Runnable {
+		private final Queue<LongFunction<? extends CompletionStage<?>>> tasks = new ConcurrentLinkedQueue<>();
+		/**
+		 * Whether this stripe was submitted to the backing executor, and its tasks
+		 * will be run.
+		 */
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		/**
+		 * The value of {@link System#nanoTime()} when the first task of the next
+		 * run became eligible to run.
+		 */
+		private volatile long eligibleTime;
+
+		/**
+		 * Submits this stripe to the backing executor, unless it is already
+		 * submitted.
+		 *
+		 * @throws RejectedExecutionException If the backing executor rejects this
+		 *                                    stripe.
+		 */
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				eligibleTime = System.nanoTime();
+
+				try {
+					executor.execute(this);
+				} catch (final RejectedExecutionException exc) {
+					scheduled.set(false);
+					throw exc;
+				}
+			}
+		}
+
+		/**
+		 * Submits this stripe to the backing executor again, after the stage of
+		 * an asynchronous task completed.
+		 */
+		private void resume() {
+			eligibleTime = System.nanoTime();
+
+			try {
+				executor.execute(this);
+			} catch (final RejectedExecutionException exc) {
+				// Nothing else will run the pending tasks
+				LOGGER.debug("Couldn't resume a stripe in the executor. Running it in the current thread", exc);
+				run();
+			}
+		}
+
+		@Override
+		public void run() {
+			LongFunction<? extends CompletionStage<?>> task;
+			int runTasks = 0;
+
+			while (true) {
+				while (runTasks < MAXIMUM_TASKS_PER_RUN && (task = tasks.poll()) != null) {
+					// Tasks after the first of a run became eligible when the
+					// previous one finished, which is now
+					final long taskEligibleTime = runTasks == 0 ? eligibleTime : System.nanoTime();
+					++runTasks;
+
+					try {
+						final CompletionStage<?> taskStage = task.apply(taskEligibleTime);
+
+						if (taskStage != null && !taskStage.toCompletableFuture().isDone()) {
+							// Keep this stripe scheduled, but release the thread
+							// until the task finishes
+							taskStage.whenComplete((final Object result, final Throwable exc) -> resume());
+							return;
+						}
+					} catch (final RuntimeException exc) {
+						// Do not let a failed task stall the rest
+						LOGGER.error("An unexpected exception has occurred while running a task", exc);
+					}
+				}
+
+				if (runTasks >= MAXIMUM_TASKS_PER_RUN && !tasks.isEmpty()) {
+					// Yield the thread to other tasks of the backing executor
+					eligibleTime = System.nanoTime();
+
+					try {
+						executor.execute(this);
+						return;
+					} catch (final RejectedExecutionException exc) {
+						// Nothing else will run the pending tasks, so keep going
+						runTasks = 0;
+						continue;
+					}
+				}
+
+				scheduled.set(false);
+
+				// Tasks might have been added after the last poll but before the
+				// flag was cleared, so their submitter didn't schedule us
+				if (tasks.isEmpty() || !scheduled.compareAndSet(false, true)) {
+					return;
+				}
+			}
+		}
+	}
+}
@@ -2,13 +2,27 @@
 
 package es.uvigo.esei.sing.vacbot.dispatchers;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,8 +30,18 @@ import org.slf4j.LoggerFactory;
 import es.uvigo.esei.sing.vacbot.frontend.FrontendCommunicationException;
 import es.uvigo.esei.sing.vacbot.frontend.FrontendInterface;
 import es.uvigo.esei.sing.vacbot.frontend.TextMessage;
+import es.uvigo.esei.sing.vacbot.responsegen.ResponseGenerationContext;
 import es.uvigo.esei.sing.vacbot.responsegen.ResponseGenerationException;
+import es.uvigo.esei.sing.vacbot.responsegen.ResponseGenerator;
+import es.uvigo.esei.sing.vacbot.settings.AdaptiveConcurrencySettings;
+import es.uvigo.esei.sing.vacbot.settings.AdmissionControlSettings;
+import es.uvigo.esei.sing.vacbot.settings.DispatchMode;
+import es.uvigo.esei.sing.vacbot.settings.FairSchedulingSettings;
+import es.uvigo.esei.sing.vacbot.settings.MessageCoalescingSettings;
+import es.uvigo.esei.sing.vacbot.settings.OverloadAction;
+import es.uvigo.esei.sing.vacbot.settings.ResponseDeadlineSettings;
 import es.uvigo.esei.sing.vacbot.settings.VacBotSettings;
+import es.uvigo.esei.sing.vacbot.util.StageExecutor;
 import lombok.NonNull;
 
 /**
@@ -31,10 +55,27 @@ import lombok.NonNull;
  */
 public abstract class TextMessageDispatcher<T extends TextMessage, U> {
 	private static final Logger LOGGER = LoggerFactory.getLogger(TextMessageDispatcher.class);
+	private static final String FAIR_SCHEDULER_OBJECT_NAME = "es.uvigo.esei.sing.vacbot:type=FairScheduler";
+	private static final String CONCURRENCY_LIMITER_OBJECT_NAME = "es.uvigo.esei.sing.vacbot:type=ConcurrencyLimiter";
 
 	protected final VacBotSettings settings;
 
 	private final ExecutorService executorService;
+	private final DispatchThreadPoolExecutor threadPoolExecutor;
+	private final StripedSerialExecutor serialExecutor;
+	private final StageExecutor sendStageExecutor;
+	private final StripedSerialExecutor sendSerialExecutor;
+	private final DeficitRoundRobinScheduler fairScheduler;
+	private final CoDelAdmissionController admissionController;
+	private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+	private final MessageCoalescer<T> messageCoalescer;
+	private final List<ObjectName> registeredMXBeanNames = new ArrayList<>(2);
+	/**
+	 * The number of dispatched messages whose response is still being generated
+	 * or waiting to be generated. It is also used as the monitor to wait for it
+	 * to drop to zero.
+	 */
+	private final AtomicInteger pendingResponseCount = new AtomicInteger();
 	private final FrontendInterface<T, U> frontendInterface;
 	private Thread dispatchingThread = null;
 
@@ -51,80 +92,74 @@ public abstract class TextMessageDispatcher<T extends TextMessage, U> {
 		this.frontendInterface = frontendInterface;
 		this.settings = settings;
 
-		final int workerThreads = settings.getWorkerThreads();
-		final int maximumQueuedTasks = (int) Math.min(
-			// Consider that each task uses 4 MiB while enqueued (seems pessimistic)
-			Runtime.getRuntime().freeMemory() / 4194304, Integer.MAX_VALUE
-		);
+		ExecutorService virtualThreadExecutor = null;
+		if (settings.getDispatchMode() == DispatchMode.VIRTUAL_THREADS) {
+			virtualThreadExecutor = createVirtualThreadPerTaskExecutor();
 
-		final AtomicInteger queuedTaskCount = new AtomicInteger();
-
-		final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
-			// Use at least hardwareThreads threads,
-			// that can be expanded up to hardwareThreads * 32 threads
-			// when load is high, for maximum throughput. We prefer that to
-			// queuing because extra threads usually allows the OS scheduler
-			// to better manage blocking I/O and such
-			workerThreads, workerThreads * 32,
-			// Excess threads get deleted after 60 seconds
-			60, TimeUnit.SECONDS,
-			new LinkedTransferQueue<>() {
-				private static final long serialVersionUID = 1L;
-
-				@Override
-				public boolean offer(final Runnable e) {
-					// When the core threads are working, prefer
-					// reusing excess threads or creating new ones
-					// before actual queuing
-					return tryTransfer(e);
-				}
-			},
-			// Rejected execution handler
-			(final Runnable r, final ThreadPoolExecutor e) -> {
-				// If we reject a task, that was because we've created
-				// the maximum threads and no thread was available
-				// to handle the task. Therefore, start queuing tasks
-				// until maximumQueuedTasks is reached
-				if (
-					queuedTaskCount.incrementAndGet() <= maximumQueuedTasks && !e.isShutdown()
-				) {
-					try {
-						e.getQueue().put(r);
-					} catch (final InterruptedException ignored) {
-						// Never happens according to LinkedTransferQueue implementation,
-						// because it is unbounded
-					}
-				} else if (!e.isShutdown()) {
-					// Run in the caller thread so things slow down, but no
-					// extra resources are consumed
-					r.run();
-				} else {
-					throw new RejectedExecutionException("The executor was shut down");
-				}
-			}
-		) {
-			@Override
-			protected void beforeExecute(final Thread t, final Runnable r) {
-				// We can queue one more task when we begin execution of a task
-				queuedTaskCount.updateAndGet((final int value) -> Math.max(value - 1, 0));
+			if (virtualThreadExecutor == null) {
+				LOGGER.warn(
+					"Virtual threads are not available in this Java runtime. Falling back to the thread pool dispatch mode"
+				);
 			}
+		}
 
-			@Override
-			protected void terminated() {
-				try {
-					settings.close();
-				} catch (final Exception exc) {
-					LOGGER.error(
-						"An exception has occurred while freeing the settings resources", exc
-					);
-				}
-			}
-		};
+		this.threadPoolExecutor = virtualThreadExecutor == null ?
+			new DispatchThreadPoolExecutor(settings.getWorkerThreads()) : null;
+		this.executorService = Executors.unconfigurableExecutorService(
+			virtualThreadExecutor != null ? virtualThreadExecutor : threadPoolExecutor
+		);
+		this.serialExecutor = new StripedSerialExecutor(executorService);
+		this.sendStageExecutor = settings.getSendStageExecutor();
+		this.sendSerialExecutor = new StripedSerialExecutor(sendStageExecutor);
+
+		final AdaptiveConcurrencySettings adaptiveConcurrencySettings = settings.getAdaptiveConcurrencySettings();
+		if (adaptiveConcurrencySettings != null) {
+			final int workerThreads = settings.getWorkerThreads();
+			final Integer initialLimit = adaptiveConcurrencySettings.getInitialLimit();
+			final Integer maximumLimit = adaptiveConcurrencySettings.getMaximumLimit();
 
-		// Create core threads now for less latency on the first message
-		threadPoolExecutor.prestartAllCoreThreads();
+			this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(
+				initialLimit != null ? initialLimit : workerThreads,
+				adaptiveConcurrencySettings.getMinimumLimit(),
+				maximumLimit != null ? maximumLimit : workerThreads * 32
+			);
 
-		this.executorService = Executors.unconfigurableExecutorService(threadPoolExecutor);
+			// Expose the current limit to monitoring tools
+			registerMXBean(concurrencyLimiter, CONCURRENCY_LIMITER_OBJECT_NAME);
+		} else {
+			this.concurrencyLimiter = null;
+		}
+
+		if (settings.getFairSchedulingSettings() != null) {
+			// Do not hand more messages than those that may be responded
+			// concurrently, so that they wait in the fair queues
+			this.fairScheduler = new DeficitRoundRobinScheduler(
+				executorService,
+				concurrencyLimiter != null ? concurrencyLimiter::getLimit : settings::getWorkerThreads
+			);
+
+			// Expose the queue depths of each conversation to monitoring tools
+			registerMXBean(fairScheduler, FAIR_SCHEDULER_OBJECT_NAME);
+		} else {
+			this.fairScheduler = null;
+		}
+
+		final AdmissionControlSettings admissionControlSettings = settings.getAdmissionControlSettings();
+		this.admissionController = admissionControlSettings != null ?
+			new CoDelAdmissionController(
+				admissionControlSettings.getTargetQueueDelay(), admissionControlSettings.getInterval()
+			) : null;
+
+		final MessageCoalescingSettings messageCoalescingSettings = settings.getMessageCoalescingSettings();
+		this.messageCoalescer = messageCoalescingSettings != null ?
+			new MessageCoalescer<>(
+				messageCoalescingSettings.getWindow(), messageCoalescingSettings.getMaximumDelay(),
+				this::coalesceMessages, this::dispatch, executorService
+			) : null;
+
+		// Messages are taken from the front-end as soon as they arrive, so
+		// let it know how many are still queued for the workers
+		frontendInterface.setPendingMessageCounter(pendingResponseCount::get);
 	}
 
 	/**
@@ -150,22 +185,16 @@ public abstract class TextMessageDispatcher<T extends TextMessage, U> {
 						LOGGER.debug("Received message: {}", message);
 					}
 
-					// We might have awaited for a message successfully, but stop() got called
-					// before this execution, so the execution would be rejected
-					executorService.execute(() -> {
-						try {
-							final T response = frontendInterface.isMessageForBot(message) ? computeResponse(message) : null;
+					final long receptionTime = System.nanoTime();
 
-							if (response != null) {
-								frontendInterface.sendMessage(response);
-							}
-						} catch (final ResponseGenerationException | FrontendCommunicationException exc) {
-							LOGGER.error(
-								"An exception has occurred while sending or computing a response to a message. The response won't be sent",
-								exc
-							);
-						}
-					});
+					final Object coalescingKey = messageCoalescer != null ? getCoalescingKey(message) : null;
+					if (coalescingKey != null) {
+						messageCoalescer.add(coalescingKey, message, receptionTime);
+					} else {
+						// We might have awaited for a message successfully, but stop() got called
+						// before this execution, so the execution would be rejected
+						dispatch(message, receptionTime);
+					}
 				} catch (final FrontendCommunicationException exc) {
 					// Just log exception while waiting
 					LOGGER.warn(
@@ -176,6 +205,154 @@ public abstract class TextMessageDispatcher<T extends TextMessage, U> {
 		} catch (final RejectedExecutionException | InterruptedException ignored) {}
 	}
 
+	/**
+	 * Dispatches a message to the worker threads, so that its response is
+	 * generated and sent.
+	 * <p>
+	 * If the worker threads are saturated, the message is shed with a busy
+	 * response from the send stage, which does not need them, so that the
+	 * dispatch thread keeps receiving messages instead of running it.
+	 * </p>
+	 *
+	 * @param message       The message to dispatch.
+	 * @param receptionTime The value of {@link System#nanoTime()} when the
+	 *                      message was received.
+	 * @throws RejectedExecutionException If the dispatcher was stopped.
+	 */
+	private void dispatch(final T message, final long receptionTime) {
+		final Object serializationKey = getSerializationKey(message);
+
+		if (threadPoolExecutor != null && threadPoolExecutor.isSaturated()) {
+			if (executorService.isShutdown()) {
+				throw new RejectedExecutionException("The dispatcher was stopped");
+			}
+
+			LOGGER.warn("The worker threads are saturated. Shedding a message: {}", OverloadAction.BUSY_RESPONSE);
+			shedMessage(message, serializationKey);
+
+			return;
+		}
+
+		// The response is generated asynchronously, and this task is
+		// considered finished when it is sent to the send stage
+		final LongFunction<CompletionStage<?>> dispatchTask = (final long eligibleTime) -> respond(
+			message, serializationKey, () -> admitMessage(receptionTime, eligibleTime)
+		);
+
+		pendingResponseCount.incrementAndGet();
+
+		// Messages with the same serialization key are responded in order
+		if (serializationKey != null && fairScheduler != null) {
+			final FairSchedulingSettings fairSchedulingSettings = settings.getFairSchedulingSettings();
+
+			// The scheduler may reject the tasks of other messages while handing
+			// this one, so it accounts for every rejected message by itself
+			fairScheduler.execute(
+				serializationKey,
+				isGroupConversation(message) ?
+					fairSchedulingSettings.getGroupConversationWeight() :
+					fairSchedulingSettings.getPrivateConversationWeight(),
+				dispatchTask, this::responseCompleted
+			);
+
+			return;
+		}
+
+		try {
+			if (serializationKey != null) {
+				serialExecutor.executeAsync(serializationKey, dispatchTask);
+			} else {
+				executorService.execute(() -> dispatchTask.apply(receptionTime));
+			}
+		} catch (final RejectedExecutionException exc) {
+			responseCompleted();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Responds to a message with a busy response computed in the send stage, as
+	 * the worker threads are too saturated to even decide how to respond to it.
+	 * Busy responses are canned, so they are computed right away.
+	 *
+	 * @param message          The message to shed.
+	 * @param serializationKey The serialization key of the message. It may be
+	 *                         {@code null}.
+	 */
+	private void shedMessage(final T message, final Object serializationKey) {
+		final Runnable shedTask = () -> respond(
+			message, serializationKey, () -> new ResponseGenerationContext(OverloadAction.BUSY_RESPONSE)
+		);
+
+		pendingResponseCount.incrementAndGet();
+		try {
+			if (serializationKey != null) {
+				sendSerialExecutor.execute(serializationKey, shedTask);
+			} else {
+				sendStageExecutor.execute(shedTask);
+			}
+		} catch (final RejectedExecutionException exc) {
+			LOGGER.error("The send stage is saturated or shut down. The message won't be responded", exc);
+			messageHandled(message, serializationKey);
+		}
+	}
+
+	/**
+	 * Starts computing the response to a message, and hands it to the send stage
+	 * when it is computed. The message is acknowledged to the front-end and no
+	 * longer counted as pending when its response is handed or discarded.
+	 *
+	 * @param message          The message to respond.
+	 * @param serializationKey The serialization key of the message. It may be
+	 *                         {@code null}.
+	 * @param contextSupplier  Supplies the context to generate the response with.
+	 *                         It is only called if the message is for the bot.
+	 * @return A completion stage that completes when the response is handed to
+	 *         the send stage or discarded, or {@code null} if that already
+	 *         happened.
+	 */
+	private CompletionStage<?> respond(
+		final T message, final Object serializationKey, final Supplier<ResponseGenerationContext> contextSupplier
+	) {
+		final CompletionStage<T> responseStage;
+
+		try {
+			responseStage = frontendInterface.isMessageForBot(message) ?
+				computeLimitedResponse(message, contextSupplier.get()) : null;
+		} catch (final ResponseGenerationException | FrontendCommunicationException | RuntimeException exc) {
+			LOGGER.error(
+				"An exception has occurred while sending or computing a response to a message. The response won't be sent",
+				exc
+			);
+			messageHandled(message, serializationKey);
+
+			return null;
+		}
+
+		if (responseStage == null) {
+			messageHandled(message, serializationKey);
+			return null;
+		}
+
+		return responseStage.handle((final T response, final Throwable exc) -> {
+			if (exc != null) {
+				LOGGER.error(
+					"An exception has occurred while computing a response to a message. The response won't be sent",
+					exc instanceof CompletionException && exc.getCause() != null ? exc.getCause() : exc
+				);
+			} else if (response != null) {
+				sendResponse(message, response, serializationKey);
+				responseCompleted();
+
+				return null;
+			}
+
+			messageHandled(message, serializationKey);
+
+			return null;
+		});
+	}
+
 	/**
 	 * Stops this dispatcher from dispatching any new text message, and returns once
 	 * the already dispatched text messages were processed, in a best-effort manner.
@@ -187,9 +364,19 @@ public abstract class TextMessageDispatcher<T extends TextMessage, U> {
 			dispatchingThread.interrupt();
 		}
 
-		// Execute remaining tasks, but do not accept new ones
-		executorService.shutdown();
+		// Do not wait for the coalescing windows of pending bursts to elapse
+		if (messageCoalescer != null) {
+			messageCoalescer.flush();
+		}
+
 		try {
+			// Responses may be waiting for other stages without running
+			// in the executor, and they may still need it to complete
+			awaitPendingResponses(60);
+
+			// Execute remaining tasks, but do not accept new ones
+			executorService.shutdown();
+
 			// Wait for graceful shutdown to conclude
 			if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
 				LOGGER.warn(
@@ -209,22 +396,479 @@ public abstract class TextMessageDispatcher<T extends TextMessage, U> {
 			executorService.shutdownNow();
 			Thread.currentThread().interrupt();
 		}
+
+		final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		for (final ObjectName objectName : registeredMXBeanNames) {
+			try {
+				mBeanServer.unregisterMBean(objectName);
+			} catch (final JMException exc) {
+				LOGGER.debug("Couldn't unregister the {} management bean", objectName, exc);
+			}
+		}
+		registeredMXBeanNames.clear();
+
+		if (executorService.isTerminated()) {
+			try {
+				settings.close();
+			} catch (final Exception exc) {
+				LOGGER.error(
+					"An exception has occurred while freeing the settings resources", exc
+				);
+			}
+		}
+
+		// The front-end may still be sending the responses handed to it
+		try {
+			frontendInterface.close();
+		} catch (final Exception exc) {
+			LOGGER.error("An exception has occurred while closing the front-end interface", exc);
+		}
+	}
+
+	/**
+	 * Waits until every dispatched message has been responded, or the specified
+	 * timeout elapses.
+	 *
+	 * @param timeoutSeconds The maximum time to wait, in seconds.
+	 * @throws InterruptedException If the calling thread is interrupted while
+	 *                              waiting.
+	 */
+	private void awaitPendingResponses(final long timeoutSeconds) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+
+		synchronized (pendingResponseCount) {
+			long remainingMillis;
+			while (
+				pendingResponseCount.get() > 0 &&
+				(remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0
+			) {
+				pendingResponseCount.wait(remainingMillis);
+			}
+		}
+	}
+
+	/**
+	 * Accounts for a dispatched message whose response was sent to the send stage
+	 * or discarded, waking up {@link #stop()} if it was the last one.
+	 */
+	private void responseCompleted() {
+		if (pendingResponseCount.decrementAndGet() == 0) {
+			synchronized (pendingResponseCount) {
+				pendingResponseCount.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Acknowledges a message to the front-end, and records that its response is
+	 * no longer pending.
+	 *
+	 * @param message          The handled message.
+	 * @param serializationKey The serialization key of the message. It may be
+	 *                         {@code null}.
+	 */
+	private void messageHandled(final T message, final Object serializationKey) {
+		acknowledgeMessage(message, serializationKey);
+		responseCompleted();
+	}
+
+	/**
+	 * Acknowledges a message without a response to the front-end, after the
+	 * responses to the previous messages with the same serialization key were
+	 * sent. Front-ends may take the acknowledgement of a message as the
+	 * acknowledgement of the previous ones too.
+	 *
+	 * @param message          The handled message.
+	 * @param serializationKey The serialization key of the message. It may be
+	 *                         {@code null}.
+	 */
+	private void acknowledgeMessage(final T message, final Object serializationKey) {
+		if (serializationKey == null) {
+			acknowledgeMessage(message);
+			return;
+		}
+
+		try {
+			sendSerialExecutor.execute(serializationKey, () -> acknowledgeMessage(message));
+		} catch (final RejectedExecutionException exc) {
+			// Do not leave the message pending until another one is acknowledged
+			acknowledgeMessage(message);
+		}
 	}
 
 	/**
-	 * Generates a text message response to the text message received from a user.
-	 * This method can be executed in any thread in a concurrent manner. When this
-	 * method is invoked, it is guaranteed that the message is meant to be addressed
-	 * by the bot, without further checks needed.
+	 * Acknowledges a handled message to the front-end, logging any error.
+	 *
+	 * @param message The handled message.
+	 */
+	private void acknowledgeMessage(final T message) {
+		try {
+			frontendInterface.acknowledgeMessage(message);
+		} catch (final RuntimeException exc) {
+			LOGGER.warn("Couldn't acknowledge a handled message", exc);
+		}
+	}
+
+	/**
+	 * Sends a response in the send stage, so that slow front-end requests don't
+	 * hold threads that could be generating other responses. Responses with the
+	 * same serialization key are sent in order. The message is acknowledged to
+	 * the front-end once its response is handed to it.
+	 *
+	 * @param message          The message the response is for.
+	 * @param response         The response to send.
+	 * @param serializationKey The serialization key of the message the response
+	 *                         is for. It may be {@code null}.
+	 */
+	private void sendResponse(final T message, final T response, final Object serializationKey) {
+		final Runnable sendTask = () -> {
+			try {
+				frontendInterface.sendMessage(response);
+			} catch (final FrontendCommunicationException exc) {
+				LOGGER.error("An exception has occurred while sending a response to a message", exc);
+			} finally {
+				acknowledgeMessage(message);
+			}
+		};
+
+		try {
+			if (serializationKey != null) {
+				sendSerialExecutor.execute(serializationKey, sendTask);
+			} else {
+				sendStageExecutor.execute(sendTask);
+			}
+		} catch (final RejectedExecutionException exc) {
+			LOGGER.error("The send stage is saturated or shut down. The response won't be sent", exc);
+			acknowledgeMessage(message);
+		}
+	}
+
+	/**
+	 * Registers a management bean in the platform MBean server, so that it can be
+	 * monitored. The bean will be unregistered when this dispatcher stops.
+	 *
+	 * @param mxBean     The management bean to register.
+	 * @param objectName The object name to register the bean with.
+	 */
+	private void registerMXBean(final Object mxBean, final String objectName) {
+		try {
+			final ObjectName parsedObjectName = new ObjectName(objectName);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(mxBean, parsedObjectName);
+			registeredMXBeanNames.add(parsedObjectName);
+		} catch (final JMException exc) {
+			LOGGER.warn("Couldn't register the {} management bean", objectName, exc);
+		}
+	}
+
+	/**
+	 * Starts computing the response to a message once the adaptive concurrency
+	 * limit allows it, and updates the limit with the time it took when it
+	 * completes.
+	 * <p>
+	 * No thread waits for the limit: if it is reached, the computation is
+	 * started in the executor when a permit is released. Otherwise, worker
+	 * threads could be waiting for permits that are only released when the
+	 * responses that hold them get a worker thread to complete.
+	 * </p>
+	 *
+	 * @param message The user text message to generate a response to.
+	 * @param context The context to generate the response with.
+	 * @return A completion stage that completes with the generated text message
+	 *         with the response, or {@code null} if no response should be sent.
+	 * @throws ResponseGenerationException If an error occurred that made it
+	 *                                     impossible to start computing a
+	 *                                     response.
+	 */
+	private CompletionStage<T> computeLimitedResponse(
+		final T message, final ResponseGenerationContext context
+	) throws ResponseGenerationException {
+		// Shed messages are cheap to respond, and their latency
+		// is not representative
+		if (concurrencyLimiter == null || context.getOverloadAction() != null) {
+			return computeResponse(message, context);
+		}
+
+		final CompletableFuture<Void> permit = concurrencyLimiter.acquireAsync();
+		if (permit.isDone()) {
+			return computePermittedResponse(message, context);
+		}
+
+		final CompletableFuture<T> responseFuture = new CompletableFuture<>();
+		permit.thenRun(() -> {
+			// Do not run the computation in the thread that released the permit
+			try {
+				executorService.execute(() -> {
+					try {
+						computePermittedResponse(message, context).whenComplete(
+							(final T response, final Throwable exc) -> {
+								if (exc != null) {
+									responseFuture.completeExceptionally(exc);
+								} else {
+									responseFuture.complete(response);
+								}
+							}
+						);
+					} catch (final ResponseGenerationException | RuntimeException exc) {
+						responseFuture.completeExceptionally(exc);
+					}
+				});
+			} catch (final RejectedExecutionException exc) {
+				concurrencyLimiter.release();
+				responseFuture.completeExceptionally(exc);
+			}
+		});
+
+		return responseFuture;
+	}
+
+	/**
+	 * Starts computing the response to a message with an acquired concurrency
+	 * limiter permit, releasing it when the computation completes.
+	 *
+	 * @param message The user text message to generate a response to.
+	 * @param context The context to generate the response with.
+	 * @return A completion stage that completes with the generated text message
+	 *         with the response, or {@code null} if no response should be sent.
+	 * @throws ResponseGenerationException If an error occurred that made it
+	 *                                     impossible to start computing a
+	 *                                     response.
+	 */
+	private CompletionStage<T> computePermittedResponse(
+		final T message, final ResponseGenerationContext context
+	) throws ResponseGenerationException {
+		final long startTime = System.nanoTime();
+		final CompletionStage<T> responseStage;
+		try {
+			responseStage = computeResponse(message, context);
+		} catch (final ResponseGenerationException | RuntimeException exc) {
+			concurrencyLimiter.release(System.nanoTime() - startTime);
+			throw exc;
+		}
+
+		return responseStage.whenComplete(
+			(final T response, final Throwable exc) -> concurrencyLimiter.release(System.nanoTime() - startTime)
+		);
+	}
+
+	/**
+	 * Decides how a message that is about to be processed will be responded,
+	 * taking into account how long it waited for a worker thread, and sets its
+	 * time budget if response deadlines are enabled.
+	 * <p>
+	 * The time a message waits behind earlier messages with the same
+	 * serialization key does not count as waiting for a worker thread, so that
+	 * a burst of messages in a single conversation does not make the messages
+	 * of other conversations be shed.
+	 * </p>
+	 *
+	 * @param receptionTime The value of {@link System#nanoTime()} when the
+	 *                      message was received.
+	 * @param eligibleTime  The value of {@link System#nanoTime()} when the
+	 *                      message became eligible to be processed, regarding
+	 *                      the messages with the same serialization key.
+	 * @return The context to generate the response to the message with.
+	 */
+	private ResponseGenerationContext admitMessage(final long receptionTime, final long eligibleTime) {
+		OverloadAction overloadAction = null;
+
+		if (admissionController != null) {
+			final long now = System.nanoTime();
+			final long waitingTime = now - (eligibleTime - receptionTime > 0 ? eligibleTime : receptionTime);
+
+			if (admissionController.shouldShed(waitingTime, now)) {
+				overloadAction = settings.getAdmissionControlSettings().getOverloadAction();
+
+				LOGGER.info(
+					"Shedding a message that waited {} ms for a worker thread: {}",
+					TimeUnit.NANOSECONDS.toMillis(waitingTime), overloadAction
+				);
+			}
+		}
+
+		// The time budget counts from reception, so time spent waiting is not free
+		final ResponseDeadlineSettings responseDeadlineSettings = settings.getBehaviorSettings()
+			.getResponseDeadlineSettings();
+		if (responseDeadlineSettings != null) {
+			return new ResponseGenerationContext(
+				overloadAction, receptionTime + TimeUnit.MILLISECONDS.toNanos(responseDeadlineSettings.getBudget())
+			);
+		}
+
+		return overloadAction != null ?
+			new ResponseGenerationContext(overloadAction) : ResponseGenerationContext.DEFAULT;
+	}
+
+	/**
+	 * Creates an executor that runs each task in a new virtual thread, if the Java
+	 * runtime supports virtual threads. As this code is compiled for an older
+	 * Java version, the virtual threads API is accessed via reflection.
+	 *
+	 * @return The created executor, or {@code null} if virtual threads are not
+	 *         supported.
+	 */
+	private static ExecutorService createVirtualThreadPerTaskExecutor() {
+		try {
+			final Class<?> threadBuilderClass = Class.forName("java.lang.Thread$Builder");
+
+			Object threadBuilder = Thread.class.getMethod("ofVirtual").invoke(null);
+			threadBuilder = threadBuilderClass.getMethod("name", String.class, long.class).invoke(
+				threadBuilder, "Virtual dispatch thread ", 0L
+			);
+
+			final ThreadFactory threadFactory = (ThreadFactory) threadBuilderClass.getMethod("factory").invoke(
+				threadBuilder
+			);
+
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(
+				null, threadFactory
+			);
+		} catch (final ReflectiveOperationException | ClassCastException exc) {
+			LOGGER.debug("Couldn't create a virtual thread per task executor", exc);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the executor that runs the steps of response generation that are
+	 * not bound to a particular stage, such as natural language processing. It is
+	 * meant to be passed to
+	 * {@link ResponseGenerator#generateResponseAsync(String, VacBotSettings, ResponseGenerationContext, Executor)}.
+	 *
+	 * @return The described executor.
+	 */
+	protected final Executor getResponseGenerationExecutor() {
+		return executorService;
+	}
+
+	/**
+	 * Starts generating a text message response to the text message received from
+	 * a user. This method can be executed in any thread in a concurrent manner.
+	 * When this method is invoked, it is guaranteed that the message is meant to
+	 * be addressed by the bot, without further checks needed.
+	 * <p>
+	 * Implementations should not block waiting for the response to be generated,
+	 * but return a completion stage that completes when it is, so that threads
+	 * are not held while other stages work.
+	 * </p>
 	 *
 	 * @param message The user text message to generate a response to. It won't be
 	 *                {@code null}.
-	 * @return The generated text message with the response. If {@code null}, no
-	 *         response will be sent.
+	 * @param context The context to generate the response with, which tells
+	 *                whether the message should be shed because the bot is
+	 *                overloaded. It won't be {@code null}.
+	 * @return A completion stage that completes with the generated text message
+	 *         with the response. If it completes with {@code null}, no response
+	 *         will be sent. If it completes exceptionally, the error will be
+	 *         logged.
 	 * @throws ResponseGenerationException If an error occurred that made it
-	 *                                     impossible to compute a response.
+	 *                                     impossible to start computing a
+	 *                                     response.
+	 */
+	protected abstract CompletionStage<T> computeResponse(
+		final T message, final ResponseGenerationContext context
+	) throws ResponseGenerationException;
+
+	/**
+	 * Returns the key that identifies the conversation the specified message
+	 * belongs to. Messages with the same key are responded one at a time, in the
+	 * order they were received, while messages with different keys are
+	 * responded concurrently. This prevents responses from being sent out of
+	 * order, and a single conversation from occupying many worker threads.
+	 * <p>
+	 * The default implementation returns {@code null}, so messages are not
+	 * serialized.
+	 * </p>
+	 *
+	 * @param message The user text message. It won't be {@code null}.
+	 * @return The serialization key of the message, with proper
+	 *         {@link Object#equals(Object)} and {@link Object#hashCode()}
+	 *         implementations. If {@code null}, the message will be responded
+	 *         without waiting for any other message.
+	 */
+	protected Object getSerializationKey(final T message) {
+		return null;
+	}
+
+	/**
+	 * Checks whether the specified message belongs to a conversation with several
+	 * users, which is given less priority than private conversations when fair
+	 * scheduling is enabled.
+	 * <p>
+	 * The default implementation returns {@code false}.
+	 * </p>
+	 *
+	 * @param message The user text message. It won't be {@code null}.
+	 * @return True if the message belongs to a group conversation, false
+	 *         otherwise.
 	 */
-	protected abstract T computeResponse(final T message) throws ResponseGenerationException;
+	protected boolean isGroupConversation(final T message) {
+		return false;
+	}
+
+	/**
+	 * Returns the key that identifies the messages that may be merged with the
+	 * specified message when message coalescing is enabled, which usually are
+	 * those of the same user in the same conversation. Consecutive messages with
+	 * the same key that arrive close together are merged with
+	 * {@link #coalesceMessages(TextMessage, TextMessage)} before computing their
+	 * response.
+	 * <p>
+	 * The default implementation returns {@code null}, so messages are not
+	 * merged.
+	 * </p>
+	 *
+	 * @param message The user text message. It won't be {@code null}.
+	 * @return The coalescing key of the message, with proper
+	 *         {@link Object#equals(Object)} and {@link Object#hashCode()}
+	 *         implementations. If {@code null}, the message won't be merged with
+	 *         other messages.
+	 */
+	protected Object getCoalescingKey(final T message) {
+		return null;
+	}
+
+	/**
+	 * Merges two consecutive user text messages with the same coalescing key
+	 * into a single message, whose response will be computed instead of those
+	 * of the merged messages.
+	 * <p>
+	 * The default implementation returns {@code null}, so messages are not
+	 * merged.
+	 * </p>
+	 *
+	 * @param previousMessage The previous message, which may be the result of
+	 *                        merging other messages. It won't be {@code null}.
+	 * @param message         The message that follows the previous message. It
+	 *                        won't be {@code null}.
+	 * @return The merged message. If {@code null}, the messages are responded
+	 *         separately.
+	 */
+	protected T coalesceMessages(final T previousMessage, final T message) {
+		return null;
+	}
+
+	/**
+	 * Joins the texts of two consecutive messages into a single utterance,
+	 * separating them as different sentences if the first one lacks final
+	 * punctuation, as users often omit it in short messages.
+	 *
+	 * @param previousText The text of the previous message.
+	 * @param text         The text of the message that follows it.
+	 * @return The joined text.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	protected static String joinUtterances(@NonNull final String previousText, @NonNull final String text) {
+		final String trimmedPreviousText = previousText.stripTrailing();
+
+		if (trimmedPreviousText.isEmpty()) {
+			return text;
+		}
+
+		final char lastCharacter = trimmedPreviousText.charAt(trimmedPreviousText.length() - 1);
+
+		return trimmedPreviousText + (lastCharacter == '.' || lastCharacter == '?' || lastCharacter == '!' ? " " : ". ") +
+			text.stripLeading();
+	}
 
 	/**
 	 * Calls the {@link FrontendInterface#notifyForthcomingResponse(U)} method on
@@ -247,4 +891,89 @@ public abstract class TextMessageDispatcher<T extends TextMessage, U> {
 			LOGGER.trace("Couldn't notify the forthcoming response", exc);
 		}
 	}
+
+	/**
+	 * The thread pool that processes incoming text messages in the thread pool
+	 * dispatch mode.
+	 * <p>
+	 * It prefers creating threads to queuing tasks, up to a maximum, and then
+	 * queues tasks without bound, so that the work of already dispatched
+	 * messages is never rejected. Instead, new messages are not dispatched while
+	 * the queue exceeds a bound derived from the free memory.
+	 * </p>
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class DispatchThreadPoolExecutor extends ThreadPoolExecutor {
+		private final int maximumQueuedTasks = (int) Math.min(
+			// Consider that each task uses 4 MiB while enqueued (seems pessimistic)
+			Runtime.getRuntime().freeMemory() / 4194304, Integer.MAX_VALUE
+		);
+		private final AtomicInteger queuedTaskCount = new AtomicInteger();
+
+		/**
+		 * Creates and starts a new dispatch thread pool.
+		 *
+		 * @param workerThreads The number of core threads of the pool.
+		 */
+		DispatchThreadPoolExecutor(final int workerThreads) {
+			super(
+				// Use at least hardwareThreads threads,
+				// that can be expanded up to hardwareThreads * 32 threads
+				// when load is high, for maximum throughput. We prefer that to
+				// queuing because extra threads usually allows the OS scheduler
+				// to better manage blocking I/O and such
+				workerThreads, workerThreads * 32,
+				// Excess threads get deleted after 60 seconds
+				60, TimeUnit.SECONDS,
+				new LinkedTransferQueue<>() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public boolean offer(final Runnable e) {
+						// When the core threads are working, prefer
+						// reusing excess threads or creating new ones
+						// before actual queuing
+						return tryTransfer(e);
+					}
+				}
+			);
+
+			// If we reject a task, that was because we've created
+			// the maximum threads and no thread was available
+			// to handle the task. Therefore, start queuing tasks
+			setRejectedExecutionHandler((final Runnable r, final ThreadPoolExecutor e) -> {
+				if (e.isShutdown()) {
+					throw new RejectedExecutionException("The executor was shut down");
+				}
+
+				queuedTaskCount.incrementAndGet();
+				try {
+					e.getQueue().put(r);
+				} catch (final InterruptedException ignored) {
+					// Never happens according to LinkedTransferQueue implementation,
+					// because it is unbounded
+				}
+			});
+
+			// Create core threads now for less latency on the first message
+			prestartAllCoreThreads();
+		}
+
+		/**
+		 * Checks whether every thread of this pool is busy and the queued tasks
+		 * reached their bound, so that no more messages should be dispatched.
+		 *
+		 * @return True if this pool is saturated, false otherwise.
+		 */
+		boolean isSaturated() {
+			return queuedTaskCount.get() >= maximumQueuedTasks || isShutdown();
+		}
+
+		@Override
+		protected void beforeExecute(final Thread t, final Runnable r) {
+			// We can queue one more task when we begin execution of a task
+			queuedTaskCount.updateAndGet((final int value) -> Math.max(value - 1, 0));
+		}
+	}
 }
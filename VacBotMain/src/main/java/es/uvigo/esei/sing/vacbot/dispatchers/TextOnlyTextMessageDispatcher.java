@@ -2,8 +2,12 @@
 
 package es.uvigo.esei.sing.vacbot.dispatchers;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 import es.uvigo.esei.sing.vacbot.frontend.FrontendInterface;
 import es.uvigo.esei.sing.vacbot.frontend.TextOnlyTextMessage;
+import es.uvigo.esei.sing.vacbot.responsegen.ResponseGenerationContext;
 import es.uvigo.esei.sing.vacbot.responsegen.ResponseGenerationException;
 import es.uvigo.esei.sing.vacbot.responsegen.ResponseGenerator;
 import es.uvigo.esei.sing.vacbot.settings.MessageDispatcherFactory;
@@ -34,15 +38,34 @@ public final class TextOnlyTextMessageDispatcher extends TextMessageDispatcher<T
 	}
 
 	@Override
-	protected TextOnlyTextMessage computeResponse(final TextOnlyTextMessage message) throws ResponseGenerationException {
+	protected Object getCoalescingKey(final TextOnlyTextMessage message) {
+		// There is a single user
+		return TextOnlyTextMessage.class;
+	}
+
+	@Override
+	protected TextOnlyTextMessage coalesceMessages(
+		final TextOnlyTextMessage previousMessage, final TextOnlyTextMessage message
+	) {
+		return new TextOnlyTextMessage(joinUtterances(previousMessage.getText(), message.getText()));
+	}
+
+	@Override
+	protected CompletionStage<TextOnlyTextMessage> computeResponse(
+		final TextOnlyTextMessage message, final ResponseGenerationContext context
+	) throws ResponseGenerationException {
 		final String messageText = message.getText();
-		String responseText = null;
 
-		if (ResponseGenerator.hasResponseTo(messageText)) {
-			notifyForthcomingResponse(null);
-			responseText = ResponseGenerator.generateResponseTo(messageText, settings);
+		if (!ResponseGenerator.hasResponseTo(messageText)) {
+			return CompletableFuture.completedFuture(null);
 		}
 
-		return responseText != null ? new TextOnlyTextMessage(responseText) : null;
+		notifyForthcomingResponse(null);
+
+		return ResponseGenerator.generateResponseAsync(
+			messageText, settings, context, getResponseGenerationExecutor()
+		).thenApply((final String responseText) ->
+			responseText != null ? new TextOnlyTextMessage(responseText) : null
+		);
 	}
 }
@@ -2,6 +2,8 @@
 
 package es.uvigo.esei.sing.vacbot.frontend;
 
+import java.util.function.IntSupplier;
+
 /**
  * The contract that any front-end interface available to VacBot must implement.
  * <p>
@@ -88,4 +90,44 @@ public interface FrontendInterface<T extends TextMessage, U> extends AutoCloseab
 	public default void notifyForthcomingResponse(final U notificationData) throws FrontendCommunicationException {
 		// Do nothing
 	}
+
+	/**
+	 * Tells the front-end that the bot is done with a message returned by
+	 * {@link #awaitNextMessage()}: its response, if any, was handed to
+	 * {@link #sendMessage(TextMessage)}, or no response will be sent.
+	 * <p>
+	 * Messages that result from merging several messages stand for all of them.
+	 * Front-ends that store received messages until they are handled may use this
+	 * to forget about them.
+	 * </p>
+	 *
+	 * @param message The handled message.
+	 * @throws IllegalArgumentException If {@code message} is {@code null}.
+	 * @implNote The default implementation of this method does nothing.
+	 */
+	public default void acknowledgeMessage(final T message) {
+		// Do nothing
+	}
+
+	/**
+	 * Gives the front-end a way to know how many messages returned by
+	 * {@link #awaitNextMessage()} the bot is still handling, which is the load
+	 * the bot is under.
+	 * <p>
+	 * Front-ends that can leave messages in the remote front-end layer may use it
+	 * to stop receiving them while the bot is saturated, as the bot takes
+	 * messages as soon as they arrive, even if it can't respond them yet.
+	 * </p>
+	 *
+	 * @param pendingMessageCounter The supplier of the number of messages that
+	 *                              were returned by {@link #awaitNextMessage()}
+	 *                              but not handled yet. It may be called from
+	 *                              any thread.
+	 * @throws IllegalArgumentException If {@code pendingMessageCounter} is
+	 *                                  {@code null}.
+	 * @implNote The default implementation of this method does nothing.
+	 */
+	public default void setPendingMessageCounter(final IntSupplier pendingMessageCounter) {
+		// Do nothing
+	}
 }
@@ -0,0 +1,64 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import lombok.NonNull;
+
+/**
+ * A Telegram API transport that executes methods with the blocking HTTP client
+ * of the Telegram bot library.
+ * <p>
+ * As that client blocks, methods are executed in the thread that asks for
+ * their execution, and the futures they return are already complete.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+final class AbsSenderTransport implements TelegramApiTransport {
+	private final AbsSender telegramBot;
+
+	/**
+	 * Creates a new transport that executes methods with the specified bot.
+	 *
+	 * @param telegramBot The bot to execute methods with.
+	 * @throws IllegalArgumentException If {@code telegramBot} is {@code null}.
+	 */
+	AbsSenderTransport(@NonNull final AbsSender telegramBot) {
+		this.telegramBot = telegramBot;
+	}
+
+	@Override
+	public <T extends Serializable> PreparedMethod<T> prepare(@NonNull final BotApiMethod<T> method) throws TelegramApiException {
+		method.validate();
+
+		return new PreparedMethod<T>() {
+			@Override
+			public CompletableFuture<T> executeAsync() {
+				try {
+					return CompletableFuture.completedFuture(execute());
+				} catch (final TelegramApiException | RuntimeException exc) {
+					return CompletableFuture.failedFuture(exc);
+				}
+			}
+
+			@Override
+			public T execute() throws TelegramApiException {
+				// Sends a POST request to Telegram servers
+				return telegramBot.execute(method);
+			}
+		};
+	}
+
+	@Override
+	public void close() {
+		// The client of the library has nothing to release
+	}
+}
@@ -0,0 +1,50 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
+
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Identifies the Telegram bot account, with the strings that users write to
+ * mention it precomputed, so that checking whether a message is addressed to
+ * the bot doesn't need to call the Telegram API.
+ *
+ * @author Alejandro González García
+ * @implNote This class is immutable and, therefore, thread-safe.
+ */
+@ToString
+final class BotIdentity {
+	/**
+	 * The user ID of the bot.
+	 */
+	@Getter
+	private final Integer id;
+	private final String userNameMention;
+	private final String firstNameMention;
+
+	/**
+	 * Creates the identity of the bot from its Telegram user.
+	 *
+	 * @param botUser The user of the bot, as returned by the Telegram API.
+	 * @throws IllegalArgumentException If {@code botUser} is {@code null}.
+	 */
+	BotIdentity(@NonNull final User botUser) {
+		this.id = botUser.getId();
+		this.userNameMention = "@" + botUser.getUserName();
+		this.firstNameMention = "@" + botUser.getFirstName();
+	}
+
+	/**
+	 * Checks whether the specified mention entity text refers to the bot.
+	 *
+	 * @param mentionText The text of the mention entity.
+	 * @return True if the mention refers to the bot, false otherwise.
+	 */
+	boolean isMentionedBy(final String mentionText) {
+		return userNameMention.equals(mentionText) || firstNameMention.equals(mentionText);
+	}
+}
@@ -0,0 +1,158 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.send.SendChatAction;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import lombok.NonNull;
+
+/**
+ * Sends "typing" chat actions through the Telegram API in the background, so
+ * that the threads that generate responses don't wait for them.
+ * <p>
+ * A chat action is only sent if the response is not sent within a delay, as
+ * fast responses need no feedback. Telegram shows a chat action for five
+ * seconds, or until the bot sends a message to the chat, so only one chat
+ * action is sent per chat during that time, no matter how many responses are
+ * being generated for it.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+final class ChatActionNotifier implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ChatActionNotifier.class);
+
+	/**
+	 * How long Telegram shows a chat action, in seconds.
+	 */
+	private static final long CHAT_ACTION_DURATION = 5;
+
+	private final TelegramApiTransport transport;
+	private final long delayNanos;
+	/**
+	 * The chat actions that are about to be sent or are being shown, by chat ID.
+	 */
+	private final ConcurrentMap<Long, ChatAction> chatActions = new ConcurrentHashMap<>();
+	private final ScheduledThreadPoolExecutor senderExecutor;
+
+	/**
+	 * Creates and starts a new chat action notifier.
+	 *
+	 * @param transport The transport to send chat actions with.
+	 * @param delay     How long to wait for the response before sending a chat
+	 *                  action, in milliseconds.
+	 * @throws IllegalArgumentException If {@code transport} is {@code null}.
+	 */
+	ChatActionNotifier(@NonNull final TelegramApiTransport transport, final long delay) {
+		this.transport = transport;
+		this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delay);
+		this.senderExecutor = new ScheduledThreadPoolExecutor(1, (final Runnable r) -> {
+			final Thread thread = new Thread(r, "Telegram chat action sender");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+		senderExecutor.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Schedules a "typing" chat action to be sent to a chat after the delay, if
+	 * no chat action for it is pending or being shown already.
+	 *
+	 * @param chatId The ID of the chat.
+	 * @throws IllegalArgumentException If {@code chatId} is {@code null}.
+	 */
+	void notifyTyping(@NonNull final Long chatId) {
+		chatActions.computeIfAbsent(chatId, (final Long id) -> {
+			final ChatAction chatAction = new ChatAction();
+
+			try {
+				chatAction.sendTask = senderExecutor.schedule(
+					() -> send(id, chatAction), delayNanos, TimeUnit.NANOSECONDS
+				);
+			} catch (final RejectedExecutionException exc) {
+				// Closed, so there will be no response to wait for
+				return null;
+			}
+
+			return chatAction;
+		});
+	}
+
+	/**
+	 * Cancels the pending chat action of a chat, because a message is being sent
+	 * to it, which also makes Telegram stop showing any chat action.
+	 *
+	 * @param chatId The ID of the chat.
+	 * @throws IllegalArgumentException If {@code chatId} is {@code null}.
+	 */
+	void cancel(@NonNull final Long chatId) {
+		final ChatAction chatAction = chatActions.remove(chatId);
+
+		if (chatAction != null) {
+			chatAction.sendTask.cancel(false);
+		}
+	}
+
+	/**
+	 * Sends a chat action, without waiting for it to be sent, and remembers it
+	 * while Telegram shows it.
+	 *
+	 * @param chatId     The ID of the chat.
+	 * @param chatAction The chat action to send.
+	 */
+	private void send(final Long chatId, final ChatAction chatAction) {
+		try {
+			transport.prepare(new SendChatAction(chatId, "typing")).executeAsync().whenComplete(
+				(final Boolean result, final Throwable exc) -> {
+					if (exc != null) {
+						// Minor failure, continue as if nothing happened
+						LOGGER.trace("Couldn't notify the forthcoming response", exc);
+					}
+				}
+			);
+		} catch (final TelegramApiException | RuntimeException exc) {
+			LOGGER.trace("Couldn't notify the forthcoming response", exc);
+		}
+
+		try {
+			senderExecutor.schedule(
+				() -> chatActions.remove(chatId, chatAction), CHAT_ACTION_DURATION, TimeUnit.SECONDS
+			);
+		} catch (final RejectedExecutionException ignored) {
+			// Closed, so nothing will be sent again anyway
+		}
+	}
+
+	/**
+	 * Stops sending chat actions. Pending chat actions are discarded.
+	 */
+	@Override
+	public void close() {
+		senderExecutor.shutdownNow();
+	}
+
+	/**
+	 * A chat action that is about to be sent or is being shown.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class ChatAction {
+		/**
+		 * The task that sends the chat action. It is set while holding the map lock
+		 * for the chat, before the chat action is visible to other threads.
+		 */
+		private ScheduledFuture<?> sendTask;
+	}
+}
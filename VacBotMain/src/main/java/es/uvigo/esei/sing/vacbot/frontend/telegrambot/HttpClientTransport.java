@@ -0,0 +1,126 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import lombok.NonNull;
+
+/**
+ * A Telegram API transport that executes methods with the HTTP client of the
+ * JDK, without blocking any thread while requests are in flight.
+ * <p>
+ * The client prefers HTTP/2, which the Telegram Bot API supports, so every
+ * request is multiplexed over a single persistent connection. Methods are
+ * serialized once, when they are prepared, and the URI of each kind of method
+ * is computed once, too.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+final class HttpClientTransport implements TelegramApiTransport {
+	private static final ObjectWriter METHOD_WRITER = TelegramUpdateParser.OBJECT_MAPPER.writer();
+
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+	/**
+	 * How long to wait for the response to a request. It must be longer than the
+	 * longest long polling timeout.
+	 */
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(75);
+
+	private final String methodUriPrefix;
+	private final ConcurrentMap<String, URI> methodUris = new ConcurrentHashMap<>();
+	private final ExecutorService responseExecutor;
+	private final HttpClient httpClient;
+
+	/**
+	 * Creates a new transport that executes methods on the specified Telegram Bot
+	 * API server.
+	 *
+	 * @param baseUrl The URL of the Telegram Bot API server, which the token is
+	 *                appended to, like in the Telegram bot library. It may be a
+	 *                plain HTTP URL, to use local stand-in servers.
+	 * @param token   The token of the bot.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	HttpClientTransport(@NonNull final String baseUrl, @NonNull final String token) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+
+		this.methodUriPrefix = baseUrl + token + "/";
+		this.responseExecutor = Executors.newCachedThreadPool((final Runnable r) -> {
+			final Thread thread = new Thread(r, "Telegram API client thread " + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+
+			return thread;
+		});
+		this.httpClient = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_2)
+			.connectTimeout(CONNECT_TIMEOUT)
+			.executor(responseExecutor)
+			.build();
+	}
+
+	@Override
+	public <T extends Serializable> PreparedMethod<T> prepare(@NonNull final BotApiMethod<T> method) throws TelegramApiException {
+		method.validate();
+
+		final byte[] body;
+		try {
+			body = METHOD_WRITER.writeValueAsBytes(method);
+		} catch (final JsonProcessingException exc) {
+			throw new TelegramApiException("Unable to serialize " + method.getMethod() + " method", exc);
+		}
+
+		final HttpRequest request = HttpRequest.newBuilder(getMethodUri(method.getMethod()))
+			.timeout(REQUEST_TIMEOUT)
+			.header("Content-Type", "application/json; charset=utf-8")
+			.POST(HttpRequest.BodyPublishers.ofByteArray(body))
+			.build();
+
+		return () -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+			.thenApply((final HttpResponse<String> response) -> {
+				// Error responses have a body that describes the error too
+				try {
+					return method.deserializeResponse(response.body());
+				} catch (final TelegramApiRequestException exc) {
+					throw new CompletionException(exc);
+				}
+			});
+	}
+
+	/**
+	 * Returns the URI to send the requests of a kind of method to.
+	 *
+	 * @param methodName The name of the method.
+	 * @return The described URI.
+	 */
+	private URI getMethodUri(final String methodName) {
+		return methodUris.computeIfAbsent(methodName, (final String name) -> URI.create(methodUriPrefix + name));
+	}
+
+	@Override
+	public void close() {
+		// The client stops once its executor is shut down and unreachable
+		responseExecutor.shutdown();
+	}
+}
@@ -0,0 +1,193 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.updates.DeleteWebhook;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import es.uvigo.esei.sing.vacbot.util.RingBuffer;
+import lombok.NonNull;
+
+/**
+ * Fetches updates from the Telegram API by long polling, in a background
+ * thread, without fetching more updates than the bot can take.
+ * <p>
+ * The bot takes messages from the ingress buffer as soon as they arrive, and
+ * queues them for the workers. Therefore, the messages the bot is still
+ * handling are counted as if they took up slots of the buffer, and each
+ * request asks for at most as many updates as free slots are left. When less
+ * than a quarter of the buffer is free, because the bot is saturated, fetching
+ * pauses until half of the buffer is free again. Meanwhile, updates stay in
+ * the Telegram servers, which keep them for up to 24 hours, instead of in our
+ * heap.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+final class LongPollingUpdateSource implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LongPollingUpdateSource.class);
+
+	/**
+	 * The maximum number of updates that the Telegram API returns per request.
+	 */
+	private static final int MAXIMUM_LIMIT = 100;
+	/**
+	 * How often a paused update source checks whether the buffer has room again,
+	 * in milliseconds.
+	 */
+	private static final long PAUSE_CHECK_PERIOD = 100;
+	private static final long MINIMUM_BACKOFF = 500;
+	private static final long MAXIMUM_BACKOFF = TimeUnit.MINUTES.toMillis(1);
+
+	private final TelegramApiTransport transport;
+	private final RingBuffer<?> messageBuffer;
+	private final IntSupplier pendingMessageCounter;
+	private final int timeout;
+	private final Consumer<Update> updateConsumer;
+	private final Thread pollingThread;
+	private volatile boolean running = true;
+
+	/**
+	 * Creates and starts a new long polling update source.
+	 *
+	 * @param transport             The transport to fetch updates with.
+	 * @param messageBuffer         The buffer the fetched updates are put in,
+	 *                              whose free slots limit how many updates are
+	 *                              fetched.
+	 * @param pendingMessageCounter The supplier of the number of messages taken
+	 *                              from the buffer that the bot is still
+	 *                              handling.
+	 * @param timeout               How long each request waits for updates, in
+	 *                              seconds.
+	 * @param updateConsumer        The consumer that puts each fetched update in
+	 *                              the buffer. It is called from the polling
+	 *                              thread only.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	LongPollingUpdateSource(
+		@NonNull final TelegramApiTransport transport, @NonNull final RingBuffer<?> messageBuffer,
+		@NonNull final IntSupplier pendingMessageCounter, final int timeout,
+		@NonNull final Consumer<Update> updateConsumer
+	) {
+		this.transport = transport;
+		this.messageBuffer = messageBuffer;
+		this.pendingMessageCounter = pendingMessageCounter;
+		this.timeout = timeout;
+		this.updateConsumer = updateConsumer;
+		this.pollingThread = new Thread(this::poll, "Telegram long polling thread");
+
+		pollingThread.setDaemon(true);
+		pollingThread.start();
+	}
+
+	/**
+	 * Fetches updates until this update source is closed.
+	 */
+	private void poll() {
+		int offset = 0;
+		long backoff = MINIMUM_BACKOFF;
+		boolean webhookDeleted = false;
+
+		while (running) {
+			try {
+				// Updates are not sent to long polling clients while a webhook is set
+				if (!webhookDeleted) {
+					transport.execute(new DeleteWebhook());
+					webhookDeleted = true;
+				}
+
+				final List<Update> updates = transport.execute(
+					new GetUpdates()
+						.setOffset(offset)
+						.setLimit(Math.min(awaitFreeSlots(), MAXIMUM_LIMIT))
+						.setTimeout(timeout)
+						.setAllowedUpdates(List.of("message"))
+				);
+
+				backoff = MINIMUM_BACKOFF;
+
+				for (final Update update : updates) {
+					// The next request confirms the updates before the offset,
+					// so Telegram won't send them again
+					if (update.getUpdateId() >= offset) {
+						offset = update.getUpdateId() + 1;
+						updateConsumer.accept(update);
+					}
+				}
+			} catch (final TelegramApiException exc) {
+				LOGGER.warn("Couldn't fetch updates from Telegram. Retrying in {} ms", backoff, exc);
+
+				try {
+					Thread.sleep(backoff);
+				} catch (final InterruptedException exc2) {
+					// Closed
+				}
+
+				backoff = Math.min(backoff * 2, MAXIMUM_BACKOFF);
+			} catch (final InterruptedException exc) {
+				// Closed
+			} catch (final RuntimeException exc) {
+				LOGGER.error("An exception has occurred while handling updates", exc);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of free slots in the buffer, minus the messages that the
+	 * bot is still handling, waiting for the workers to free half of it first if
+	 * it is almost full.
+	 *
+	 * @return The number of free slots. It is positive.
+	 * @throws InterruptedException If this update source was closed while
+	 *                              waiting.
+	 */
+	private int awaitFreeSlots() throws InterruptedException {
+		final int capacity = messageBuffer.getCapacity();
+		int freeSlots = getFreeSlots();
+
+		// Don't fetch updates a few at a time while the workers can't keep up
+		if (freeSlots >= Math.max(capacity / 4, 1)) {
+			return freeSlots;
+		}
+
+		LOGGER.debug("The bot is saturated. Update fetching paused");
+
+		while ((freeSlots = getFreeSlots()) < Math.max(capacity / 2, 1)) {
+			Thread.sleep(PAUSE_CHECK_PERIOD);
+		}
+
+		LOGGER.debug("Update fetching resumed");
+
+		return freeSlots;
+	}
+
+	/**
+	 * Returns the number of slots of the buffer that are not taken up by messages
+	 * waiting in it or being handled by the bot.
+	 *
+	 * @return The number of free slots. It may be negative.
+	 */
+	private int getFreeSlots() {
+		return messageBuffer.getCapacity() - messageBuffer.size() - pendingMessageCounter.getAsInt();
+	}
+
+	/**
+	 * Stops fetching updates. The request in progress, if any, is not waited for,
+	 * and the updates it returns are not confirmed.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		pollingThread.interrupt();
+	}
+}
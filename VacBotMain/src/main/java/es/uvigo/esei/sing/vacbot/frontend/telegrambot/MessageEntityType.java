@@ -2,6 +2,9 @@
 
 package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
 
 import org.telegram.telegrambots.meta.api.objects.MessageEntity;
@@ -62,9 +65,9 @@ public enum MessageEntityType {
 		public String adjustEntityInText(final String messageText, final MessageEntity entity) {
 			super.adjustEntityInText(messageText, entity);
 
-			if (entity.getText().startsWith("/start")) {
+			if (entity.getText().startsWith(START_COMMAND)) {
 				// Consider this command as a salutation
-				return "Hello";
+				return START_COMMAND_TEXT;
 			} else {
 				// Remove the command
 				return MENTION.adjustEntityInText(messageText, entity);
@@ -124,6 +127,15 @@ public enum MessageEntityType {
 		}
 	};
 
+	/**
+	 * The command that users send when they start talking to the bot.
+	 */
+	private static final String START_COMMAND = "/start";
+	/**
+	 * The text that replaces messages with the start command.
+	 */
+	private static final String START_COMMAND_TEXT = "Hello";
+
 	/**
 	 * Returns the {@link MessageEntityType} for a given message entity.
 	 *
@@ -162,4 +174,58 @@ public enum MessageEntityType {
 
 		return messageText;
 	}
+
+	/**
+	 * Modifies the specified message text, so that the presence of all its
+	 * entities is normalized to a more amenable form for further operations, as
+	 * if calling {@link #adjustEntityInText(String, MessageEntity)} for each of
+	 * them. Unlike doing that, the text is built in a single pass, and the
+	 * offsets of the entities stay valid as mentions and commands are deleted.
+	 *
+	 * @param messageText The text of the message.
+	 * @param entities    The entities present in the message. It may be
+	 *                    {@code null} if the message has no entities.
+	 * @return The processed message text.
+	 * @throws IllegalArgumentException If {@code messageText} is {@code null},
+	 *                                  or an entity is not adequate.
+	 */
+	public static String adjustEntitiesInText(@NonNull final String messageText, final List<MessageEntity> entities) {
+		if (entities == null || entities.isEmpty()) {
+			return messageText;
+		}
+
+		final List<MessageEntity> sortedEntities = new ArrayList<>(entities);
+		for (final MessageEntity entity : sortedEntities) {
+			// Guard against unboxing throwing NPE and null text
+			if (entity.getOffset() == null || entity.getLength() == null || entity.getText() == null) {
+				throw new IllegalArgumentException("A message entity field has an unexpected null value");
+			}
+		}
+		sortedEntities.sort(Comparator.comparingInt(MessageEntity::getOffset));
+
+		final int messageLength = messageText.length();
+		final StringBuilder stringBuilder = new StringBuilder(messageLength);
+		int copiedLength = 0;
+
+		for (final MessageEntity entity : sortedEntities) {
+			final MessageEntityType entityType = getType(entity);
+
+			if (entityType == BOT_COMMAND && entity.getText().startsWith(START_COMMAND)) {
+				// Consider this command as a salutation
+				return START_COMMAND_TEXT;
+			}
+
+			if (entityType == MENTION || entityType == TEXT_MENTION || entityType == BOT_COMMAND) {
+				// Copy the text up to the entity, skipping it. Extra sanity checks
+				// for out of bounds and overlapping entities
+				final int entityStart = Math.min(Math.max(entity.getOffset(), copiedLength), messageLength);
+				final int entityEnd = Math.max(Math.min(entity.getOffset() + entity.getLength(), messageLength), entityStart);
+
+				stringBuilder.append(messageText, copiedLength, entityStart);
+				copiedLength = entityEnd;
+			}
+		}
+
+		return stringBuilder.append(messageText, copiedLength, messageLength).toString();
+	}
 }
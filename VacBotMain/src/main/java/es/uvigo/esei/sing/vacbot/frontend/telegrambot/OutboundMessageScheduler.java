@@ -0,0 +1,438 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import es.uvigo.esei.sing.vacbot.settings.OutboundRateLimitSettings;
+import es.uvigo.esei.sing.vacbot.util.TokenBucket;
+import lombok.NonNull;
+
+/**
+ * Sends messages through the Telegram API asynchronously, from a small pool of
+ * sender threads, without exceeding its rate limits.
+ * <p>
+ * Messages are sent in order for each chat. Before sending a message, a token
+ * is taken from a global token bucket and from the token bucket of its chat,
+ * whose rate depends on whether the chat is private or a group. When no token
+ * is available, the chat is scheduled to be sent to later, without holding a
+ * sender thread. If Telegram still answers that there were too many requests,
+ * the chat is paused for the time it asks, and the message is sent again.
+ * </p>
+ * <p>
+ * Messages are prepared for sending when they are scheduled, so sending them,
+ * even several times, doesn't need to serialize them again. If the transport
+ * doesn't block, sender threads don't wait for responses from Telegram either.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+final class OutboundMessageScheduler implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(OutboundMessageScheduler.class);
+
+	/**
+	 * The HTTP status code Telegram answers with when a rate limit is exceeded.
+	 */
+	private static final int TOO_MANY_REQUESTS = 429;
+	/**
+	 * How long closing waits for the pending messages to be sent, in seconds.
+	 */
+	private static final long CLOSE_TIMEOUT = 30;
+
+	private final TelegramApiTransport transport;
+	private final OutboundRateLimitSettings settings;
+	private final TokenBucket globalBucket;
+	private final ConcurrentMap<Long, ChatQueue> chatQueues = new ConcurrentHashMap<>();
+	private final ScheduledThreadPoolExecutor senderExecutor;
+	/**
+	 * The number of messages that were scheduled but not sent or given up yet,
+	 * including those whose send is in progress in the transport. It is also
+	 * used as the monitor to wait for it to drop to zero.
+	 */
+	private final AtomicInteger pendingMessageCount = new AtomicInteger();
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates and starts a new outbound message scheduler.
+	 *
+	 * @param transport The transport to send messages with.
+	 * @param settings  The rate limits to honor.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	OutboundMessageScheduler(@NonNull final TelegramApiTransport transport, @NonNull final OutboundRateLimitSettings settings) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+
+		this.transport = transport;
+		this.settings = settings;
+		this.globalBucket = new TokenBucket(settings.getGlobalMessagesPerSecond(), settings.getGlobalMessagesPerSecond());
+		this.senderExecutor = new ScheduledThreadPoolExecutor(
+			settings.getSenderThreads(),
+			(final Runnable r) -> {
+				final Thread thread = new Thread(r, "Telegram sender thread " + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		);
+		senderExecutor.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Schedules a message to be sent, after the messages previously scheduled for
+	 * the same chat.
+	 *
+	 * @param message      The message to send.
+	 * @param chatId       The ID of the chat the message is sent to.
+	 * @param groupChat    Whether the chat is a group chat, with a lower rate
+	 *                     limit.
+	 * @param onCompletion The action to run once the message is sent, or sending
+	 *                     it failed for good. It is not run if this scheduler is
+	 *                     closed before, or this method throws an exception.
+	 * @throws IllegalArgumentException   If some parameter is {@code null}.
+	 * @throws TelegramApiException       If the message is not valid.
+	 * @throws RejectedExecutionException If this scheduler was closed.
+	 */
+	void send(
+		@NonNull final SendMessage message, @NonNull final Long chatId, final boolean groupChat,
+		@NonNull final Runnable onCompletion
+	) throws TelegramApiException {
+		final PendingMessage pendingMessage = new PendingMessage(message, transport.prepare(message), onCompletion);
+		final ChatQueue[] chatQueueToSchedule = new ChatQueue[1];
+
+		// Count the message before checking, so that close() either sees it or
+		// it is rejected
+		pendingMessageCount.incrementAndGet();
+		if (closed) {
+			messageCompleted();
+			throw new RejectedExecutionException("The outbound message scheduler was closed");
+		}
+
+		chatQueues.compute(chatId, (final Long id, final ChatQueue chatQueue) -> {
+			final ChatQueue currentChatQueue = chatQueue != null ? chatQueue : new ChatQueue(id, groupChat);
+
+			currentChatQueue.pendingMessages.add(pendingMessage);
+
+			if (!currentChatQueue.scheduled) {
+				currentChatQueue.scheduled = true;
+				chatQueueToSchedule[0] = currentChatQueue;
+			}
+
+			return currentChatQueue;
+		});
+
+		if (chatQueueToSchedule[0] != null) {
+			schedule(chatQueueToSchedule[0], 0);
+		}
+	}
+
+	/**
+	 * Starts sending the next pending message of a chat, if the rate limits allow
+	 * it now. The following one is scheduled once it is sent.
+	 *
+	 * @param chatQueue The queue of the chat.
+	 */
+	private void sendNext(final ChatQueue chatQueue) {
+		// Only one task per chat is scheduled at once, so the head is stable
+		final PendingMessage pendingMessage = chatQueue.pendingMessages.peek();
+		final long now = System.nanoTime();
+
+		long waitNanos = chatQueue.bucket.tryTake(now);
+		if (waitNanos == 0) {
+			waitNanos = globalBucket.tryTake(now);
+
+			if (waitNanos > 0) {
+				chatQueue.bucket.giveBack();
+			}
+		}
+
+		if (waitNanos > 0) {
+			schedule(chatQueue, waitNanos);
+			return;
+		}
+
+		try {
+			// Sends a POST request to Telegram servers
+			pendingMessage.preparedMessage.executeAsync().whenComplete(
+				(final Message result, final Throwable exc) -> messageSent(chatQueue, pendingMessage, exc)
+			);
+		} catch (final RuntimeException exc) {
+			messageSent(chatQueue, pendingMessage, exc);
+		}
+	}
+
+	/**
+	 * Handles the result of sending the next pending message of a chat, sending
+	 * it again if Telegram asked to wait, or scheduling sending the following
+	 * one otherwise.
+	 *
+	 * @param chatQueue      The queue of the chat.
+	 * @param pendingMessage The message that was sent.
+	 * @param exc            The exception sending the message failed with, or
+	 *                       {@code null} if it was sent.
+	 */
+	private void messageSent(final ChatQueue chatQueue, final PendingMessage pendingMessage, final Throwable exc) {
+		if (exc == null) {
+			LOGGER.trace("Outgoing message: {}", pendingMessage.message);
+		} else {
+			final TelegramApiException apiException = TelegramApiTransport.asTelegramApiException(exc);
+			final Integer retryAfter = getRetryAfter(apiException);
+
+			if (retryAfter != null && pendingMessage.retries++ < settings.getMaximumRetries()) {
+				LOGGER.debug("Telegram asked to wait {} s before sending to chat {}", retryAfter, chatQueue.chatId);
+
+				chatQueue.bucket.pause(System.nanoTime(), TimeUnit.SECONDS.toNanos(retryAfter));
+				schedule(chatQueue, TimeUnit.SECONDS.toNanos(retryAfter));
+
+				return;
+			}
+
+			LOGGER.error("An exception has occurred while sending a response to a message", apiException);
+		}
+
+		chatQueue.pendingMessages.poll();
+
+		try {
+			pendingMessage.onCompletion.run();
+		} catch (final RuntimeException completionExc) {
+			LOGGER.warn("An exception has occurred while completing the send of a message", completionExc);
+		}
+
+		// Keep sending, or forget about the chat once it is idle
+		final boolean[] morePending = new boolean[1];
+		chatQueues.computeIfPresent(chatQueue.chatId, (final Long chatId, final ChatQueue currentChatQueue) -> {
+			if (!currentChatQueue.pendingMessages.isEmpty()) {
+				morePending[0] = true;
+				return currentChatQueue;
+			}
+
+			currentChatQueue.scheduled = false;
+
+			return forgetWhenIdle(currentChatQueue);
+		});
+
+		if (morePending[0]) {
+			schedule(chatQueue, 0);
+		}
+
+		messageCompleted();
+	}
+
+	/**
+	 * Accounts for a message that was sent or given up, waking up
+	 * {@link #close()} if it was the last one.
+	 */
+	private void messageCompleted() {
+		if (pendingMessageCount.decrementAndGet() == 0) {
+			synchronized (pendingMessageCount) {
+				pendingMessageCount.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Takes the tokens needed to send a message to a chat right away, by other
+	 * means than this scheduler, if the rate limits allow it and no messages are
+	 * pending for that chat, so that messages are not sent out of order.
+	 *
+	 * @param chatId    The ID of the chat the message is sent to.
+	 * @param groupChat Whether the chat is a group chat, with a lower rate limit.
+	 * @return True if the message may be sent right away, false if it should be
+	 *         sent with {@link #send(SendMessage, Long, boolean, Runnable)}
+	 *         instead.
+	 * @throws IllegalArgumentException If {@code chatId} is {@code null}.
+	 */
+	boolean tryTakeForImmediateSend(@NonNull final Long chatId, final boolean groupChat) {
+		final boolean[] tokensTaken = new boolean[1];
+
+		chatQueues.compute(chatId, (final Long id, final ChatQueue chatQueue) -> {
+			final ChatQueue currentChatQueue = chatQueue != null ? chatQueue : new ChatQueue(id, groupChat);
+
+			if (currentChatQueue.scheduled) {
+				return currentChatQueue;
+			}
+
+			final long now = System.nanoTime();
+			if (currentChatQueue.bucket.tryTake(now) == 0) {
+				if (globalBucket.tryTake(now) == 0) {
+					tokensTaken[0] = true;
+				} else {
+					currentChatQueue.bucket.giveBack();
+				}
+			}
+
+			return forgetWhenIdle(currentChatQueue);
+		});
+
+		return tokensTaken[0];
+	}
+
+	/**
+	 * Decides whether to keep the queue of a chat with no pending messages. It is
+	 * forgotten if its rate limit doesn't need to be remembered. Otherwise, it is
+	 * checked again once its bucket refills. This method must be called while
+	 * holding the map lock for the chat.
+	 *
+	 * @param chatQueue The queue of the chat.
+	 * @return The queue to keep in the map, or {@code null} to forget it.
+	 */
+	private ChatQueue forgetWhenIdle(final ChatQueue chatQueue) {
+		final long nanosUntilFull = chatQueue.bucket.nanosUntilFull(System.nanoTime());
+
+		if (nanosUntilFull == 0) {
+			return null;
+		}
+
+		try {
+			senderExecutor.schedule(() -> chatQueues.computeIfPresent(
+				chatQueue.chatId,
+				(final Long chatId, final ChatQueue currentChatQueue) ->
+					currentChatQueue != chatQueue || currentChatQueue.scheduled ?
+						currentChatQueue : forgetWhenIdle(currentChatQueue)
+			), nanosUntilFull, TimeUnit.NANOSECONDS);
+		} catch (final RejectedExecutionException ignored) {
+			// Closed, so nothing will be sent again anyway
+		}
+
+		return chatQueue;
+	}
+
+	/**
+	 * Schedules sending the next pending message of a chat after the specified
+	 * delay.
+	 *
+	 * @param chatQueue  The queue of the chat.
+	 * @param delayNanos The delay, in nanoseconds.
+	 */
+	private void schedule(final ChatQueue chatQueue, final long delayNanos) {
+		try {
+			senderExecutor.schedule(() -> sendNext(chatQueue), delayNanos, TimeUnit.NANOSECONDS);
+		} catch (final RejectedExecutionException exc) {
+			LOGGER.warn(
+				"{} responses to chat {} won't be sent because the front-end was closed",
+				chatQueue.pendingMessages.size(), chatQueue.chatId
+			);
+		}
+	}
+
+	/**
+	 * Returns how long Telegram asked to wait before retrying a failed request.
+	 *
+	 * @param exc The exception that made the request fail.
+	 * @return The time to wait, in seconds, or {@code null} if the request
+	 *         failed because of another reason.
+	 */
+	private static Integer getRetryAfter(final TelegramApiException exc) {
+		if (exc instanceof TelegramApiRequestException) {
+			final TelegramApiRequestException requestException = (TelegramApiRequestException) exc;
+			final ResponseParameters parameters = requestException.getParameters();
+
+			if (
+				requestException.getErrorCode() != null && requestException.getErrorCode() == TOO_MANY_REQUESTS &&
+				parameters != null
+			) {
+				return parameters.getRetryAfter();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Stops accepting messages, and waits for a while for the pending ones to be
+	 * sent.
+	 * <p>
+	 * The sender threads keep working meanwhile, so messages queued after others
+	 * and sends still in progress in the transport are waited for too. The
+	 * transport may be closed once this method returns.
+	 * </p>
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		closed = true;
+
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CLOSE_TIMEOUT);
+		try {
+			synchronized (pendingMessageCount) {
+				long remainingMillis;
+				while (
+					pendingMessageCount.get() > 0 &&
+					(remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0
+				) {
+					pendingMessageCount.wait(remainingMillis);
+				}
+			}
+
+			if (pendingMessageCount.get() > 0) {
+				LOGGER.warn("{} pending responses couldn't be sent in a reasonable time", pendingMessageCount.get());
+			}
+		} finally {
+			// Unless the timeout elapsed, only the tasks that forget idle chats are left
+			senderExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The pending messages of a chat, with its rate limit.
+	 *
+	 * @author Alejandro González García
+	 */
+	private final class ChatQueue {
+		private final Long chatId;
+		private final TokenBucket bucket;
+		private final Queue<PendingMessage> pendingMessages = new ConcurrentLinkedQueue<>();
+		/**
+		 * Whether a task that sends the pending messages is scheduled. It is only
+		 * accessed while holding the map lock for the chat.
+		 */
+		private boolean scheduled = false;
+
+		private ChatQueue(final Long chatId, final boolean groupChat) {
+			this.chatId = chatId;
+			this.bucket = groupChat ?
+				new TokenBucket(settings.getGroupChatMessagesPerMinute() / 60.0, 1) :
+				new TokenBucket(settings.getPrivateChatMessagesPerSecond(), 1);
+		}
+	}
+
+	/**
+	 * A message that waits to be sent.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class PendingMessage {
+		private final SendMessage message;
+		private final TelegramApiTransport.PreparedMethod<Message> preparedMessage;
+		private final Runnable onCompletion;
+		/**
+		 * How many times the message was sent again. It is only accessed by the
+		 * send of its chat in progress, and sends of a chat happen one after
+		 * another.
+		 */
+		private int retries = 0;
+
+		private PendingMessage(
+			final SendMessage message, final TelegramApiTransport.PreparedMethod<Message> preparedMessage,
+			final Runnable onCompletion
+		) {
+			this.message = message;
+			this.preparedMessage = preparedMessage;
+			this.onCompletion = onCompletion;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+/**
+ * Executes Telegram API methods on behalf of the Telegram bot front-end
+ * interface, hiding how requests are made.
+ * <p>
+ * Methods are prepared before being executed, so that the work that doesn't
+ * depend on the network, like validating and serializing them, is done once,
+ * even if they are executed several times.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implSpec Implementations of this interface must be thread-safe.
+ */
+interface TelegramApiTransport extends AutoCloseable {
+	/**
+	 * Prepares a Telegram API method for execution.
+	 *
+	 * @param <T>    The type of the result of the method.
+	 * @param method The method to prepare.
+	 * @return The prepared method.
+	 * @throws IllegalArgumentException If {@code method} is {@code null}.
+	 * @throws TelegramApiException     If the method is not valid.
+	 */
+	<T extends Serializable> PreparedMethod<T> prepare(BotApiMethod<T> method) throws TelegramApiException;
+
+	/**
+	 * Executes a Telegram API method, waiting for its result.
+	 *
+	 * @param <T>    The type of the result of the method.
+	 * @param method The method to execute.
+	 * @return The result of the method.
+	 * @throws IllegalArgumentException If {@code method} is {@code null}.
+	 * @throws TelegramApiException     If the method is not valid, or its
+	 *                                  execution failed.
+	 */
+	default <T extends Serializable> T execute(final BotApiMethod<T> method) throws TelegramApiException {
+		return prepare(method).execute();
+	}
+
+	/**
+	 * Releases the resources used by this transport. Methods being executed may
+	 * complete afterwards, but no more methods should be executed.
+	 */
+	@Override
+	void close();
+
+	/**
+	 * A Telegram API method that is ready to be executed by the transport that
+	 * prepared it, as many times as needed.
+	 *
+	 * @author Alejandro González García
+	 *
+	 * @param <T> The type of the result of the method.
+	 */
+	interface PreparedMethod<T extends Serializable> {
+		/**
+		 * Starts executing the method.
+		 *
+		 * @return A future that completes with the result of the method, or with a
+		 *         {@link TelegramApiException}, or another exception, if its
+		 *         execution failed.
+		 */
+		CompletableFuture<T> executeAsync();
+
+		/**
+		 * Executes the method, waiting for its result.
+		 *
+		 * @return The result of the method.
+		 * @throws TelegramApiException If the execution of the method failed, or
+		 *                              the current thread was interrupted while
+		 *                              waiting for it.
+		 */
+		default T execute() throws TelegramApiException {
+			final CompletableFuture<T> result = executeAsync();
+
+			try {
+				return result.get();
+			} catch (final ExecutionException exc) {
+				throw asTelegramApiException(exc.getCause());
+			} catch (final InterruptedException exc) {
+				result.cancel(true);
+				Thread.currentThread().interrupt();
+
+				throw new TelegramApiException("Interrupted while executing a method", exc);
+			}
+		}
+	}
+
+	/**
+	 * Converts the exception a method execution failed with to a
+	 * {@link TelegramApiException}.
+	 *
+	 * @param exc The exception, which may be wrapped in a
+	 *            {@link CompletionException}.
+	 * @return The exception itself, if it is a {@link TelegramApiException}, or
+	 *         a {@link TelegramApiException} caused by it.
+	 */
+	static TelegramApiException asTelegramApiException(final Throwable exc) {
+		final Throwable cause = exc instanceof CompletionException && exc.getCause() != null ? exc.getCause() : exc;
+
+		return cause instanceof TelegramApiException ?
+			(TelegramApiException) cause : new TelegramApiException("Unable to execute a method", cause);
+	}
+}
@@ -2,36 +2,47 @@
 
 package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntSupplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.ApiContextInitializer;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
 import org.telegram.telegrambots.bots.DefaultBotOptions;
-import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.bots.TelegramWebhookBot;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
-import org.telegram.telegrambots.meta.api.methods.send.SendChatAction;
+import org.telegram.telegrambots.meta.api.methods.GetMe;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Chat;
-import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.MessageEntity;
 import org.telegram.telegrambots.meta.api.objects.Update;
-import org.telegram.telegrambots.meta.api.objects.User;
 import org.telegram.telegrambots.meta.bots.AbsSender;
-import org.telegram.telegrambots.meta.generics.BotSession;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 import es.uvigo.esei.sing.vacbot.frontend.FrontendCommunicationException;
 import es.uvigo.esei.sing.vacbot.frontend.FrontendInterface;
 import es.uvigo.esei.sing.vacbot.settings.TelegramBotMessageDispatcherFactory;
 import es.uvigo.esei.sing.vacbot.settings.TelegramBotLongPollingUpdateReceptionMethodFactory;
 import es.uvigo.esei.sing.vacbot.settings.TelegramBotWebhookUpdateReceptionMethodFactory;
+import es.uvigo.esei.sing.vacbot.settings.IngressBufferSettings;
+import es.uvigo.esei.sing.vacbot.settings.OutboundRateLimitSettings;
+import es.uvigo.esei.sing.vacbot.settings.UpdateJournalSettings;
 import es.uvigo.esei.sing.vacbot.util.ExceptionThrowingSupplier;
+import es.uvigo.esei.sing.vacbot.util.RingBuffer;
 import lombok.NonNull;
 
 /**
@@ -43,10 +54,35 @@ import lombok.NonNull;
 public final class TelegramBotFrontendInterface implements FrontendInterface<TelegramTextMessage, Chat> {
 	private final static Logger LOGGER = LoggerFactory.getLogger(TelegramBotFrontendInterface.class);
 
-	private final BotSession session;
-	private final BlockingQueue<TelegramTextMessage> messageQueue = new LinkedBlockingQueue<>(250); // 250 in-flight updates maximum
+	/**
+	 * How often the bot identity is fetched again, in minutes.
+	 */
+	private static final long BOT_IDENTITY_REFRESH_PERIOD = 60;
+
+	private final LongPollingUpdateSource longPollingUpdateSource;
+	private final WebhookServer webhookServer;
+	private final UpdateJournal updateJournal;
+	private final RingBuffer<TelegramTextMessage> messageBuffer;
 	private final AbsSender telegramBot;
-	private final ExceptionThrowingSupplier<User, FrontendCommunicationException> botUserSupplier;
+	private final TelegramApiTransport transport;
+	private final OutboundMessageScheduler outboundMessageScheduler;
+	private final ChatActionNotifier chatActionNotifier;
+	/**
+	 * The responses that webhook requests are waiting for, to send them in their
+	 * HTTPS response, by chat ID and message ID of the message they respond to.
+	 * It is {@code null} if responses are never sent that way.
+	 */
+	private final ConcurrentMap<List<Object>, CompletableFuture<SendMessage>> inlineReplies;
+	private final long inlineReplyDeadlineNanos;
+	private final Object botIdentityLock = new Object();
+	private volatile BotIdentity botIdentity = null;
+	/**
+	 * The number of received messages that the bot is still handling, which the
+	 * long polling update source accounts for as if they still took up space in
+	 * the message buffer.
+	 */
+	private volatile IntSupplier pendingMessageCounter = () -> 0;
+	private final ScheduledExecutorService botIdentityRefresher;
 
 	{
 		// Needed by telegrambots
@@ -54,30 +90,27 @@ public final class TelegramBotFrontendInterface implements FrontendInterface<Tel
 
 		LOGGER.trace("Telegrambots API context initialized");
 
-		// Thread-safe supplier
-		this.botUserSupplier = new ExceptionThrowingSupplier<>() {
-			private final Object botUserLock = new Object();
-			private User botUser = null;
-
-			@Override
-			public User throwingGet() throws FrontendCommunicationException {
-				try {
-					// AtomicReference may result in the Telegram API being called twice
-					// and breaking havoc, so we use plain mutexes
-					synchronized (botUserLock) {
-						return botUser == null ? telegramBot.getMe() : botUser;
-					}
-				} catch (final Exception exc) {
-					throw new FrontendCommunicationException(exc);
-				}
-			}
-		};
+		// The bot identity is fetched on first use, and then refreshed in the
+		// background, so messages don't wait for the Telegram API to check it
+		this.botIdentityRefresher = Executors.newSingleThreadScheduledExecutor((final Runnable r) -> {
+			final Thread thread = new Thread(r, "Telegram bot identity refresher");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+		botIdentityRefresher.scheduleWithFixedDelay(
+			this::refreshBotIdentity, BOT_IDENTITY_REFRESH_PERIOD, BOT_IDENTITY_REFRESH_PERIOD, TimeUnit.MINUTES
+		);
 	}
 
 	/**
 	 * Creates a new Telegram front-end interface for the specified factories, that
 	 * receives updates via long polling. The long polling settings are stored in a
 	 * {@link TelegramBotLongPollingUpdateReceptionMethodFactory} object.
+	 * <p>
+	 * Updates are fetched in a background thread, which stops fetching them while
+	 * the message buffer is full.
+	 * </p>
 	 *
 	 * @param longPollingFactory       The long polling update reception method
 	 *                                 factory.
@@ -90,27 +123,43 @@ public final class TelegramBotFrontendInterface implements FrontendInterface<Tel
 		@NonNull final TelegramBotLongPollingUpdateReceptionMethodFactory longPollingFactory,
 		@NonNull final TelegramBotMessageDispatcherFactory frontendInterfaceFactory
 	) throws FrontendCommunicationException {
-		this.telegramBot = new TelegramLongPollingBot(getBotOptionsFromFactory(frontendInterfaceFactory)) {
-			@Override
-			public void onUpdateReceived(final Update update) {
-				makeUpdateAvailableToClients(update);
-			}
+		// Release what was started so far if something fails
+		try {
+			this.messageBuffer = createMessageBuffer(frontendInterfaceFactory);
+			this.telegramBot = new DefaultAbsSender(getBotOptionsFromFactory(frontendInterfaceFactory)) {
+				@Override
+				public String getBotToken() {
+					return frontendInterfaceFactory.getToken();
+				}
+			};
 
-			@Override
-			public String getBotUsername() {
-				return frontendInterfaceFactory.getUserName();
-			}
+			this.transport = createTransport(telegramBot, frontendInterfaceFactory);
+			this.outboundMessageScheduler = createOutboundMessageScheduler(transport, frontendInterfaceFactory);
+			this.chatActionNotifier = new ChatActionNotifier(transport, frontendInterfaceFactory.getTypingActionDelay());
+			this.inlineReplies = null;
+			this.inlineReplyDeadlineNanos = 0;
+			// Telegram keeps the updates until they are confirmed, so they need no journal
+			this.updateJournal = null;
 
-			@Override
-			public String getBotToken() {
-				return frontendInterfaceFactory.getToken();
-			}
-		};
+			// Fail early if the bot credentials are not valid
+			getBotIdentity();
 
-		try {
-			this.session = new TelegramBotsApi().registerBot((TelegramLongPollingBot) telegramBot);
-		} catch (final Exception exc) {
-			throw new FrontendCommunicationException(exc);
+			// Updates are received by long polling instead
+			this.webhookServer = null;
+
+			this.longPollingUpdateSource = new LongPollingUpdateSource(
+				transport, messageBuffer, () -> pendingMessageCounter.getAsInt(), longPollingFactory.getTimeout(),
+				(final Update update) -> {
+					final TelegramTextMessage textMessage = acceptUpdate(update);
+
+					if (textMessage != null) {
+						makeMessageAvailableToClients(textMessage);
+					}
+				}
+			);
+		} catch (final FrontendCommunicationException | RuntimeException exc) {
+			closeAfterFailedConstruction(exc);
+			throw exc;
 		}
 
 		LOGGER.trace(
@@ -133,74 +182,113 @@ public final class TelegramBotFrontendInterface implements FrontendInterface<Tel
 		@NonNull final TelegramBotWebhookUpdateReceptionMethodFactory webhookFactory,
 		@NonNull final TelegramBotMessageDispatcherFactory frontendInterfaceFactory
 	) throws FrontendCommunicationException {
-		this.telegramBot = new TelegramWebhookBot(getBotOptionsFromFactory(frontendInterfaceFactory)) {
-			@Override
-			public BotApiMethod<?> onWebhookUpdateReceived(final Update update) {
-				makeUpdateAvailableToClients(update);
-
-				// The Telegram API accepts sending an API call as a response to the
-				// POST request they made. This allows for greater efficiency, at the
-				// cost of not knowing the result of the API call. For now we don't take
-				// advantage of that
-				return null;
-			}
+		// Release what was started so far if something fails
+		try {
+			this.messageBuffer = createMessageBuffer(frontendInterfaceFactory);
+			this.telegramBot = new TelegramWebhookBot(getBotOptionsFromFactory(frontendInterfaceFactory)) {
+				@Override
+				public BotApiMethod<?> onWebhookUpdateReceived(final Update update) {
+					final long receptionTime = System.nanoTime();
+					final TelegramTextMessage textMessage = acceptUpdate(update);
+
+					return textMessage != null ?
+						handleWebhookMessage(
+							receptionTime, textMessage, () -> TelegramUpdateParser.OBJECT_MAPPER.writeValueAsBytes(update)
+						) : null;
+				}
 
-			@Override
-			public String getBotUsername() {
-				return frontendInterfaceFactory.getUserName();
-			}
+				@Override
+				public String getBotUsername() {
+					return frontendInterfaceFactory.getUserName();
+				}
 
-			@Override
-			public String getBotPath() {
-				return webhookFactory.getBotPath();
-			}
+				@Override
+				public String getBotPath() {
+					return webhookFactory.getBotPath();
+				}
 
-			@Override
-			public String getBotToken() {
-				return frontendInterfaceFactory.getToken();
+				@Override
+				public String getBotToken() {
+					return frontendInterfaceFactory.getToken();
+				}
+			};
+
+			// Webhook bots don't do outgoing connections to receive updates
+			this.longPollingUpdateSource = null;
+			this.transport = createTransport(telegramBot, frontendInterfaceFactory);
+			this.outboundMessageScheduler = createOutboundMessageScheduler(transport, frontendInterfaceFactory);
+			this.chatActionNotifier = new ChatActionNotifier(transport, frontendInterfaceFactory.getTypingActionDelay());
+
+			final Long inlineReplyDeadline = webhookFactory.getInlineReplyDeadline();
+			this.inlineReplies = inlineReplyDeadline != null ? new ConcurrentHashMap<>() : null;
+			this.inlineReplyDeadlineNanos = inlineReplyDeadline != null ? TimeUnit.MILLISECONDS.toNanos(inlineReplyDeadline) : 0;
+
+			// Telegram forgets about the updates once they are received, so keep them
+			// on disk until they are handled, if desired
+			final UpdateJournalSettings updateJournalSettings = webhookFactory.getUpdateJournalSettings();
+			try {
+				this.updateJournal = updateJournalSettings != null ? new UpdateJournal(updateJournalSettings, messageBuffer) : null;
+			} catch (final IOException exc) {
+				throw new FrontendCommunicationException(exc);
 			}
-		};
 
-		// Webhook bots have no session: they don't do outgoing connections in their update receive loop
-		this.session = null;
-
-		final Path certificateStorePath = webhookFactory.getCertificateStorePath();
-		final String certificateStorePassword = webhookFactory.getCertificateStorePassword();
-		final Path publicKeyPath = webhookFactory.getPublicKeyPath();
-
-		try {
-			if (certificateStorePath == null) {
-				// No certificate information, assume that a reverse proxy handles HTTPS
-				new TelegramBotsApi(
-					webhookFactory.getExternalUrl(),
-					webhookFactory.getInternalUrl()
-				).registerBot((TelegramWebhookBot) telegramBot);
-			} else {
-				// We have a certificate store where our private key is stored.
-				// There are two options now:
-				// - We use a certificate signed by a CA recognized by Telegram
-				// - We use a certificate signed by a CA not recognized by Telegram (self-signed or whatever)
-				if (publicKeyPath == null) {
-					// Signed by a recognized CA
+			final Path certificateStorePath = webhookFactory.getCertificateStorePath();
+			final String certificateStorePassword = webhookFactory.getCertificateStorePassword();
+			final Path publicKeyPath = webhookFactory.getPublicKeyPath();
+
+			try {
+				if (webhookFactory.isBuiltInServerEnabled()) {
+					// Our server uses the same URLs as the server of the library
+					this.webhookServer = new WebhookServer(
+						webhookFactory.getInternalUrl(), webhookFactory.getBotPath(),
+						certificateStorePath, certificateStorePassword,
+						frontendInterfaceFactory.getMaxWebhookConnections(), this::handleWebhookUpdate
+					);
+
+					((TelegramWebhookBot) telegramBot).setWebhook(
+						getWebhookUrl(webhookFactory),
+						publicKeyPath != null ? publicKeyPath.toAbsolutePath().toString() : null
+					);
+				} else if (certificateStorePath == null) {
+					this.webhookServer = null;
+
+					// No certificate information, assume that a reverse proxy handles HTTPS
 					new TelegramBotsApi(
-						certificateStorePath.toAbsolutePath().toString(),
-						certificateStorePassword,
 						webhookFactory.getExternalUrl(),
 						webhookFactory.getInternalUrl()
 					).registerBot((TelegramWebhookBot) telegramBot);
 				} else {
-					// Certificate signed by a unrecognized CA
-					new TelegramBotsApi(
-						certificateStorePath.toAbsolutePath().toString(),
-						certificateStorePassword,
-						webhookFactory.getExternalUrl(),
-						webhookFactory.getInternalUrl(),
-						publicKeyPath.toAbsolutePath().toString()
-					).registerBot((TelegramWebhookBot) telegramBot);
+					this.webhookServer = null;
+
+					// We have a certificate store where our private key is stored.
+					// There are two options now:
+					// - We use a certificate signed by a CA recognized by Telegram
+					// - We use a certificate signed by a CA not recognized by Telegram (self-signed or whatever)
+					if (publicKeyPath == null) {
+						// Signed by a recognized CA
+						new TelegramBotsApi(
+							certificateStorePath.toAbsolutePath().toString(),
+							certificateStorePassword,
+							webhookFactory.getExternalUrl(),
+							webhookFactory.getInternalUrl()
+						).registerBot((TelegramWebhookBot) telegramBot);
+					} else {
+						// Certificate signed by a unrecognized CA
+						new TelegramBotsApi(
+							certificateStorePath.toAbsolutePath().toString(),
+							certificateStorePassword,
+							webhookFactory.getExternalUrl(),
+							webhookFactory.getInternalUrl(),
+							publicKeyPath.toAbsolutePath().toString()
+						).registerBot((TelegramWebhookBot) telegramBot);
+					}
 				}
+			} catch (final Exception exc) {
+				throw new FrontendCommunicationException(exc);
 			}
-		} catch (final Exception exc) {
-			throw new FrontendCommunicationException(exc);
+		} catch (final FrontendCommunicationException | RuntimeException exc) {
+			closeAfterFailedConstruction(exc);
+			throw exc;
 		}
 
 		LOGGER.trace(
@@ -210,16 +298,58 @@ public final class TelegramBotFrontendInterface implements FrontendInterface<Tel
 
 	@Override
 	public TelegramTextMessage awaitNextMessage() throws FrontendCommunicationException, InterruptedException {
-		return messageQueue.take();
+		return messageBuffer.take();
 	}
 
 	@Override
 	public void sendMessage(@NonNull final TelegramTextMessage message) throws FrontendCommunicationException {
 		final SendMessage sendMessage = message.toSendMessage();
+		final Long chatId = message.getChat().getId();
+		final boolean groupChat = !message.getChat().isUserChat();
+
+		// Fast responses need no typing action, and Telegram stops showing it anyway
+		chatActionNotifier.cancel(chatId);
+
+		// Hand the response to the webhook request of the message it responds to,
+		// if it is still waiting for it and the rate limits allow sending it now
+		final CompletableFuture<SendMessage> inlineReply = inlineReplies != null && message.getReplyToMessageId() != null ?
+			inlineReplies.remove(List.of(chatId, message.getReplyToMessageId())) : null;
+
+		if (inlineReply != null) {
+			if (outboundMessageScheduler == null || outboundMessageScheduler.tryTakeForImmediateSend(chatId, groupChat)) {
+				inlineReply.complete(sendMessage);
+
+				LOGGER.trace("Outgoing inline message: " + message);
+
+				return;
+			}
+
+			inlineReply.complete(null);
+		}
+
+		if (outboundMessageScheduler != null) {
+			// Send it when the rate limits allow, without waiting for it. The
+			// replied message is not handled until then, even if acknowledged
+			final Integer repliedMessageId = message.getReplyToMessageId();
+			if (updateJournal != null && repliedMessageId != null) {
+				updateJournal.replyPending(chatId, repliedMessageId);
+			}
+
+			try {
+				outboundMessageScheduler.send(
+					sendMessage, chatId, groupChat, () -> replyFinished(chatId, repliedMessageId)
+				);
+			} catch (final TelegramApiException | RejectedExecutionException exc) {
+				replyFinished(chatId, repliedMessageId);
+				throw new FrontendCommunicationException(exc);
+			}
+
+			return;
+		}
 
 		try {
 			// Sends a POST request to Telegram servers
-			telegramBot.execute(sendMessage);
+			transport.execute(sendMessage);
 
 			LOGGER.trace("Outgoing message: " + message);
 		} catch (final Exception exc) {
@@ -229,7 +359,6 @@ public final class TelegramBotFrontendInterface implements FrontendInterface<Tel
 
 	@Override
 	public boolean isMessageForBot(@NonNull final TelegramTextMessage message) throws FrontendCommunicationException {
-		final int maxReplyDepth = 50;
 		boolean isForBot = message.getChat().isUserChat();
 
 		// Are further checks needed? We ignore messages from channels
@@ -239,7 +368,9 @@ public final class TelegramBotFrontendInterface implements FrontendInterface<Tel
 			// First, check if the message explicitly mentions us.
 			// That only makes sense if the message contains entities
 			if (messageEntities != null && !messageEntities.isEmpty()) {
+				final BotIdentity botIdentity = getBotIdentity();
 				final Iterator<MessageEntity> iter = messageEntities.iterator();
+
 				while (!isForBot && iter.hasNext()) {
 					final MessageEntity entity = iter.next();
 
@@ -248,10 +379,7 @@ public final class TelegramBotFrontendInterface implements FrontendInterface<Tel
 
 						isForBot =
 							(MessageEntityType.MENTION == entityType || MessageEntityType.TEXT_MENTION == entityType) &&
-							(
-								entity.getText().equals("@" + botUserSupplier.throwingGet().getUserName()) ||
-								entity.getText().equals("@" + botUserSupplier.throwingGet().getFirstName())
-							);
+							botIdentity.isMentionedBy(entity.getText());
 					} catch (final Exception exc) {
 						throw new FrontendCommunicationException(exc);
 					}
@@ -259,22 +387,12 @@ public final class TelegramBotFrontendInterface implements FrontendInterface<Tel
 			}
 
 			if (!isForBot) {
-				// If the message doesn't mention us, check if it replies to a message from us
-				// (either directly or indirectly)
-				Message repliedMessage = message.getThisMessage();
-
-				if (repliedMessage == null) {
-					throw new FrontendCommunicationException("The Telegram API message object is missing when it shouldn't");
-				}
+				// If the message doesn't mention us, check if it replies to a message from us.
+				// Telegram doesn't tell what replied messages reply to, so that's as far as we
+				// can go
+				final Integer replyToUserId = message.getReplyToUserId();
 
-				int replyDepth = 0;
-				while (
-					!isForBot &&
-					(repliedMessage = repliedMessage.getReplyToMessage()) != null &&
-					replyDepth++ < maxReplyDepth
-				) {
-					isForBot = botUserSupplier.throwingGet().getId().equals(repliedMessage.getFrom().getId());
-				}
+				isForBot = replyToUserId != null && getBotIdentity().getId().equals(replyToUserId);
 			}
 		}
 
@@ -282,56 +400,405 @@ public final class TelegramBotFrontendInterface implements FrontendInterface<Tel
 	}
 
 	@Override
-	public void notifyForthcomingResponse(@NonNull final Chat notificationData) throws FrontendCommunicationException {
-		try {
-			telegramBot.execute(new SendChatAction(notificationData.getId(), "typing"));
-		} catch (final Exception exc) {
-			throw new FrontendCommunicationException(exc);
+	public void acknowledgeMessage(@NonNull final TelegramTextMessage message) {
+		if (updateJournal != null) {
+			updateJournal.acknowledge(message);
+		}
+	}
+
+	@Override
+	public void setPendingMessageCounter(@NonNull final IntSupplier pendingMessageCounter) {
+		this.pendingMessageCounter = pendingMessageCounter;
+	}
+
+	/**
+	 * Records that a reply scheduled to be sent was sent, or won't be sent, so
+	 * that the message it replies to can be considered handled.
+	 *
+	 * @param chatId           The ID of the chat of the replied message.
+	 * @param repliedMessageId The ID of the replied message. It may be
+	 *                         {@code null}.
+	 */
+	private void replyFinished(final Long chatId, final Integer repliedMessageId) {
+		if (updateJournal != null && repliedMessageId != null) {
+			updateJournal.replyFinished(chatId, repliedMessageId);
 		}
 	}
 
+	@Override
+	public void notifyForthcomingResponse(@NonNull final Chat notificationData) throws FrontendCommunicationException {
+		// Sent in the background if the response takes a while
+		chatActionNotifier.notifyTyping(notificationData.getId());
+	}
+
 	@Override
 	public void close() throws Exception {
-		if (session != null) {
-			session.stop();
+		// Some resources may be missing if the constructor failed
+		botIdentityRefresher.shutdownNow();
+
+		if (chatActionNotifier != null) {
+			chatActionNotifier.close();
+		}
+
+		if (outboundMessageScheduler != null) {
+			outboundMessageScheduler.close();
+		}
+
+		if (longPollingUpdateSource != null) {
+			longPollingUpdateSource.close();
+
+			LOGGER.info("Long polling stopped");
+		}
+
+		if (webhookServer != null) {
+			webhookServer.close();
 
-			LOGGER.info("Bot session stopped");
+			LOGGER.info("Webhook server stopped");
+		}
+
+		if (updateJournal != null) {
+			updateJournal.close();
+		}
+
+		if (transport != null) {
+			transport.close();
 		}
 	}
 
 	/**
-	 * Puts updates in the blocking update queue that clients will take updates
-	 * from, waiting if necessary until the queue has a free spot. This method is
-	 * uninterruptible.
+	 * Releases the resources that a constructor started before failing, as
+	 * nothing else will close this object.
 	 *
-	 * @param update The update to put in the queue.
+	 * @param exc The exception the constructor failed with. Any exception thrown
+	 *            while releasing the resources is added to it as suppressed.
 	 */
-	private void makeUpdateAvailableToClients(final Update update) {
+	private void closeAfterFailedConstruction(final Exception exc) {
 		try {
-			final TelegramTextMessage textMessage = TelegramTextMessage.ofUpdate(update);
-			boolean messageNotPut = true;
+			close();
+		} catch (final Exception closeExc) {
+			if (closeExc instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
 
-			while (messageNotPut) {
-				try {
-					messageQueue.put(textMessage);
+			exc.addSuppressed(closeExc);
+		}
+	}
 
-					LOGGER.trace("Update enqueued: " + textMessage);
+	/**
+	 * Converts an update to the message that clients will be given, dropping it if
+	 * it is not for the bot.
+	 *
+	 * @param update The update to convert.
+	 * @return The message of the update, or {@code null} if it should be dropped.
+	 */
+	private TelegramTextMessage acceptUpdate(final Update update) {
+		final TelegramTextMessage textMessage;
 
-					messageNotPut = false;
-				} catch (InterruptedException exc) {
-					// We want to offer the opportunity to handle updates
-					// no matter what, as Telegram won't send them again
-					Thread.currentThread().interrupt();
-				}
-			}
+		try {
+			textMessage = TelegramTextMessage.ofUpdate(update);
 		} catch (final IllegalArgumentException ignored) {
 			LOGGER.info(
 				"Received unwanted or invalid update from Telegram with ID " +
 				update.getUpdateId()
 			);
+
+			return null;
+		}
+
+		return isAccepted(textMessage) ? textMessage : null;
+	}
+
+	/**
+	 * Checks whether a received message should be given to clients, dropping it
+	 * if it is not for the bot.
+	 *
+	 * @param textMessage The message to check.
+	 * @return True if the message should be given to clients, false if it should
+	 *         be dropped.
+	 */
+	private boolean isAccepted(final TelegramTextMessage textMessage) {
+		// Drop group chatter that is not addressed to us right away, so it
+		// doesn't take space in the buffer or worker time
+		try {
+			if (!isMessageForBot(textMessage)) {
+				LOGGER.trace("Update not for the bot dropped: " + textMessage);
+				return false;
+			}
+		} catch (final FrontendCommunicationException exc) {
+			// The dispatcher will check it again
+			LOGGER.debug("Couldn't check whether an update is for the bot", exc);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Handles an update received by the built-in webhook server, parsing only the
+	 * parts of it that clients need.
+	 *
+	 * @param updateJson The UTF-8 encoded JSON representation of the update.
+	 * @return The response to send in the HTTPS response, or {@code null} if
+	 *         there is none.
+	 * @throws IOException If the update is not valid.
+	 */
+	private SendMessage handleWebhookUpdate(final byte[] updateJson) throws IOException {
+		final long receptionTime = System.nanoTime();
+		final TelegramTextMessage textMessage = TelegramUpdateParser.parse(updateJson);
+
+		if (textMessage == null) {
+			LOGGER.info("Received unwanted update from Telegram");
+			return null;
+		}
+
+		return isAccepted(textMessage) ? handleWebhookMessage(receptionTime, textMessage, () -> updateJson) : null;
+	}
+
+	/**
+	 * Gives a message received via webhooks to clients, and waits for its
+	 * response to be sent in the HTTPS response, if enabled.
+	 *
+	 * @param receptionTime The value of {@link System#nanoTime()} when the
+	 *                      update of the message was received.
+	 * @param textMessage   The message.
+	 * @param updateJson    The supplier of the JSON representation of the update
+	 *                      the message comes from, to journal it.
+	 * @return The response to send in the HTTPS response, or {@code null} if
+	 *         there is none.
+	 */
+	private SendMessage handleWebhookMessage(
+		final long receptionTime, final TelegramTextMessage textMessage,
+		final ExceptionThrowingSupplier<byte[], IOException> updateJson
+	) {
+		if (inlineReplies == null) {
+			makeWebhookMessageAvailableToClients(updateJson, textMessage);
+			return null;
+		}
+
+		// The Telegram API accepts sending an API call as a response to the
+		// POST request they made. This allows for greater efficiency, at the
+		// cost of not knowing the result of the API call, so we do that if
+		// the response is generated soon enough. The reply slot must be there
+		// before any worker can take the message
+		final List<Object> inlineReplyKey = List.of(textMessage.getChat().getId(), textMessage.getMessageId());
+		final CompletableFuture<SendMessage> inlineReply = new CompletableFuture<>();
+
+		inlineReplies.put(inlineReplyKey, inlineReply);
+		makeWebhookMessageAvailableToClients(updateJson, textMessage);
+
+		return awaitInlineReply(inlineReplyKey, inlineReply, receptionTime + inlineReplyDeadlineNanos);
+	}
+
+	/**
+	 * Puts messages in the message ring buffer that clients will take messages
+	 * from, waiting if necessary until the buffer has a free slot. This method
+	 * is uninterruptible.
+	 *
+	 * @param textMessage The message to put in the buffer.
+	 */
+	private void makeMessageAvailableToClients(final TelegramTextMessage textMessage) {
+		boolean messageNotPut = true;
+		boolean interrupted = false;
+
+		while (messageNotPut) {
+			try {
+				messageBuffer.put(textMessage);
+
+				LOGGER.trace("Update enqueued: " + textMessage);
+
+				messageNotPut = false;
+			} catch (InterruptedException exc) {
+				// We want to offer the opportunity to handle updates
+				// no matter what, as Telegram won't send them again.
+				// Restore the interrupt status once we are done
+				interrupted = true;
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Appends a message received via webhooks to the update journal, if there is
+	 * one, or puts it in the message buffer right away otherwise. If the journal
+	 * fails, the message is put in the buffer, as Telegram won't send it again.
+	 *
+	 * @param updateJson  The supplier of the JSON representation of the update
+	 *                    the message comes from.
+	 * @param textMessage The message.
+	 */
+	private void makeWebhookMessageAvailableToClients(
+		final ExceptionThrowingSupplier<byte[], IOException> updateJson, final TelegramTextMessage textMessage
+	) {
+		if (updateJournal != null) {
+			try {
+				updateJournal.append(updateJson.throwingGet());
+
+				LOGGER.trace("Update journaled: " + textMessage);
+
+				return;
+			} catch (final IOException | IllegalArgumentException exc) {
+				LOGGER.warn("Couldn't append an update to the journal. It will only be held in memory", exc);
+			}
+		}
+
+		makeMessageAvailableToClients(textMessage);
+	}
+
+	/**
+	 * Waits until the specified deadline for the response to be sent in the HTTPS
+	 * response of a webhook request. If the deadline passes, the response will be
+	 * sent as usual.
+	 *
+	 * @param inlineReplyKey The key of the response in {@link #inlineReplies}.
+	 * @param inlineReply    The future that will complete with the response.
+	 * @param deadline       The value of {@link System#nanoTime()} at which to
+	 *                       stop waiting.
+	 * @return The response to send in the HTTPS response, or {@code null} if
+	 *         there is none.
+	 */
+	private SendMessage awaitInlineReply(
+		final List<Object> inlineReplyKey, final CompletableFuture<SendMessage> inlineReply, final long deadline
+	) {
+		try {
+			return inlineReply.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		} catch (final TimeoutException | ExecutionException exc) {
+			// Go on
+		} catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		}
+
+		// If a worker took the slot meanwhile, it is about to complete it, and
+		// it won't send the response any other way
+		return inlineReplies.remove(inlineReplyKey, inlineReply) ? null : inlineReply.join();
+	}
+
+	/**
+	 * Returns the identity of the bot account. The Telegram API is only called
+	 * the first time, and afterwards the identity is refreshed in the background.
+	 *
+	 * @return The identity of the bot.
+	 * @throws FrontendCommunicationException If the Telegram API call failed.
+	 */
+	private BotIdentity getBotIdentity() throws FrontendCommunicationException {
+		BotIdentity currentBotIdentity = botIdentity;
+
+		if (currentBotIdentity == null) {
+			// AtomicReference may result in the Telegram API being called twice
+			// and breaking havoc, so we use plain mutexes
+			synchronized (botIdentityLock) {
+				currentBotIdentity = botIdentity;
+
+				if (currentBotIdentity == null) {
+					currentBotIdentity = botIdentity = fetchBotIdentity();
+				}
+			}
+		}
+
+		return currentBotIdentity;
+	}
+
+	/**
+	 * Fetches the identity of the bot account again, in case it changed. If that
+	 * fails, the previous identity is kept.
+	 */
+	private void refreshBotIdentity() {
+		try {
+			final BotIdentity refreshedBotIdentity = fetchBotIdentity();
+
+			synchronized (botIdentityLock) {
+				botIdentity = refreshedBotIdentity;
+			}
+		} catch (final FrontendCommunicationException exc) {
+			LOGGER.warn("Couldn't refresh the bot identity. The previous one will be used", exc);
 		}
 	}
 
+	/**
+	 * Fetches the identity of the bot account from the Telegram API.
+	 *
+	 * @return The identity of the bot.
+	 * @throws FrontendCommunicationException If the Telegram API call failed.
+	 */
+	private BotIdentity fetchBotIdentity() throws FrontendCommunicationException {
+		try {
+			return new BotIdentity(transport.execute(new GetMe()));
+		} catch (final Exception exc) {
+			throw new FrontendCommunicationException(exc);
+		}
+	}
+
+	/**
+	 * Computes the URL that Telegram servers will send updates to, in the same
+	 * way as the Telegram bot library does.
+	 *
+	 * @param webhookFactory The factory from which to get the settings. It is
+	 *                       assumed to be not {@code null}.
+	 * @return The described URL.
+	 */
+	private static String getWebhookUrl(final TelegramBotWebhookUpdateReceptionMethodFactory webhookFactory) {
+		final String externalUrl = webhookFactory.getExternalUrl();
+
+		return (externalUrl.endsWith("/") ? externalUrl : externalUrl + "/") + "callback/" + webhookFactory.getBotPath();
+	}
+
+	/**
+	 * Creates the transport that executes Telegram API methods, according to the
+	 * settings contained in a {@link TelegramBotMessageDispatcherFactory} factory
+	 * object.
+	 *
+	 * @param telegramBot              The bot whose HTTP client is used by
+	 *                                 default.
+	 * @param frontendInterfaceFactory The factory from which to get the settings.
+	 *                                 It is assumed to be not {@code null}.
+	 * @return The created transport.
+	 */
+	private static TelegramApiTransport createTransport(
+		final AbsSender telegramBot, final TelegramBotMessageDispatcherFactory frontendInterfaceFactory
+	) {
+		return frontendInterfaceFactory.isHttpClientTransportEnabled() ?
+			new HttpClientTransport(frontendInterfaceFactory.getBaseUrl(), frontendInterfaceFactory.getToken()) :
+			new AbsSenderTransport(telegramBot);
+	}
+
+	/**
+	 * Creates the scheduler that sends messages honoring the Telegram API rate
+	 * limits, if it is enabled in the settings contained in a
+	 * {@link TelegramBotMessageDispatcherFactory} factory object.
+	 *
+	 * @param transport                The transport to send messages with.
+	 * @param frontendInterfaceFactory The factory from which to get the settings.
+	 *                                 It is assumed to be not {@code null}.
+	 * @return The created scheduler, or {@code null} if messages should be sent
+	 *         synchronously.
+	 */
+	private static OutboundMessageScheduler createOutboundMessageScheduler(
+		final TelegramApiTransport transport, final TelegramBotMessageDispatcherFactory frontendInterfaceFactory
+	) {
+		final OutboundRateLimitSettings outboundRateLimitSettings = frontendInterfaceFactory.getOutboundRateLimitSettings();
+
+		return outboundRateLimitSettings != null ?
+			new OutboundMessageScheduler(transport, outboundRateLimitSettings) : null;
+	}
+
+	/**
+	 * Creates the ring buffer that holds the received messages until clients
+	 * take them, according to the settings contained in a
+	 * {@link TelegramBotMessageDispatcherFactory} factory object.
+	 *
+	 * @param frontendInterfaceFactory The factory from which to get the settings.
+	 *                                 It is assumed to be not {@code null}.
+	 * @return The created ring buffer.
+	 */
+	private static RingBuffer<TelegramTextMessage> createMessageBuffer(
+		final TelegramBotMessageDispatcherFactory frontendInterfaceFactory
+	) {
+		final IngressBufferSettings ingressBufferSettings = frontendInterfaceFactory.getIngressBufferSettings();
+
+		return new RingBuffer<>(ingressBufferSettings.getCapacity(), ingressBufferSettings.getWaitStrategy());
+	}
+
 	/**
 	 * Retrieves the bot options contained in a
 	 * {@link TelegramBotMessageDispatcherFactory} factory object, which should be
@@ -51,13 +51,13 @@ public final class TelegramTextMessage extends TextMessage {
 	@Getter
 	private final Instant forwardedDate;
 	@Getter
-	private final Message replyToMessage;
+	private final Integer replyToMessageId;
+	@Getter
+	private final Integer replyToUserId;
 	@Getter
 	private final Instant editDate;
 	@Getter
 	private final List<MessageEntity> entities;
-	@Getter
-	private final Message thisMessage;
 
 	/**
 	 * Creates a new Telegram text message.
@@ -84,16 +84,19 @@ public final class TelegramTextMessage extends TextMessage {
 	 * @param forwardedDate          The original send date of the forwarded
 	 *                               message. It may be {@code null} if not
 	 *                               applicable.
-	 * @param replyToMessage         The message that this message replies to. It
-	 *                               may be {@code null} if this message doesn't
-	 *                               explicitly reply other message.
+	 * @param replyToMessageId       The ID of the message that this message
+	 *                               replies to. It may be {@code null} if this
+	 *                               message doesn't explicitly reply other
+	 *                               message.
+	 * @param replyToUserId          The ID of the user that sent the message that
+	 *                               this message replies to. It may be
+	 *                               {@code null} if this message doesn't
+	 *                               explicitly reply other message, or its sender
+	 *                               is unknown.
 	 * @param editDate               The last edit date of the message. It may be
 	 *                               {@code null} if not applicable.
 	 * @param entities               The entities present in a received message. It
 	 *                               may be {@code null} if not applicable.
-	 * @param thisMessage            A message object that represents this text
-	 *                               message at the Telegram API level. It may be
-	 *                               {@code null} if the message is to be sent.
 	 * @throws IllegalArgumentException If any parameter is set to {@code null} when
 	 *                                  it wasn't explicitly stated how it handles
 	 *                                  {@code null} values.
@@ -101,8 +104,8 @@ public final class TelegramTextMessage extends TextMessage {
 	public TelegramTextMessage(
 		@NonNull final String text, final int messageId, final User user, final Instant date, @NonNull final Chat chat,
 		final User forwardedFromUser, final Chat forwardedFromChat, final Integer forwardedFromMessageId, final String forwardedSenderName,
-		final Instant forwardedDate, final Message replyToMessage, final Instant editDate, final List<MessageEntity> entities,
-		final Message thisMessage
+		final Instant forwardedDate, final Integer replyToMessageId, final Integer replyToUserId, final Instant editDate,
+		final List<MessageEntity> entities
 	) {
 		super(text);
 
@@ -115,15 +118,17 @@ public final class TelegramTextMessage extends TextMessage {
 		this.forwardedFromMessageId = forwardedFromMessageId;
 		this.forwardedSenderName = forwardedSenderName;
 		this.forwardedDate = forwardedDate;
-		this.replyToMessage = replyToMessage;
+		this.replyToMessageId = replyToMessageId;
+		this.replyToUserId = replyToUserId;
 		this.editDate = editDate;
 		this.entities = entities != null ? Collections.unmodifiableList(entities) : null;
-		this.thisMessage = thisMessage;
 	}
 
 	/**
 	 * Factory method that converts the provided update to a
-	 * {@link TelegramTextMessage}.
+	 * {@link TelegramTextMessage}. Only the data that is needed to respond the
+	 * message is kept, so the rest of the update can be garbage collected while
+	 * the message waits to be dispatched.
 	 *
 	 * @param update The update to convert to a message.
 	 * @return The message contained in the update.
@@ -136,6 +141,7 @@ public final class TelegramTextMessage extends TextMessage {
 		}
 
 		final Message message = update.getMessage();
+		final Message replyToMessage = message.getReplyToMessage();
 
 		return new TelegramTextMessage(
 			message.getText(), message.getMessageId(),
@@ -146,10 +152,10 @@ public final class TelegramTextMessage extends TextMessage {
 			message.getForwardFromMessageId(),
 			message.getForwardSenderName(),
 			message.getForwardDate() != null ? Instant.ofEpochSecond(message.getForwardDate()) : null,
-			message.getReplyToMessage(),
+			replyToMessage != null ? replyToMessage.getMessageId() : null,
+			replyToMessage != null && replyToMessage.getFrom() != null ? replyToMessage.getFrom().getId() : null,
 			message.getEditDate() != null ? Instant.ofEpochSecond(message.getEditDate()) : null,
-			message.getEntities(),
-			update.getMessage()
+			message.getEntities()
 		);
 	}
 
@@ -166,8 +172,8 @@ public final class TelegramTextMessage extends TextMessage {
 
 		// To avoid visual noise, only send reply information
 		// for chats where there is several people
-		if (replyToMessage != null && (chat.isGroupChat() || chat.isSuperGroupChat() || chat.isChannelChat())) {
-			message.setReplyToMessageId(replyToMessage.getMessageId());
+		if (replyToMessageId != null && (chat.isGroupChat() || chat.isSuperGroupChat() || chat.isChannelChat())) {
+			message.setReplyToMessageId(replyToMessageId);
 		}
 
 		return message;
@@ -2,18 +2,20 @@
 
 package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
 
-import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ThreadLocalRandom;
 
 import org.telegram.telegrambots.meta.api.objects.Chat;
-import org.telegram.telegrambots.meta.api.objects.MessageEntity;
 
 import es.uvigo.esei.sing.vacbot.dispatchers.TextMessageDispatcher;
 import es.uvigo.esei.sing.vacbot.frontend.FrontendInterface;
+import es.uvigo.esei.sing.vacbot.responsegen.ResponseGenerationContext;
 import es.uvigo.esei.sing.vacbot.responsegen.ResponseGenerationException;
 import es.uvigo.esei.sing.vacbot.responsegen.ResponseGenerator;
 import es.uvigo.esei.sing.vacbot.settings.MessageDispatcherFactory;
+import es.uvigo.esei.sing.vacbot.settings.OverloadAction;
 import es.uvigo.esei.sing.vacbot.settings.VacBotSettings;
 
 /**
@@ -49,47 +51,110 @@ public final class TelegramTextMessageDispatcher extends TextMessageDispatcher<T
 	}
 
 	@Override
-	protected TelegramTextMessage computeResponse(final TelegramTextMessage message) throws ResponseGenerationException {
+	protected Object getSerializationKey(final TelegramTextMessage message) {
+		// Respond to each chat in order
+		return message.getChat().getId();
+	}
+
+	@Override
+	protected boolean isGroupConversation(final TelegramTextMessage message) {
+		return !message.getChat().isUserChat();
+	}
+
+	@Override
+	protected Object getCoalescingKey(final TelegramTextMessage message) {
+		// In group chats, each message is checked separately to know whether
+		// it is addressed to the bot, so only private chats are coalesced.
+		// There, the chat identifies the user too
+		return message.getChat().isUserChat() ? message.getChat().getId() : null;
+	}
+
+	@Override
+	protected TelegramTextMessage coalesceMessages(
+		final TelegramTextMessage previousMessage, final TelegramTextMessage message
+	) {
+		// Forwarded messages get their own canned response
+		if (isForwarded(previousMessage) || isForwarded(message)) {
+			return null;
+		}
+
+		// The entity offsets are not valid in the merged text, so remove them
+		// beforehand. The merged message stands for the last one, so that it
+		// is replied when needed
+		return new TelegramTextMessage(
+			joinUtterances(removeEntities(previousMessage), removeEntities(message)),
+			message.getMessageId(), message.getUser(), message.getDate(), message.getChat(),
+			null, null, null, null, null, message.getReplyToMessageId(), message.getReplyToUserId(),
+			null, null
+		);
+	}
+
+	@Override
+	protected CompletionStage<TelegramTextMessage> computeResponse(
+		final TelegramTextMessage message, final ResponseGenerationContext context
+	) throws ResponseGenerationException {
 		final Random prng = ThreadLocalRandom.current();
 		String messageText = message.getText();
-		TelegramTextMessage responseMessage = null;
+		CompletionStage<String> responseTextStage = null;
 		String responseText = null;
-		List<MessageEntity> messageEntities = message.getEntities(); // May be null if no entities
 		final Chat chat = message.getChat();
 
 		// Only bother with canned responses and deleting mentions and commands if the text is not empty
 		if (!messageText.isBlank()) {
-			if (
-				message.getForwardedDate() != null || message.getForwardedFromUser() != null ||
-				message.getForwardedSenderName() != null
-			) {
+			if (isForwarded(message)) {
 				responseText = FORWARDED_CANNED_RESPONSES[prng.nextInt(FORWARDED_CANNED_RESPONSES.length)];
-			} else if (messageEntities != null && !messageEntities.isEmpty()) {
-				for (final MessageEntity messageEntity : messageEntities) {
-					messageText = MessageEntityType.getType(messageEntity)
-						.adjustEntityInText(messageText, messageEntity);
-				}
+			} else {
+				messageText = removeEntities(message);
 			}
 		}
 
 		// Delegate to the generator if a canned response is not applicable
 		if (responseText == null) {
 			if (ResponseGenerator.hasResponseTo(messageText)) {
-				notifyForthcomingResponse(chat);
+				// Busy responses are sent right away, so there is no need to notify
+				if (context.getOverloadAction() != OverloadAction.BUSY_RESPONSE) {
+					notifyForthcomingResponse(chat);
+				}
 
-				responseText = ResponseGenerator.generateResponseTo(messageText, settings);
+				responseTextStage = ResponseGenerator.generateResponseAsync(
+					messageText, settings, context, getResponseGenerationExecutor()
+				);
 			}
 		}
 
-		if (responseText != null) {
-			responseMessage = new TelegramTextMessage(
-				responseText,
-				Integer.MIN_VALUE, null, null, chat,
-				null, null, null, null, null, message.getThisMessage(),
-				null, null, null
-			);
+		if (responseTextStage == null) {
+			responseTextStage = CompletableFuture.completedFuture(responseText);
 		}
 
-		return responseMessage;
+		return responseTextStage.thenApply((final String generatedResponseText) ->
+			generatedResponseText != null ? new TelegramTextMessage(
+				generatedResponseText,
+				Integer.MIN_VALUE, null, null, chat,
+				null, null, null, null, null, message.getMessageId(), null,
+				null, null
+			) : null
+		);
+	}
+
+	/**
+	 * Checks whether the specified message was forwarded from another chat.
+	 *
+	 * @param message The message to check.
+	 * @return True if the message was forwarded, false otherwise.
+	 */
+	private static boolean isForwarded(final TelegramTextMessage message) {
+		return message.getForwardedDate() != null || message.getForwardedFromUser() != null ||
+			message.getForwardedSenderName() != null;
+	}
+
+	/**
+	 * Returns the text of the specified message, with its mentions and commands
+	 * normalized or deleted.
+	 *
+	 * @param message The message whose text will be returned.
+	 * @return The described text.
+	 */
+	private static String removeEntities(final TelegramTextMessage message) {
+		return MessageEntityType.adjustEntitiesInText(message.getText(), message.getEntities());
 	}
 }
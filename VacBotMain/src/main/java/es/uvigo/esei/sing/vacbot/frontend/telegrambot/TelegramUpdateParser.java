@@ -0,0 +1,240 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.MessageEntity;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Parses the JSON representation of Telegram updates directly into
+ * {@link TelegramTextMessage} objects, reading it as a stream of tokens.
+ * <p>
+ * Unlike deserializing a whole {@code Update} object graph and converting it
+ * afterwards, only the message fields that {@link TelegramTextMessage} keeps
+ * are bound to objects. Everything else, like photos, stickers, or most of the
+ * replied message, is skipped without being allocated.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @see <a href="https://core.telegram.org/bots/api#update">Telegram API
+ *      documentation</a>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class TelegramUpdateParser {
+	/**
+	 * The object mapper to read and write Telegram API objects with. It is
+	 * thread-safe once configured.
+	 */
+	static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	private static final TypeReference<List<ParsedMessageEntity>> ENTITY_LIST_TYPE =
+		new TypeReference<List<ParsedMessageEntity>>() {};
+
+	/**
+	 * Parses the text message contained in the JSON representation of an update.
+	 *
+	 * @param updateJson The UTF-8 encoded JSON representation of the update.
+	 * @return The text message contained in the update, or {@code null} if it is
+	 *         not a text message update.
+	 * @throws IllegalArgumentException If {@code updateJson} is {@code null}.
+	 * @throws IOException              If the update is not valid JSON, or some
+	 *                                  of its fields has an unexpected type.
+	 */
+	static TelegramTextMessage parse(@NonNull final byte[] updateJson) throws IOException {
+		try (final JsonParser parser = OBJECT_MAPPER.getFactory().createParser(updateJson)) {
+			TelegramTextMessage textMessage = null;
+
+			expectStartObject(parser, parser.nextToken());
+
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				final String fieldName = parser.getCurrentName();
+				final JsonToken valueToken = parser.nextToken();
+
+				if ("message".equals(fieldName) && valueToken == JsonToken.START_OBJECT) {
+					textMessage = parseMessage(parser);
+				} else {
+					parser.skipChildren();
+				}
+			}
+
+			return textMessage;
+		}
+	}
+
+	/**
+	 * Parses a message object, whose start token is the current token of the
+	 * parser.
+	 *
+	 * @param parser The parser to read tokens from.
+	 * @return The parsed message, or {@code null} if it is not a text message.
+	 * @throws IOException If the message is not valid.
+	 */
+	private static TelegramTextMessage parseMessage(final JsonParser parser) throws IOException {
+		String text = null;
+		int messageId = 0;
+		User user = null;
+		Instant date = null;
+		Chat chat = null;
+		User forwardedFromUser = null;
+		Chat forwardedFromChat = null;
+		Integer forwardedFromMessageId = null;
+		String forwardedSenderName = null;
+		Instant forwardedDate = null;
+		Integer replyToMessageId = null;
+		Integer replyToUserId = null;
+		Instant editDate = null;
+		List<ParsedMessageEntity> entities = null;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String fieldName = parser.getCurrentName();
+			final JsonToken valueToken = parser.nextToken();
+
+			if (valueToken == JsonToken.VALUE_NULL) {
+				continue;
+			}
+
+			switch (fieldName) {
+				case "text":
+					text = parser.getValueAsString();
+					break;
+				case "message_id":
+					messageId = parser.getIntValue();
+					break;
+				case "from":
+					user = parser.readValueAs(User.class);
+					break;
+				case "date":
+					date = Instant.ofEpochSecond(parser.getLongValue());
+					break;
+				case "chat":
+					chat = parser.readValueAs(Chat.class);
+					break;
+				case "forward_from":
+					forwardedFromUser = parser.readValueAs(User.class);
+					break;
+				case "forward_from_chat":
+					forwardedFromChat = parser.readValueAs(Chat.class);
+					break;
+				case "forward_from_message_id":
+					forwardedFromMessageId = parser.getIntValue();
+					break;
+				case "forward_sender_name":
+					forwardedSenderName = parser.getValueAsString();
+					break;
+				case "forward_date":
+					forwardedDate = Instant.ofEpochSecond(parser.getLongValue());
+					break;
+				case "reply_to_message":
+					expectStartObject(parser, valueToken);
+
+					// Only the replied message and its sender IDs are needed
+					while (parser.nextToken() == JsonToken.FIELD_NAME) {
+						final String replyFieldName = parser.getCurrentName();
+						final JsonToken replyValueToken = parser.nextToken();
+
+						if ("message_id".equals(replyFieldName)) {
+							replyToMessageId = parser.getIntValue();
+						} else if ("from".equals(replyFieldName) && replyValueToken == JsonToken.START_OBJECT) {
+							replyToUserId = parseUserId(parser);
+						} else {
+							parser.skipChildren();
+						}
+					}
+
+					break;
+				case "edit_date":
+					editDate = Instant.ofEpochSecond(parser.getLongValue());
+					break;
+				case "entities":
+					entities = parser.readValueAs(ENTITY_LIST_TYPE);
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+
+		if (text == null || chat == null) {
+			return null;
+		}
+
+		if (entities != null) {
+			for (final ParsedMessageEntity entity : entities) {
+				entity.computeText(text);
+			}
+		}
+
+		return new TelegramTextMessage(
+			text, messageId, user, date, chat, forwardedFromUser, forwardedFromChat, forwardedFromMessageId,
+			forwardedSenderName, forwardedDate, replyToMessageId, replyToUserId, editDate,
+			entities != null ? List.copyOf(entities) : null
+		);
+	}
+
+	/**
+	 * Parses the ID of a user object, whose start token is the current token of
+	 * the parser, skipping the rest of its fields.
+	 *
+	 * @param parser The parser to read tokens from.
+	 * @return The ID of the user, or {@code null} if it has none.
+	 * @throws IOException If the user is not valid.
+	 */
+	private static Integer parseUserId(final JsonParser parser) throws IOException {
+		Integer userId = null;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String fieldName = parser.getCurrentName();
+
+			if (parser.nextToken() != JsonToken.VALUE_NULL && "id".equals(fieldName)) {
+				userId = parser.getIntValue();
+			} else {
+				parser.skipChildren();
+			}
+		}
+
+		return userId;
+	}
+
+	/**
+	 * Checks that a token starts an object.
+	 *
+	 * @param parser The parser the token was read from.
+	 * @param token  The token to check.
+	 * @throws JsonParseException If the token doesn't start an object.
+	 */
+	private static void expectStartObject(final JsonParser parser, final JsonToken token) throws JsonParseException {
+		if (token != JsonToken.START_OBJECT) {
+			throw new JsonParseException(parser, "Expected a JSON object, but got " + token);
+		}
+	}
+
+	/**
+	 * A message entity whose text can be computed once the text of its message
+	 * is known, which Telegram API objects only do when they are deserialized as
+	 * part of a whole message.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class ParsedMessageEntity extends MessageEntity {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void computeText(final String text) {
+			super.computeText(text);
+		}
+	}
+}
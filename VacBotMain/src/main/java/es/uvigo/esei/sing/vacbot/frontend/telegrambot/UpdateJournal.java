@@ -0,0 +1,286 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import es.uvigo.esei.sing.vacbot.settings.UpdateJournalSettings;
+import es.uvigo.esei.sing.vacbot.util.MappedJournal;
+import es.uvigo.esei.sing.vacbot.util.RingBuffer;
+import lombok.NonNull;
+
+/**
+ * Stores the accepted Telegram updates in a {@link MappedJournal}, and feeds
+ * them to the message buffer from a background thread, as the buffer has room
+ * for them.
+ * <p>
+ * The journal checkpoint advances as messages are acknowledged, up to the last
+ * update whose message and every previous one were handled. Each chat is
+ * handled in order, so acknowledging a message of a chat also acknowledges the
+ * previous messages of that chat, which may have been merged into it. Messages
+ * whose reply is still being sent are not acknowledged until it is sent, so
+ * that replies are not lost either. When the bot starts, the updates after the checkpoint are fed again, so handled
+ * updates may be handled twice, but accepted updates are never lost. Updates
+ * that Telegram delivers again while their message is pending are skipped.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+final class UpdateJournal implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(UpdateJournal.class);
+
+	private final MappedJournal journal;
+	private final RingBuffer<TelegramTextMessage> messageBuffer;
+	private final Thread readerThread;
+	/**
+	 * The sequence numbers of the fed records whose messages were not handled
+	 * yet.
+	 */
+	private final NavigableSet<Long> pendingSequences = new TreeSet<>();
+	/**
+	 * The pending messages of each chat, by chat ID.
+	 */
+	private final Map<Long, ChatPendingMessages> pendingMessagesByChat = new HashMap<>();
+	private long lastFedSequence;
+
+	/**
+	 * Opens the journal, and starts feeding the updates that were not handled
+	 * before to the message buffer.
+	 *
+	 * @param settings      The settings of the journal.
+	 * @param messageBuffer The buffer to put the messages of the updates in.
+	 * @throws IllegalArgumentException If some parameter is {@code null}, or the
+	 *                                  segment size is too big.
+	 * @throws IOException              If the journal couldn't be opened.
+	 */
+	UpdateJournal(
+		@NonNull final UpdateJournalSettings settings, @NonNull final RingBuffer<TelegramTextMessage> messageBuffer
+	) throws IOException {
+		// A mapped buffer can't hold 2 GiB or more
+		final long segmentSize = settings.getSegmentSize() * 1048576L;
+		if (segmentSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The journal segment size must be less than 2048 MiB");
+		}
+
+		this.journal = new MappedJournal(settings.getDirectory(), (int) segmentSize);
+		this.messageBuffer = messageBuffer;
+		this.lastFedSequence = journal.getCheckpoint();
+		this.readerThread = new Thread(this::feedMessages, "Telegram update journal reader");
+
+		readerThread.setDaemon(true);
+		readerThread.start();
+	}
+
+	/**
+	 * Appends an accepted update to the journal. Its message will be put in the
+	 * message buffer when it has room.
+	 *
+	 * @param updateJson The UTF-8 encoded JSON representation of the update.
+	 * @throws IllegalArgumentException If {@code updateJson} is {@code null}.
+	 * @throws IOException              If the update couldn't be appended.
+	 */
+	void append(@NonNull final byte[] updateJson) throws IOException {
+		journal.append(updateJson);
+	}
+
+	/**
+	 * Records that a message was handled, along with the previous messages of its
+	 * chat, and advances the journal checkpoint if possible.
+	 *
+	 * @param message The handled message.
+	 * @throws IllegalArgumentException If {@code message} is {@code null}.
+	 */
+	void acknowledge(@NonNull final TelegramTextMessage message) {
+		final long checkpoint;
+
+		synchronized (this) {
+			final Long chatId = message.getChat().getId();
+			final ChatPendingMessages chatPendingMessages = pendingMessagesByChat.get(chatId);
+
+			if (chatPendingMessages == null) {
+				return;
+			}
+
+			chatPendingMessages.lastAcknowledgedMessageId = Math.max(
+				chatPendingMessages.lastAcknowledgedMessageId, message.getMessageId()
+			);
+			forgetHandledMessages(chatId, chatPendingMessages);
+
+			checkpoint = getCheckpoint();
+		}
+
+		journal.checkpoint(checkpoint);
+	}
+
+	/**
+	 * Records that a reply to a message is being sent, so that the message is not
+	 * considered handled until the reply is sent, even if it is acknowledged.
+	 *
+	 * @param chatId    The ID of the chat of the message.
+	 * @param messageId The ID of the replied message.
+	 * @throws IllegalArgumentException If {@code chatId} is {@code null}.
+	 */
+	synchronized void replyPending(@NonNull final Long chatId, final int messageId) {
+		pendingMessagesByChat.computeIfAbsent(
+			chatId, (final Long id) -> new ChatPendingMessages()
+		).repliesInFlight.add(messageId);
+	}
+
+	/**
+	 * Records that a reply to a message was sent, or won't be sent, and advances
+	 * the journal checkpoint if the message was acknowledged already.
+	 *
+	 * @param chatId    The ID of the chat of the message.
+	 * @param messageId The ID of the replied message.
+	 * @throws IllegalArgumentException If {@code chatId} is {@code null}.
+	 */
+	void replyFinished(@NonNull final Long chatId, final int messageId) {
+		final long checkpoint;
+
+		synchronized (this) {
+			final ChatPendingMessages chatPendingMessages = pendingMessagesByChat.get(chatId);
+
+			if (chatPendingMessages == null || !chatPendingMessages.repliesInFlight.remove(messageId)) {
+				return;
+			}
+
+			forgetHandledMessages(chatId, chatPendingMessages);
+
+			checkpoint = getCheckpoint();
+		}
+
+		journal.checkpoint(checkpoint);
+	}
+
+	/**
+	 * Forgets the pending messages of a chat that were acknowledged and have no
+	 * reply being sent. This method must be called while holding the lock of
+	 * this object.
+	 *
+	 * @param chatId              The ID of the chat.
+	 * @param chatPendingMessages The pending messages of the chat.
+	 */
+	private void forgetHandledMessages(final Long chatId, final ChatPendingMessages chatPendingMessages) {
+		final Iterator<Map.Entry<Integer, Long>> handledSequences = chatPendingMessages.sequences.headMap(
+			chatPendingMessages.lastAcknowledgedMessageId, true
+		).entrySet().iterator();
+
+		while (handledSequences.hasNext()) {
+			final Map.Entry<Integer, Long> handledSequence = handledSequences.next();
+
+			if (!chatPendingMessages.repliesInFlight.contains(handledSequence.getKey())) {
+				pendingSequences.remove(handledSequence.getValue());
+				handledSequences.remove();
+			}
+		}
+
+		if (chatPendingMessages.sequences.isEmpty() && chatPendingMessages.repliesInFlight.isEmpty()) {
+			pendingMessagesByChat.remove(chatId);
+		}
+	}
+
+	/**
+	 * Puts the messages of the journaled updates in the message buffer, in order,
+	 * until the journal is closed.
+	 */
+	private void feedMessages() {
+		try {
+			while (true) {
+				final MappedJournal.Record record = journal.take();
+				TelegramTextMessage textMessage = null;
+
+				try {
+					textMessage = TelegramUpdateParser.parse(record.getPayload());
+				} catch (final IOException exc) {
+					LOGGER.warn("Skipping an unreadable update in the journal", exc);
+				}
+
+				final long checkpoint;
+				synchronized (this) {
+					lastFedSequence = record.getSequence();
+
+					if (textMessage != null) {
+						final NavigableMap<Integer, Long> chatPendingSequences = pendingMessagesByChat.computeIfAbsent(
+							textMessage.getChat().getId(), (final Long chatId) -> new ChatPendingMessages()
+						).sequences;
+
+						if (chatPendingSequences.putIfAbsent(textMessage.getMessageId(), record.getSequence()) == null) {
+							pendingSequences.add(record.getSequence());
+						} else {
+							// Telegram delivered the update again before its message was
+							// handled, so the first copy stands for this one
+							LOGGER.debug("Skipping a duplicate update in the journal: {}", textMessage);
+							textMessage = null;
+						}
+					}
+
+					checkpoint = getCheckpoint();
+				}
+
+				if (textMessage != null) {
+					messageBuffer.put(textMessage);
+
+					LOGGER.trace("Update enqueued: " + textMessage);
+				} else {
+					journal.checkpoint(checkpoint);
+				}
+			}
+		} catch (final InterruptedException exc) {
+			// Closed. The update being fed will be fed again on the next start
+		}
+	}
+
+	/**
+	 * Computes the sequence number of the last record whose message and every
+	 * previous one were handled. This method must be called while holding the
+	 * lock of this object.
+	 *
+	 * @return The described sequence number.
+	 */
+	private long getCheckpoint() {
+		return pendingSequences.isEmpty() ? lastFedSequence : pendingSequences.first() - 1;
+	}
+
+	/**
+	 * Stops feeding messages to the buffer, and closes the journal.
+	 */
+	@Override
+	public void close() {
+		readerThread.interrupt();
+		journal.close();
+	}
+
+	/**
+	 * The messages of a chat that were not handled yet.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class ChatPendingMessages {
+		/**
+		 * The sequence numbers of the fed records whose messages were not handled
+		 * yet, by message ID.
+		 */
+		private final NavigableMap<Integer, Long> sequences = new TreeMap<>();
+		/**
+		 * The IDs of the messages whose reply is being sent.
+		 */
+		private final Set<Integer> repliesInFlight = new HashSet<>();
+		/**
+		 * The ID of the last acknowledged message. The previous messages were
+		 * handled too.
+		 */
+		private int lastAcknowledgedMessageId = Integer.MIN_VALUE;
+	}
+}
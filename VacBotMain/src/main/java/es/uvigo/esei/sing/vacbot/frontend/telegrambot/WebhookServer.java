@@ -0,0 +1,259 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.frontend.telegrambot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import lombok.NonNull;
+
+/**
+ * A minimal HTTP server that receives Telegram updates sent via webhooks, as a
+ * lightweight alternative to the server that comes with the Telegram bot
+ * library.
+ * <p>
+ * It is built on the HTTP server that comes with the JDK, which multiplexes
+ * connections with non-blocking I/O and keeps them alive between requests, so
+ * Telegram can reuse them. Requests are handled by a fixed pool of threads,
+ * which may wait for responses to send inline. The body of each request is
+ * handed to the update handler as is, so it can be parsed without binding it
+ * to a whole {@code Update} object.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+final class WebhookServer implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebhookServer.class);
+
+	/**
+	 * The maximum size of the body of an update request, in bytes. Updates with
+	 * text messages are way smaller.
+	 */
+	private static final int MAXIMUM_BODY_SIZE = 1048576;
+	/**
+	 * How long to wait for the requests being handled when stopping, in seconds.
+	 */
+	private static final int STOP_DELAY = 1;
+
+	private final String updatePath;
+	private final UpdateHandler updateHandler;
+	private final ExecutorService handlerExecutor;
+	private final HttpServer server;
+
+	/**
+	 * Creates and starts a new webhook server.
+	 *
+	 * @param internalUrl              The URL to listen on. Updates are received
+	 *                                 at its path, followed by
+	 *                                 {@code callback/} and the bot path, like
+	 *                                 the Telegram bot library does.
+	 * @param botPath                  The bot path.
+	 * @param certificateStorePath     The Java certificate store with the
+	 *                                 private key to use for TLS. If
+	 *                                 {@code null}, requests are received over
+	 *                                 plain HTTP, assuming that a reverse proxy
+	 *                                 handles HTTPS.
+	 * @param certificateStorePassword The password of the certificate store. It
+	 *                                 may be {@code null} if there is no
+	 *                                 certificate store.
+	 * @param threads                  How many requests can be handled at once.
+	 * @param updateHandler            The handler of received updates.
+	 * @throws IllegalArgumentException If some parameter is {@code null} when it
+	 *                                  wasn't stated otherwise, or the internal
+	 *                                  URL is not valid.
+	 * @throws IOException              If the server couldn't be bound, or the
+	 *                                  certificate store couldn't be read.
+	 * @throws GeneralSecurityException If the certificate store couldn't be
+	 *                                  loaded.
+	 */
+	WebhookServer(
+		@NonNull final String internalUrl, @NonNull final String botPath, final Path certificateStorePath,
+		final String certificateStorePassword, final int threads, @NonNull final UpdateHandler updateHandler
+	) throws IOException, GeneralSecurityException {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		final URI internalUri = URI.create(internalUrl);
+		final String basePath = internalUri.getPath() != null ? internalUri.getPath() : "";
+		final boolean secure = certificateStorePath != null;
+		final int port = internalUri.getPort() >= 0 ? internalUri.getPort() : secure ? 443 : 80;
+
+		if (internalUri.getHost() == null) {
+			throw new IllegalArgumentException("The internal URL has no host");
+		}
+
+		this.updatePath = (basePath.endsWith("/") ? basePath : basePath + "/") + "callback/" + botPath;
+		this.updateHandler = updateHandler;
+
+		final InetSocketAddress address = new InetSocketAddress(internalUri.getHost(), port);
+		if (secure) {
+			final HttpsServer httpsServer = HttpsServer.create(address, 0);
+			httpsServer.setHttpsConfigurator(new HttpsConfigurator(
+				createSslContext(certificateStorePath, certificateStorePassword)
+			));
+
+			this.server = httpsServer;
+		} else {
+			this.server = HttpServer.create(address, 0);
+		}
+
+		this.handlerExecutor = Executors.newFixedThreadPool(threads, (final Runnable r) -> {
+			final Thread thread = new Thread(r, "Telegram webhook thread " + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		server.createContext(updatePath, this::handle);
+		server.setExecutor(handlerExecutor);
+		server.start();
+
+		LOGGER.info("Webhook server listening on {}:{}{}", internalUri.getHost(), port, basePath);
+	}
+
+	/**
+	 * Handles a request made to the update path or a subpath of it.
+	 *
+	 * @param exchange The request and its response.
+	 * @throws IOException If an I/O error occurs while exchanging data with the
+	 *                     client.
+	 */
+	private void handle(final HttpExchange exchange) throws IOException {
+		try {
+			if (!updatePath.equals(exchange.getRequestURI().getPath())) {
+				sendEmptyResponse(exchange, 404);
+				return;
+			}
+
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				sendEmptyResponse(exchange, 405);
+				return;
+			}
+
+			final byte[] updateJson;
+			try (final InputStream body = exchange.getRequestBody()) {
+				updateJson = body.readNBytes(MAXIMUM_BODY_SIZE + 1);
+			}
+
+			if (updateJson.length > MAXIMUM_BODY_SIZE) {
+				sendEmptyResponse(exchange, 413);
+				return;
+			}
+
+			final SendMessage response;
+			try {
+				response = updateHandler.handleUpdate(updateJson);
+			} catch (final IOException exc) {
+				// Telegram would send it again and again otherwise, like unwanted updates
+				LOGGER.warn("Received an invalid update from {}. It will be ignored", exchange.getRemoteAddress(), exc);
+				sendEmptyResponse(exchange, 200);
+				return;
+			} catch (final RuntimeException exc) {
+				LOGGER.error("An exception has occurred while handling an update", exc);
+				sendEmptyResponse(exchange, 500);
+				return;
+			}
+
+			if (response == null) {
+				sendEmptyResponse(exchange, 200);
+				return;
+			}
+
+			// The Telegram API executes the method in the response body
+			final byte[] responseJson = TelegramUpdateParser.OBJECT_MAPPER.writeValueAsBytes(response);
+
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(200, responseJson.length);
+
+			try (final OutputStream responseBody = exchange.getResponseBody()) {
+				responseBody.write(responseJson);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Stops receiving updates, waiting a moment for the requests being handled.
+	 */
+	@Override
+	public void close() {
+		server.stop(STOP_DELAY);
+		handlerExecutor.shutdownNow();
+	}
+
+	/**
+	 * Sends a response with the specified status code and no body.
+	 *
+	 * @param exchange   The request to respond.
+	 * @param statusCode The status code.
+	 * @throws IOException If an I/O error occurs while sending the response.
+	 */
+	private static void sendEmptyResponse(final HttpExchange exchange, final int statusCode) throws IOException {
+		exchange.sendResponseHeaders(statusCode, -1);
+	}
+
+	/**
+	 * Creates a TLS context that authenticates the server with the private key
+	 * stored in a Java certificate store.
+	 *
+	 * @param certificateStorePath     The path to the certificate store.
+	 * @param certificateStorePassword The password of the certificate store, and
+	 *                                 of the private key in it.
+	 * @return The created TLS context.
+	 * @throws IOException              If the certificate store couldn't be read.
+	 * @throws GeneralSecurityException If the certificate store couldn't be
+	 *                                  loaded.
+	 */
+	private static SSLContext createSslContext(
+		final Path certificateStorePath, final String certificateStorePassword
+	) throws IOException, GeneralSecurityException {
+		final char[] password = certificateStorePassword != null ? certificateStorePassword.toCharArray() : null;
+		final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		final SSLContext sslContext = SSLContext.getInstance("TLS");
+
+		keyManagerFactory.init(KeyStore.getInstance(certificateStorePath.toFile(), password), password);
+		sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+		return sslContext;
+	}
+
+	/**
+	 * Handles the updates received by a {@link WebhookServer}.
+	 *
+	 * @author Alejandro González García
+	 */
+	@FunctionalInterface
+	interface UpdateHandler {
+		/**
+		 * Handles an update.
+		 *
+		 * @param updateJson The UTF-8 encoded JSON representation of the update.
+		 * @return The message to send in the response to the request, or
+		 *         {@code null} to send none.
+		 * @throws IOException If the update is not valid.
+		 */
+		SendMessage handleUpdate(byte[] updateJson) throws IOException;
+	}
+}
@@ -0,0 +1,67 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.responsegen;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Describes the general form of a predicate-object combination that is used to
+ * probe the knowledge base, abstracting away its actual words. Combinations
+ * with the same shape are assumed to behave similarly when probing the
+ * knowledge base.
+ *
+ * @author Alejandro González García
+ * @implNote This class is immutable and, therefore, thread-safe.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@EqualsAndHashCode
+final class CombinationShape {
+	@Getter
+	private final boolean lemmatizedPredicate;
+	@Getter
+	private final boolean multiWordPredicate;
+	@Getter
+	private final boolean lemmatizedObject;
+	@Getter
+	private final boolean multiWordObject;
+
+	/**
+	 * Computes the shape of the combination of the specified predicate and object
+	 * terms.
+	 *
+	 * @param predicate The predicate term.
+	 * @param object    The object term.
+	 * @return The shape of the combination.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	static CombinationShape of(@NonNull final KnowledgeBaseTerm predicate, @NonNull final KnowledgeBaseTerm object) {
+		return new CombinationShape(
+			predicate.isLemmatized(), predicate.getWordCount() > 1,
+			object.isLemmatized(), object.getWordCount() > 1
+		);
+	}
+
+	/**
+	 * Returns a human-readable description of this shape, like "lemma single-word
+	 * predicate + original multi-word object", which is also used as a stable
+	 * identifier for the shape.
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder stringBuilder = new StringBuilder();
+
+		stringBuilder
+			.append(lemmatizedPredicate ? "lemma " : "original ")
+			.append(multiWordPredicate ? "multi-word" : "single-word")
+			.append(" predicate + ")
+			.append(lemmatizedObject ? "lemma " : "original ")
+			.append(multiWordObject ? "multi-word" : "single-word")
+			.append(" object");
+
+		return stringBuilder.toString();
+	}
+}
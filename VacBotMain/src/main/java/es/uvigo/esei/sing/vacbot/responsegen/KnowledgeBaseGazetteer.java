@@ -0,0 +1,295 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.responsegen;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.NodeIterator;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.vocabulary.RDF;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A dictionary of the surface forms of the predicates and entities (objects)
+ * stored in the knowledge base, which finds them in tokenized text in linear
+ * time, by running an Aho-Corasick automaton whose alphabet is the set of
+ * tokens.
+ * <p>
+ * This allows answering simple questions whose predicate and object appear
+ * verbatim in the text with the knowledge base, without needing to parse
+ * their grammatical structure.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is immutable after construction
+ *           and, therefore, thread-safe.
+ */
+final class KnowledgeBaseGazetteer {
+	private static final Pattern ONE_OR_MORE_SPACES = Pattern.compile("\\s+");
+
+	private final State rootState = new State(0);
+
+	/**
+	 * The number of distinct surface forms in this gazetteer.
+	 */
+	@Getter
+	private int surfaceFormCount = 0;
+
+	/**
+	 * Builds a gazetteer with the surface forms of the predicates and objects of
+	 * the RDF statements reified in the specified knowledge base model. The
+	 * caller is responsible for starting a read transaction if needed.
+	 *
+	 * @param model           The knowledge base model.
+	 * @param basePropertyUri The base URI of the knowledge base predicates.
+	 * @param baseEntityUri   The base URI of the knowledge base entities.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	KnowledgeBaseGazetteer(
+		@NonNull final Model model, @NonNull final URI basePropertyUri, @NonNull final URI baseEntityUri
+	) {
+		addSurfaceForms(model, RDF.predicate, basePropertyUri, true);
+		addSurfaceForms(model, RDF.object, baseEntityUri, false);
+		computeFailureLinks();
+	}
+
+	/**
+	 * Finds the predicate-object combinations whose surface forms appear in the
+	 * specified tokens, with the predicate appearing before the object and not
+	 * overlapping with it. Combinations that span more tokens come first, as they
+	 * are more specific.
+	 *
+	 * @param tokens          The lowercase tokens to scan.
+	 * @param maxCombinations The maximum number of combinations to return.
+	 * @return The found combinations.
+	 * @throws IllegalArgumentException If {@code tokens} is {@code null}.
+	 */
+	List<PredicateObjectCombination> findCombinations(@NonNull final List<String> tokens, final int maxCombinations) {
+		final List<Match> predicateMatches = new ArrayList<>();
+		final List<Match> objectMatches = new ArrayList<>();
+
+		// Scan the tokens with the automaton
+		State state = rootState;
+		for (int i = 0; i < tokens.size(); ++i) {
+			final String token = tokens.get(i);
+
+			while (state != rootState && !state.transitions.containsKey(token)) {
+				state = state.failure;
+			}
+			state = state.transitions.getOrDefault(token, rootState);
+
+			// Report every surface form that ends at this token
+			for (
+				State matchState = state.surfaceForm != null ? state : state.outputLink;
+				matchState != null;
+				matchState = matchState.outputLink
+			) {
+				final Match match = new Match(i + 1 - matchState.depth, i + 1, matchState.surfaceForm);
+
+				if (matchState.predicate) {
+					predicateMatches.add(match);
+				}
+
+				if (matchState.entity) {
+					objectMatches.add(match);
+				}
+			}
+		}
+
+		final List<Match[]> matchPairs = new ArrayList<>();
+		for (final Match predicateMatch : predicateMatches) {
+			for (final Match objectMatch : objectMatches) {
+				if (predicateMatch.end <= objectMatch.start) {
+					matchPairs.add(new Match[] { predicateMatch, objectMatch });
+				}
+			}
+		}
+
+		// List.sort is stable
+		matchPairs.sort(Comparator.comparingInt(
+			(final Match[] matchPair) -> matchPair[0].getLength() + matchPair[1].getLength()
+		).reversed());
+
+		final List<PredicateObjectCombination> combinations = new ArrayList<>(
+			Math.min(matchPairs.size(), maxCombinations)
+		);
+
+		for (final Match[] matchPair : matchPairs) {
+			if (combinations.size() >= maxCombinations) {
+				break;
+			}
+
+			combinations.add(new PredicateObjectCombination(
+				new KnowledgeBaseTerm(matchPair[0].surfaceForm, false, matchPair[0].getLength()),
+				new KnowledgeBaseTerm(matchPair[1].surfaceForm, false, matchPair[1].getLength())
+			));
+		}
+
+		return combinations;
+	}
+
+	/**
+	 * Adds the surface forms of the resources that are the object of statements
+	 * with the specified predicate to the trie of this gazetteer. The surface form
+	 * of a resource is the fragment of its URI.
+	 *
+	 * @param model     The knowledge base model.
+	 * @param property  The predicate of the statements.
+	 * @param baseUri   The base URI that the resources must have to be added.
+	 * @param predicate Whether the resources are knowledge base predicates, or
+	 *                  entities otherwise.
+	 */
+	private void addSurfaceForms(
+		final Model model, final Property property, final URI baseUri, final boolean predicate
+	) {
+		final String uriPrefix = baseUri.toASCIIString() + "#";
+		final NodeIterator resourceIter = model.listObjectsOfProperty(property);
+
+		try {
+			while (resourceIter.hasNext()) {
+				final RDFNode resource = resourceIter.next();
+
+				if (resource.isURIResource() && resource.asResource().getURI().startsWith(uriPrefix)) {
+					final String surfaceForm;
+					try {
+						surfaceForm = new URI(resource.asResource().getURI()).getFragment();
+					} catch (final Exception exc) {
+						// Not a valid URI, so we can't query for it either
+						continue;
+					}
+
+					if (surfaceForm != null && !surfaceForm.isBlank()) {
+						addSurfaceForm(surfaceForm.toLowerCase(Locale.ROOT).trim(), predicate);
+					}
+				}
+			}
+		} finally {
+			resourceIter.close();
+		}
+	}
+
+	/**
+	 * Adds a surface form to the trie of this gazetteer.
+	 *
+	 * @param surfaceForm The surface form to add.
+	 * @param predicate   Whether the surface form is of a predicate, or an entity
+	 *                    otherwise.
+	 */
+	private void addSurfaceForm(final String surfaceForm, final boolean predicate) {
+		State state = rootState;
+
+		for (final String token : ONE_OR_MORE_SPACES.split(surfaceForm)) {
+			final int depth = state.depth + 1;
+			state = state.transitions.computeIfAbsent(token, (final String key) -> new State(depth));
+		}
+
+		if (state.surfaceForm == null) {
+			state.surfaceForm = surfaceForm;
+			++surfaceFormCount;
+		}
+
+		if (predicate) {
+			state.predicate = true;
+		} else {
+			state.entity = true;
+		}
+	}
+
+	/**
+	 * Computes the failure and output links of every state of the trie, turning
+	 * it into an Aho-Corasick automaton.
+	 */
+	private void computeFailureLinks() {
+		final Queue<State> stateQueue = new ArrayDeque<>();
+
+		rootState.failure = rootState;
+		for (final State state : rootState.transitions.values()) {
+			state.failure = rootState;
+			stateQueue.add(state);
+		}
+
+		// Breadth-first traversal, so the failure states are computed before
+		// they are needed
+		while (!stateQueue.isEmpty()) {
+			final State state = stateQueue.remove();
+
+			for (final Map.Entry<String, State> transition : state.transitions.entrySet()) {
+				final String token = transition.getKey();
+				final State nextState = transition.getValue();
+
+				State failureState = state.failure;
+				while (failureState != rootState && !failureState.transitions.containsKey(token)) {
+					failureState = failureState.failure;
+				}
+
+				nextState.failure = failureState.transitions.getOrDefault(token, rootState);
+				nextState.outputLink = nextState.failure.surfaceForm != null ?
+					nextState.failure : nextState.failure.outputLink;
+
+				stateQueue.add(nextState);
+			}
+		}
+	}
+
+	/**
+	 * A state of the Aho-Corasick automaton, which corresponds to a sequence of
+	 * tokens that is a prefix of some surface form.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class State {
+		private final Map<String, State> transitions = new HashMap<>(2);
+		private final int depth;
+		private State failure = null;
+		/**
+		 * The closest state reachable through failure links which corresponds to a
+		 * complete surface form.
+		 */
+		private State outputLink = null;
+		/**
+		 * The surface form that ends in this state, or {@code null} if no surface
+		 * form ends here.
+		 */
+		private String surfaceForm = null;
+		private boolean predicate = false;
+		private boolean entity = false;
+
+		private State(final int depth) {
+			this.depth = depth;
+		}
+	}
+
+	/**
+	 * An occurrence of a surface form in a sequence of tokens.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class Match {
+		private final int start;
+		private final int end;
+		private final String surfaceForm;
+
+		private Match(final int start, final int end, final String surfaceForm) {
+			this.start = start;
+			this.end = end;
+			this.surfaceForm = surfaceForm;
+		}
+
+		private int getLength() {
+			return end - start;
+		}
+	}
+}
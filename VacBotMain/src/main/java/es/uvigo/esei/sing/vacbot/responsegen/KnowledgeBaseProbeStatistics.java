@@ -0,0 +1,256 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.responsegen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.NonNull;
+
+/**
+ * Keeps track of how often knowledge base probes succeed for each combination
+ * shape, and how much they cost, in order to try the most promising
+ * predicate-object combinations first.
+ * <p>
+ * The counters are lock-free, so recording probe results from several threads
+ * concurrently is cheap.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+public final class KnowledgeBaseProbeStatistics {
+	private static final String PROBES_KEY_SUFFIX = ".probes";
+	private static final String HITS_KEY_SUFFIX = ".hits";
+	private static final String PROBE_NANOS_KEY_SUFFIX = ".probeNanos";
+
+	private final Map<String, ShapeStatistics> shapeStatistics = new ConcurrentHashMap<>();
+	private final double explorationRate;
+	private final long minimumSamples;
+	private final double minimumSuccessProbability;
+
+	/**
+	 * Creates a new, empty knowledge base probe statistics object.
+	 *
+	 * @param explorationRate           The probability of trying the combinations
+	 *                                  in their default order, without truncation,
+	 *                                  so that the statistics of every shape keep
+	 *                                  being updated.
+	 * @param minimumSamples            The number of probes of a shape that must be
+	 *                                  recorded before considering that its success
+	 *                                  probability is reliable enough to discard
+	 *                                  its combinations.
+	 * @param minimumSuccessProbability The success probability below which the
+	 *                                  combinations of a shape with reliable
+	 *                                  statistics will not be tried.
+	 * @throws IllegalArgumentException If some probability is not in the [0, 1]
+	 *                                  interval, or {@code minimumSamples} is
+	 *                                  negative.
+	 */
+	public KnowledgeBaseProbeStatistics(
+		final double explorationRate, final long minimumSamples, final double minimumSuccessProbability
+	) {
+		if (explorationRate < 0 || explorationRate > 1) {
+			throw new IllegalArgumentException("The exploration rate must be in the [0, 1] interval");
+		}
+
+		if (minimumSamples < 0) {
+			throw new IllegalArgumentException("The minimum number of samples can't be negative");
+		}
+
+		if (minimumSuccessProbability < 0 || minimumSuccessProbability > 1) {
+			throw new IllegalArgumentException("The minimum success probability must be in the [0, 1] interval");
+		}
+
+		this.explorationRate = explorationRate;
+		this.minimumSamples = minimumSamples;
+		this.minimumSuccessProbability = minimumSuccessProbability;
+	}
+
+	/**
+	 * Records the result of a knowledge base probe.
+	 *
+	 * @param shape      The shape of the predicate-object combination used for the
+	 *                   probe.
+	 * @param hit        Whether the probe yielded a response.
+	 * @param probeNanos The time the probe took, in nanoseconds.
+	 * @throws IllegalArgumentException If {@code shape} is {@code null}.
+	 */
+	void recordProbe(@NonNull final CombinationShape shape, final boolean hit, final long probeNanos) {
+		final ShapeStatistics statistics = shapeStatistics.computeIfAbsent(
+			shape.toString(), (final String key) -> new ShapeStatistics()
+		);
+
+		statistics.probes.increment();
+		if (hit) {
+			statistics.hits.increment();
+		}
+		statistics.probeNanos.add(Math.max(probeNanos, 0));
+	}
+
+	/**
+	 * Sorts the provided combinations by their observed success probability per
+	 * unit of cost, in descending order, and discards the combinations whose
+	 * shapes are known to almost never succeed. Combinations with the same score
+	 * keep their relative order. With a probability equal to the exploration rate,
+	 * the combinations are returned in their original order instead.
+	 *
+	 * @param combinations The combinations to order, in their default preference
+	 *                     order.
+	 * @return The ordered and possibly truncated combinations. This list may be the
+	 *         same as the input list.
+	 * @throws IllegalArgumentException If {@code combinations} is {@code null}.
+	 */
+	List<PredicateObjectCombination> order(@NonNull final List<PredicateObjectCombination> combinations) {
+		if (combinations.isEmpty() || ThreadLocalRandom.current().nextDouble() < explorationRate) {
+			return combinations;
+		}
+
+		// Compute the prior that will be used for shapes we know nothing about.
+		// Unseen shapes are optimistically assumed to cost the average
+		long totalProbes = 0;
+		long totalHits = 0;
+		long totalProbeNanos = 0;
+		for (final ShapeStatistics statistics : shapeStatistics.values()) {
+			totalProbes += statistics.probes.sum();
+			totalHits += statistics.hits.sum();
+			totalProbeNanos += statistics.probeNanos.sum();
+		}
+
+		final double priorSuccessProbability = (totalHits + 1.0) / (totalProbes + 2.0);
+		final double averageProbeNanos = totalProbes > 0 ? Math.max((double) totalProbeNanos / totalProbes, 1) : 1;
+
+		// Score every distinct shape once
+		final Map<CombinationShape, Double> shapeScores = new HashMap<>();
+		final List<PredicateObjectCombination> orderedCombinations = new ArrayList<>(combinations.size());
+
+		for (final PredicateObjectCombination combination : combinations) {
+			final CombinationShape shape = combination.getShape();
+			Double score = shapeScores.get(shape);
+
+			if (score == null) {
+				final ShapeStatistics statistics = shapeStatistics.get(shape.toString());
+				final long probes = statistics != null ? statistics.probes.sum() : 0;
+
+				if (probes > 0) {
+					// Laplace smoothing, with the prior as pseudo-observations
+					final double successProbability =
+						(statistics.hits.sum() + priorSuccessProbability) / (probes + 1.0);
+					final double probeNanos = Math.max((double) statistics.probeNanos.sum() / probes, 1);
+
+					score = probes >= minimumSamples && successProbability < minimumSuccessProbability ?
+						Double.NEGATIVE_INFINITY : successProbability / probeNanos;
+				} else {
+					score = priorSuccessProbability / averageProbeNanos;
+				}
+
+				shapeScores.put(shape, score);
+			}
+
+			// Truncate combinations that are not worth a probe
+			if (score != Double.NEGATIVE_INFINITY) {
+				orderedCombinations.add(combination);
+			}
+		}
+
+		// List.sort is stable
+		orderedCombinations.sort(
+			Comparator.comparingDouble(
+				(final PredicateObjectCombination combination) -> shapeScores.get(combination.getShape())
+			).reversed()
+		);
+
+		return orderedCombinations;
+	}
+
+	/**
+	 * Adds the statistics stored in the specified file to the statistics held by
+	 * this object. If the file does not exist, this method does nothing.
+	 *
+	 * @param file The file to read the statistics from.
+	 * @throws IOException              If an I/O error occurs while reading the
+	 *                                  file.
+	 * @throws IllegalArgumentException If {@code file} is {@code null}, or its
+	 *                                  contents are malformed.
+	 */
+	public void load(@NonNull final Path file) throws IOException {
+		if (!Files.exists(file)) {
+			return;
+		}
+
+		final Properties properties = new Properties();
+		try (final InputStream inputStream = Files.newInputStream(file)) {
+			properties.load(inputStream);
+		}
+
+		for (final String key : properties.stringPropertyNames()) {
+			if (key.endsWith(PROBES_KEY_SUFFIX)) {
+				final String shapeKey = key.substring(0, key.length() - PROBES_KEY_SUFFIX.length());
+				final ShapeStatistics statistics = shapeStatistics.computeIfAbsent(
+					shapeKey, (final String k) -> new ShapeStatistics()
+				);
+
+				statistics.probes.add(Long.parseLong(properties.getProperty(key)));
+				statistics.hits.add(Long.parseLong(properties.getProperty(shapeKey + HITS_KEY_SUFFIX, "0")));
+				statistics.probeNanos.add(Long.parseLong(properties.getProperty(shapeKey + PROBE_NANOS_KEY_SUFFIX, "0")));
+			}
+		}
+	}
+
+	/**
+	 * Stores a snapshot of the statistics held by this object in the specified
+	 * file, replacing it atomically if the file system supports that.
+	 *
+	 * @param file The file to write the statistics to.
+	 * @throws IOException              If an I/O error occurs while writing the
+	 *                                  file.
+	 * @throws IllegalArgumentException If {@code file} is {@code null}.
+	 */
+	public void save(@NonNull final Path file) throws IOException {
+		final Properties properties = new Properties();
+
+		for (final Map.Entry<String, ShapeStatistics> entry : shapeStatistics.entrySet()) {
+			final String shapeKey = entry.getKey();
+			final ShapeStatistics statistics = entry.getValue();
+
+			properties.setProperty(shapeKey + PROBES_KEY_SUFFIX, Long.toString(statistics.probes.sum()));
+			properties.setProperty(shapeKey + HITS_KEY_SUFFIX, Long.toString(statistics.hits.sum()));
+			properties.setProperty(shapeKey + PROBE_NANOS_KEY_SUFFIX, Long.toString(statistics.probeNanos.sum()));
+		}
+
+		final Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (final OutputStream outputStream = Files.newOutputStream(temporaryFile)) {
+			properties.store(outputStream, "VacBot knowledge base probe statistics");
+		}
+
+		try {
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException exc) {
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Holds the probe counters of a combination shape.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class ShapeStatistics {
+		private final LongAdder probes = new LongAdder();
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder probeNanos = new LongAdder();
+	}
+}
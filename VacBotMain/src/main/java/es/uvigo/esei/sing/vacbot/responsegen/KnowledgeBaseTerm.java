@@ -0,0 +1,57 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.responsegen;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Represents a way to express a predicate or object of a RDF triple stored in
+ * the knowledge base, as derived from the words of an user utterance.
+ *
+ * @author Alejandro González García
+ * @implNote This class is immutable and, therefore, thread-safe.
+ */
+@ToString
+@EqualsAndHashCode
+final class KnowledgeBaseTerm {
+	/**
+	 * The text of the term, which will be used to build the URI of the resource.
+	 */
+	@Getter @NonNull
+	private final String text;
+
+	/**
+	 * Whether this term was built from the lemmas of the words, instead of their
+	 * original text.
+	 */
+	@Getter
+	private final boolean lemmatized;
+
+	/**
+	 * The number of words that compose this term.
+	 */
+	@Getter
+	private final int wordCount;
+
+	/**
+	 * Creates a new knowledge base term.
+	 *
+	 * @param text       The text of the term.
+	 * @param lemmatized Whether the text was built from the lemmas of the words.
+	 * @param wordCount  The number of words that compose the term.
+	 * @throws IllegalArgumentException If {@code text} is {@code null}, or
+	 *                                  {@code wordCount} is less than one.
+	 */
+	KnowledgeBaseTerm(@NonNull final String text, final boolean lemmatized, final int wordCount) {
+		if (wordCount < 1) {
+			throw new IllegalArgumentException("A term must have at least one word");
+		}
+
+		this.text = text;
+		this.lemmatized = lemmatized;
+		this.wordCount = wordCount;
+	}
+}
@@ -0,0 +1,39 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.responsegen;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * A combination of a predicate and object term, which is used to probe the
+ * knowledge base for a matching RDF triple.
+ *
+ * @author Alejandro González García
+ * @implNote This class is immutable and, therefore, thread-safe.
+ */
+@ToString
+@EqualsAndHashCode
+final class PredicateObjectCombination {
+	@Getter
+	private final KnowledgeBaseTerm predicate;
+	@Getter
+	private final KnowledgeBaseTerm object;
+	@Getter
+	private final CombinationShape shape;
+
+	/**
+	 * Creates a new predicate-object combination.
+	 *
+	 * @param predicate The predicate term.
+	 * @param object    The object term.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	PredicateObjectCombination(@NonNull final KnowledgeBaseTerm predicate, @NonNull final KnowledgeBaseTerm object) {
+		this.predicate = predicate;
+		this.object = object;
+		this.shape = CombinationShape.of(predicate, object);
+	}
+}
@@ -0,0 +1,291 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.responsegen;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import lombok.NonNull;
+
+/**
+ * Lazily generates the predicate-object combinations that will be used to probe
+ * the knowledge base, in preference order. Every predicate term is combined
+ * with every object term, trying all the object terms for a predicate before
+ * moving on to the next predicate, like an ordered cartesian product would do.
+ * <p>
+ * Object terms are derived from the words governed by the direct object of a
+ * sentence, and are generated on demand the first time they are needed, so no
+ * work is done for combinations that are never probed. At most a configurable
+ * number of combinations is generated.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is not thread-safe.
+ */
+final class PredicateObjectCombinationGenerator implements Iterator<PredicateObjectCombination> {
+	private final List<KnowledgeBaseTerm> predicateTerms;
+	private final Iterator<KnowledgeBaseTerm> objectTermsIterator;
+	/**
+	 * The object terms that were generated so far, so they can be reused for
+	 * the next predicates.
+	 */
+	private final List<KnowledgeBaseTerm> objectTerms = new ArrayList<>();
+	private int predicateTermIndex = 0;
+	private int objectTermIndex = 0;
+	private int remainingCombinations;
+
+	/**
+	 * Creates a new predicate-object combination generator.
+	 *
+	 * @param predicateTerms  The predicate terms, in preference order.
+	 * @param dependencyGraph The dependency graph of the sentence where the
+	 *                        object belongs to.
+	 * @param object          The object word, whose dependents will be used to
+	 *                        generate the object terms.
+	 * @param maxCombinations The maximum number of combinations to generate.
+	 * @throws IllegalArgumentException If some parameter is {@code null}, or
+	 *                                  {@code maxCombinations} is negative.
+	 */
+	PredicateObjectCombinationGenerator(
+		@NonNull final List<KnowledgeBaseTerm> predicateTerms, @NonNull final SemanticGraph dependencyGraph,
+		@NonNull final IndexedWord object, final int maxCombinations
+	) {
+		if (maxCombinations < 0) {
+			throw new IllegalArgumentException("The maximum number of combinations can't be negative");
+		}
+
+		this.predicateTerms = predicateTerms;
+		this.objectTermsIterator = new DependentTermsIterator(dependencyGraph, object);
+		this.remainingCombinations = maxCombinations;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (remainingCombinations < 1 || predicateTermIndex >= predicateTerms.size()) {
+			return false;
+		}
+
+		if (objectTermIndex < objectTerms.size()) {
+			return true;
+		}
+
+		// The object terms iterator will only have elements while
+		// we are combining them with the first predicate
+		if (objectTermsIterator.hasNext()) {
+			objectTerms.add(objectTermsIterator.next());
+			return true;
+		}
+
+		// We tried every object for this predicate, so go for the next one
+		++predicateTermIndex;
+		objectTermIndex = 0;
+
+		return predicateTermIndex < predicateTerms.size() && !objectTerms.isEmpty();
+	}
+
+	@Override
+	public PredicateObjectCombination next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		--remainingCombinations;
+
+		return new PredicateObjectCombination(
+			predicateTerms.get(predicateTermIndex), objectTerms.get(objectTermIndex++)
+		);
+	}
+
+	/**
+	 * Lazily generates combinations of a root word with other words it governs, in
+	 * manners that elicits a more or less precise meaning about the root word, and
+	 * are suitable for querying the knowledge base.
+	 * <p>
+	 * Each word in the dependency subtree of the root word is expressed as the
+	 * path from it to the root word, both with the original text and the lemmas of
+	 * the words. Deeper and later words in the sentence come first, as they
+	 * usually make up more specific terms. The path from each word to the root is
+	 * computed by walking a parent map which is built once, with a breadth-first
+	 * search.
+	 * </p>
+	 * <p>
+	 * The algorithm implemented here is relatively simple and may not capture the
+	 * most appropriate candidates for some complex grammatical graphs, which are
+	 * hopefully unlikely to occur in practice.
+	 * </p>
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class DependentTermsIterator implements Iterator<KnowledgeBaseTerm> {
+		/**
+		 * Maps each word of the subtree to the word that governs it in the
+		 * shortest path from the root word. The root word maps to {@code null}.
+		 */
+		private final Map<IndexedWord, IndexedWord> parents = new HashMap<>();
+		/**
+		 * Maps each word of the subtree to the words it governs, in the order they
+		 * appear in the sentence.
+		 */
+		private final Map<IndexedWord, List<IndexedWord>> children = new HashMap<>();
+
+		private final Deque<IndexedWord> pendingWords = new ArrayDeque<>();
+		private final Deque<ListIterator<IndexedWord>> pendingChildren = new ArrayDeque<>();
+		private final StringBuilder stringBuilder = new StringBuilder();
+		private KnowledgeBaseTerm nextTerm = null;
+		private KnowledgeBaseTerm nextLemmaTerm = null;
+
+		/**
+		 * Creates a new lazy generator of combinations of the specified root word
+		 * with its dependents.
+		 *
+		 * @param dependencyGraph The dependency graph of the sentence where the
+		 *                        root word belongs to.
+		 * @param root            The root word.
+		 * @throws IllegalArgumentException If some parameter is {@code null}.
+		 */
+		private DependentTermsIterator(@NonNull final SemanticGraph dependencyGraph, @NonNull final IndexedWord root) {
+			final Deque<IndexedWord> wordQueue = new ArrayDeque<>();
+
+			parents.put(root, null);
+			wordQueue.add(root);
+
+			while (!wordQueue.isEmpty()) {
+				final IndexedWord word = wordQueue.remove();
+				final List<IndexedWord> wordChildren = new ArrayList<>();
+
+				for (final SemanticGraphEdge dependentEdge : dependencyGraph.getOutEdgesSorted(word)) {
+					final IndexedWord dependent = dependentEdge.getTarget();
+
+					// Words already reached by a shorter path are not revisited
+					if (!parents.containsKey(dependent)) {
+						parents.put(dependent, word);
+						wordChildren.add(dependent);
+						wordQueue.add(dependent);
+					}
+				}
+
+				children.put(word, wordChildren);
+			}
+
+			pushWord(root);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (nextTerm == null) {
+				if (nextLemmaTerm != null) {
+					nextTerm = nextLemmaTerm;
+					nextLemmaTerm = null;
+				} else {
+					final IndexedWord word = nextWord();
+					if (word != null) {
+						computeTerms(word);
+					}
+				}
+			}
+
+			return nextTerm != null;
+		}
+
+		@Override
+		public KnowledgeBaseTerm next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			final KnowledgeBaseTerm term = nextTerm;
+			nextTerm = null;
+
+			return term;
+		}
+
+		/**
+		 * Returns the next word of the subtree to generate terms for. The words
+		 * are visited in post-order, with the dependents of each word visited in
+		 * reverse sentence order.
+		 *
+		 * @return The next word, or {@code null} if every word was visited.
+		 */
+		private IndexedWord nextWord() {
+			while (!pendingWords.isEmpty()) {
+				final ListIterator<IndexedWord> wordChildrenIter = pendingChildren.peek();
+
+				if (wordChildrenIter.hasPrevious()) {
+					pushWord(wordChildrenIter.previous());
+				} else {
+					pendingChildren.pop();
+					return pendingWords.pop();
+				}
+			}
+
+			return null;
+		}
+
+		/**
+		 * Pushes a word to the stack of words whose dependents are being visited.
+		 *
+		 * @param word The word to push.
+		 */
+		private void pushWord(final IndexedWord word) {
+			final List<IndexedWord> wordChildren = children.getOrDefault(word, Collections.emptyList());
+
+			pendingWords.push(word);
+			pendingChildren.push(wordChildren.listIterator(wordChildren.size()));
+		}
+
+		/**
+		 * Computes the terms that express the path from the specified word to the
+		 * root word, with the original text first and the lemmas later, and
+		 * stores them as the next terms to return.
+		 *
+		 * @param word The word whose path to the root will be expressed.
+		 */
+		private void computeTerms(final IndexedWord word) {
+			int wordCount = 0;
+
+			// Discard string builder contents, but preserve its reserved buffer
+			stringBuilder.setLength(0);
+
+			for (IndexedWord pathWord = word; pathWord != null; pathWord = parents.get(pathWord)) {
+				// The path is just the concatenation of words
+				stringBuilder
+					.append(pathWord.originalText())
+					.append(" ");
+
+				++wordCount;
+			}
+
+			// Delete trailing space
+			stringBuilder.deleteCharAt(stringBuilder.length() - 1);
+			final String pathString = stringBuilder.toString();
+			nextTerm = new KnowledgeBaseTerm(pathString, false, wordCount);
+
+			stringBuilder.setLength(0);
+
+			for (IndexedWord pathWord = word; pathWord != null; pathWord = parents.get(pathWord)) {
+				stringBuilder
+					.append(pathWord.lemma())
+					.append(" ");
+			}
+
+			stringBuilder.deleteCharAt(stringBuilder.length() - 1);
+
+			// Do not return the lemma term if it is the same
+			final String lemmaPathString = stringBuilder.toString();
+			if (!pathString.equalsIgnoreCase(lemmaPathString)) {
+				nextLemmaTerm = new KnowledgeBaseTerm(lemmaPathString, true, wordCount);
+			}
+		}
+	}
+}
@@ -0,0 +1,124 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.responsegen;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts the response generation stages that were skipped, abandoned or timed
+ * out because of the time budget of messages. The statistics are registered in
+ * the platform MBean server until they are closed, so they can be monitored.
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+public final class ResponseDeadlineStatistics implements ResponseDeadlineStatisticsMXBean, AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResponseDeadlineStatistics.class);
+	private static final String OBJECT_NAME = "es.uvigo.esei.sing.vacbot:type=ResponseDeadlines";
+
+	private final LongAdder expiredResponseCount = new LongAdder();
+	private final LongAdder skippedParseCount = new LongAdder();
+	private final LongAdder timedOutParseCount = new LongAdder();
+	private final LongAdder abandonedKnowledgeBaseProbeCount = new LongAdder();
+	private final LongAdder skippedDocumentRetrievalCount = new LongAdder();
+	private ObjectName objectName = null;
+
+	/**
+	 * Creates new, empty response deadline statistics, and registers them in the
+	 * platform MBean server.
+	 */
+	public ResponseDeadlineStatistics() {
+		try {
+			final ObjectName statisticsObjectName = new ObjectName(OBJECT_NAME);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, statisticsObjectName);
+			objectName = statisticsObjectName;
+		} catch (final JMException exc) {
+			LOGGER.warn("Couldn't register the management bean of the response deadline statistics", exc);
+		}
+	}
+
+	@Override
+	public long getExpiredResponseCount() {
+		return expiredResponseCount.sum();
+	}
+
+	@Override
+	public long getSkippedParseCount() {
+		return skippedParseCount.sum();
+	}
+
+	@Override
+	public long getTimedOutParseCount() {
+		return timedOutParseCount.sum();
+	}
+
+	@Override
+	public long getAbandonedKnowledgeBaseProbeCount() {
+		return abandonedKnowledgeBaseProbeCount.sum();
+	}
+
+	@Override
+	public long getSkippedDocumentRetrievalCount() {
+		return skippedDocumentRetrievalCount.sum();
+	}
+
+	/**
+	 * Records that a message was responded with a non-commital response because
+	 * its time budget was spent.
+	 */
+	void recordExpiredResponse() {
+		expiredResponseCount.increment();
+	}
+
+	/**
+	 * Records that a message was not parsed because its time budget was nearly
+	 * spent.
+	 */
+	void recordSkippedParse() {
+		skippedParseCount.increment();
+	}
+
+	/**
+	 * Records that the parser gave up on a sentence of a message because parsing
+	 * it took longer than the maximum parse time.
+	 */
+	void recordTimedOutParse() {
+		timedOutParseCount.increment();
+	}
+
+	/**
+	 * Records that the knowledge base probes for a message were abandoned
+	 * because its time budget was nearly spent.
+	 */
+	void recordAbandonedKnowledgeBaseProbes() {
+		abandonedKnowledgeBaseProbeCount.increment();
+	}
+
+	/**
+	 * Records that the document retrieval for a message was skipped because its
+	 * time budget was spent.
+	 */
+	void recordSkippedDocumentRetrieval() {
+		skippedDocumentRetrievalCount.increment();
+	}
+
+	@Override
+	public synchronized void close() {
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (final JMException exc) {
+				LOGGER.debug("Couldn't unregister the management bean of the response deadline statistics", exc);
+			}
+
+			objectName = null;
+		}
+	}
+}
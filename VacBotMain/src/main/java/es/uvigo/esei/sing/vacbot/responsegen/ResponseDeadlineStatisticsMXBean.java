@@ -0,0 +1,53 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.responsegen;
+
+/**
+ * The management interface of the response deadline statistics, which expose
+ * how often response generation degrades to cheaper strategies because the
+ * time budget of a message is nearly spent.
+ *
+ * @author Alejandro González García
+ */
+public interface ResponseDeadlineStatisticsMXBean {
+	/**
+	 * Returns the number of messages that were responded with a non-commital
+	 * response because their time budget was spent.
+	 *
+	 * @return The described number of messages.
+	 */
+	public long getExpiredResponseCount();
+
+	/**
+	 * Returns the number of messages that were not parsed because their time
+	 * budget was nearly spent, so the document index was used instead.
+	 *
+	 * @return The described number of messages.
+	 */
+	public long getSkippedParseCount();
+
+	/**
+	 * Returns the number of message sentences that the parser gave up on because
+	 * parsing them took longer than the maximum parse time, so they got a flat
+	 * fallback tree instead.
+	 *
+	 * @return The described number of sentences.
+	 */
+	public long getTimedOutParseCount();
+
+	/**
+	 * Returns the number of messages whose knowledge base probes were abandoned
+	 * because their time budget was nearly spent.
+	 *
+	 * @return The described number of messages.
+	 */
+	public long getAbandonedKnowledgeBaseProbeCount();
+
+	/**
+	 * Returns the number of messages whose document retrieval was skipped
+	 * because their time budget was spent.
+	 *
+	 * @return The described number of messages.
+	 */
+	public long getSkippedDocumentRetrievalCount();
+}
@@ -0,0 +1,78 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.responsegen;
+
+import es.uvigo.esei.sing.vacbot.settings.OverloadAction;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Holds the circumstances under which a response to a message is generated,
+ * which may change how much work is put into generating it.
+ *
+ * @author Alejandro González García
+ * @implNote This class is immutable and, therefore, thread-safe.
+ */
+@ToString
+@EqualsAndHashCode
+public final class ResponseGenerationContext {
+	/**
+	 * The context of messages that are responded normally.
+	 */
+	public static final ResponseGenerationContext DEFAULT = new ResponseGenerationContext(null);
+
+	/**
+	 * The action to take because the bot is overloaded. If {@code null}, the bot
+	 * is not overloaded, and the response is generated normally.
+	 */
+	@Getter
+	private final OverloadAction overloadAction;
+
+	/**
+	 * The value of {@link System#nanoTime()} when the time budget to respond the
+	 * message is spent. It is only meaningful if {@link #deadlineSet} is true.
+	 */
+	private final long deadline;
+	private final boolean deadlineSet;
+
+	/**
+	 * Creates a new response generation context, without a time budget.
+	 *
+	 * @param overloadAction The action to take because the bot is overloaded. If
+	 *                       {@code null}, the response will be generated
+	 *                       normally.
+	 */
+	public ResponseGenerationContext(final OverloadAction overloadAction) {
+		this.overloadAction = overloadAction;
+		this.deadline = 0;
+		this.deadlineSet = false;
+	}
+
+	/**
+	 * Creates a new response generation context, with a time budget.
+	 *
+	 * @param overloadAction The action to take because the bot is overloaded. If
+	 *                       {@code null}, the response will be generated
+	 *                       normally.
+	 * @param deadline       The value of {@link System#nanoTime()} when the time
+	 *                       budget to respond the message is spent.
+	 */
+	public ResponseGenerationContext(final OverloadAction overloadAction, final long deadline) {
+		this.overloadAction = overloadAction;
+		this.deadline = deadline;
+		this.deadlineSet = true;
+	}
+
+	/**
+	 * Returns the time left to respond the message before its time budget is
+	 * spent.
+	 *
+	 * @return The described time, in nanoseconds. It is negative if the budget
+	 *         was exceeded, and {@link Long#MAX_VALUE} if there is no time
+	 *         budget.
+	 */
+	public long getRemainingNanos() {
+		return deadlineSet ? deadline - System.nanoTime() : Long.MAX_VALUE;
+	}
+}
@@ -2,16 +2,12 @@
 
 package es.uvigo.esei.sing.vacbot.responsegen;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
@@ -19,7 +15,21 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.persistence.EntityManager;
@@ -39,15 +49,24 @@ import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ReadWrite;
 import org.apache.jena.query.ResultSet;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.OpVisitorBase;
+import org.apache.jena.sparql.algebra.OpWalker;
+import org.apache.jena.sparql.algebra.op.OpBGP;
+import org.apache.jena.sparql.engine.QueryEngineFactory;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
+import org.apache.jena.system.Txn;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.FuzzyQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.spell.LevenshteinDistance;
-
-import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import edu.stanford.nlp.ling.CoreAnnotations.PartOfSpeechAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations.SentencesAnnotation;
@@ -64,7 +83,6 @@ import edu.stanford.nlp.pipeline.ParserAnnotator;
 import edu.stanford.nlp.pipeline.TokenizerAnnotator;
 import edu.stanford.nlp.pipeline.WordsToSentencesAnnotator;
 import edu.stanford.nlp.semgraph.SemanticGraph;
-import edu.stanford.nlp.semgraph.SemanticGraphEdge;
 import edu.stanford.nlp.semgraph.SemanticGraphFactory;
 import edu.stanford.nlp.trees.GrammaticalRelation;
 import edu.stanford.nlp.trees.GrammaticalStructure;
@@ -77,8 +95,17 @@ import edu.stanford.nlp.util.CoreMap;
 import es.uvigo.esei.sing.vacbot.entity.Document;
 import es.uvigo.esei.sing.vacbot.entity.OriginalDocument;
 import es.uvigo.esei.sing.vacbot.entity.OriginalDocumentWithTitle;
+import es.uvigo.esei.sing.vacbot.settings.AdaptiveProbeOrderingSettings;
+import es.uvigo.esei.sing.vacbot.settings.DispatchMode;
+import es.uvigo.esei.sing.vacbot.settings.HedgedRetrievalSettings;
+import es.uvigo.esei.sing.vacbot.settings.KnowledgeBaseConnectionSettings;
+import es.uvigo.esei.sing.vacbot.settings.OverloadAction;
+import es.uvigo.esei.sing.vacbot.settings.ResponseBias;
+import es.uvigo.esei.sing.vacbot.settings.ResponseDeadlineSettings;
 import es.uvigo.esei.sing.vacbot.settings.VacBotSettings;
+import es.uvigo.esei.sing.vacbot.util.SingleFlight;
 import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import edu.stanford.nlp.ling.SentenceUtils;
@@ -91,6 +118,8 @@ import edu.stanford.nlp.ling.SentenceUtils;
  */
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public final class ResponseGenerator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResponseGenerator.class);
+
 	private static final String LUCENE_DOCUMENT_ID_FIELD = "id";
 	private static final Set<String> LUCENE_DOCUMENT_FIELDS_SET = Set.of(LUCENE_DOCUMENT_ID_FIELD);
 
@@ -154,6 +183,16 @@ public final class ResponseGenerator {
 		"Stay in touch!"
 	};
 
+	/**
+	 * The responses the bot will say when it is too busy to respond to a message.
+	 */
+	private static final String[] BUSY_RESPONSES = new String[] {
+		"Sorry, I'm chatting with a lot of people right now. Could you ask me again in a while?",
+		"Wow, lots of people are talking to me right now! Please try again later",
+		"I'm a bit overwhelmed at the moment 😅 Ask me again in a few minutes, please",
+		"Give me a moment, I'm swamped with messages right now."
+	};
+
 	/**
 	 * Informal greetings that the user may say to the bot.
 	 */
@@ -185,11 +224,35 @@ public final class ResponseGenerator {
 	 */
 	private static final TregexPattern DIRECT_QUESTION_PATTERN = TregexPattern.compile("@SBARQ");
 
+	/**
+	 * The label of the root of the flat trees that the parser returns for the
+	 * sentences it gives up on.
+	 */
+	private static final String PARSER_FALLBACK_TREE_ROOT_LABEL = "X";
+
 	/**
 	 * The pattern used to match wh-tags in direct questions.
 	 */
 	private static final Pattern WH_TAG_PATTERN = Pattern.compile("WP|WP\\$|WDT|WRB");
 
+	/**
+	 * A cheap approximation of the subject questions that the knowledge base can
+	 * answer, used to decide whether to try the knowledge base gazetteer.
+	 */
+	private static final Pattern SUBJECT_QUESTION_PATTERN = Pattern.compile(
+		"\\s*(Who|What|Which)\\b", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
+	);
+
+	/**
+	 * A cheap approximation of the direct questions that the parser finds with
+	 * {@link #DIRECT_QUESTION_PATTERN}, which captures the first sentence of an
+	 * utterance that starts with a wh-word, without parsing it.
+	 */
+	private static final Pattern LIKELY_DIRECT_QUESTION_PATTERN = Pattern.compile(
+		"(?:^|[.!?])\\s*((?:Who|Whom|Whose|What|Which|When|Where|Why|How)\\b[^.!?]*)",
+		Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
+	);
+
 	/**
 	 * Maps document types in a KB URI to their corresponding JPA document classes.
 	 */
@@ -198,10 +261,38 @@ public final class ResponseGenerator {
 		"titled docs", OriginalDocumentWithTitle.class
 	);
 
+	private static AnnotationPipeline tokenizationPipeline = null;
 	private static AnnotationPipeline tokenizationAndPosPipeline = null;
 	private static AnnotationPipeline sentenceSplitPipeline = null;
 	private static AnnotationPipeline parserPipeline = null;
 
+	/**
+	 * Limits how many threads may run natural language processing pipelines
+	 * concurrently, which are CPU-bound, or {@code null} if there is no limit.
+	 */
+	private static Semaphore naturalLanguageProcessingPermits = null;
+
+	private static URI basePropertyUri = null;
+	private static URI baseEntityUri = null;
+
+	/**
+	 * The query used to probe the knowledge base, with every parameter but the
+	 * predicate and object URIs already set. It must be copied before use, as it
+	 * is not thread-safe.
+	 */
+	private static ParameterizedSparqlString knowledgeBaseQueryTemplate = null;
+
+	/**
+	 * The gazetteer of knowledge base predicates and entities, or {@code null} if
+	 * the gazetteer fast path is disabled.
+	 */
+	private static KnowledgeBaseGazetteer knowledgeBaseGazetteer = null;
+
+	/**
+	 * The response candidates of the utterances that are being analyzed.
+	 */
+	private static final SingleFlight<UtteranceKey, ResponseCandidates> RESPONSE_CANDIDATES_FLIGHTS = new SingleFlight<>();
+
 	static {
 		if (NON_COMMITAL_RESPONSES.length < 1) {
 			throw new ExceptionInInitializerError("At least one non-commital response is needed");
@@ -225,9 +316,22 @@ public final class ResponseGenerator {
 	 * @throws IllegalArgumentException If {@code settings} is {@code null}.
 	 */
 	public static void initialize(@NonNull final VacBotSettings settings) {
+		// Loading the KB into memory takes a while, so do it while
+		// the NLP models are loaded
+		settings.getKnowledgeBaseSettings().startInMemoryLoad();
+
 		// Create and initialize the annotator properties
 		final Properties parserProperties = new Properties();
 		parserProperties.setProperty("parser.nthreads", "1");
+
+		// Give up on sentences that take too long to parse, if the user wants so
+		final ResponseDeadlineSettings responseDeadlineSettings = settings.getBehaviorSettings()
+			.getResponseDeadlineSettings();
+		if (responseDeadlineSettings != null) {
+			parserProperties.setProperty(
+				"parser.maxtime", Long.toString(responseDeadlineSettings.getMaximumParseTime())
+			);
+		}
 		parserProperties.setProperty(
 			"parser.model",
 			settings.getNaturalLanguageProcessingSettings().getParserModel()
@@ -240,7 +344,21 @@ public final class ResponseGenerator {
 			settings.getNaturalLanguageProcessingSettings().getDependencyParseModel()
 		);
 
+		// With virtual threads there may be many more concurrent messages than
+		// CPU cores, so limit how many of them can be doing heavy NLP work
+		naturalLanguageProcessingPermits = settings.getDispatchMode() == DispatchMode.VIRTUAL_THREADS ?
+			new Semaphore(settings.getWorkerThreads()) : null;
+
 		// Create the pipelines
+		tokenizationPipeline = new AnnotationPipeline();
+		tokenizationPipeline.addAnnotator(
+			new TokenizerAnnotator(
+				false,
+				settings.getNaturalLanguageProcessingSettings().getLanguage(),
+				settings.getNaturalLanguageProcessingSettings().getTokenizerOptions()
+			)
+		);
+
 		tokenizationAndPosPipeline = new AnnotationPipeline();
 		tokenizationAndPosPipeline.addAnnotator(
 			new TokenizerAnnotator(
@@ -289,6 +407,162 @@ public final class ResponseGenerator {
 		parserPipeline.addAnnotator(new MorphaAnnotator(false));
 		parserPipeline.addAnnotator(new ParserAnnotator("parser", parserProperties));
 		parserPipeline.addAnnotator(new DependencyParseAnnotator(dependencyParseProperties));
+
+		// Get some base URIs that we will use for querying the KB
+		final UriBuilder basePropertyUriBuilder = UriBuilder.fromUri(
+			settings.getKnowledgeBaseSettings()
+				.getBaseModelUri().resolve("property")
+		);
+
+		basePropertyUri = basePropertyUriBuilder.build();
+		baseEntityUri = settings.getKnowledgeBaseSettings().getBaseModelUri().resolve("entity");
+
+		// TODO: conform these 4 URI formats to the current version of TextProc,
+		// not the older one we are using here for compatibility with an
+		// already generated KB. These formats make Jena complain that we use
+		// bad IRIs (and he's right!), although that doesn't affect functionality
+
+		final String documentTypePropertyUri = basePropertyUriBuilder.fragment(
+			"document-type"
+		).build().toASCIIString();
+
+		final String documentIdPropertyUri = basePropertyUriBuilder.fragment(
+			"document-id"
+		).build().toASCIIString();
+
+		final String documentSentenceNumberUri = basePropertyUriBuilder.fragment(
+			"document-sentence-number"
+		).build().toASCIIString();
+
+		final String sentimentPropertyUri = basePropertyUriBuilder.fragment(
+			"sentiment-class"
+		).build().toASCIIString();
+
+		final String confidencePropertyUri = basePropertyUriBuilder.fragment(
+			"confidence"
+		).build().toASCIIString();
+
+		final String sentimentFilterExpression = settings.getBehaviorSettings()
+			.getResponseBias().toSparqlConditionExpression("sentiment");
+
+		// "While this class was in part designed to prevent SPARQL injection it is by no
+		// means foolproof because it works purely at the textual level. The current version
+		// of the code addresses some possible attack vectors that the developers have identified
+		// but we do not claim to be sufficiently devious to have thought of and prevented every
+		// possible attack vector."
+		// However, as we sanitize the URI inputs, things should be fine...
+		knowledgeBaseQueryTemplate = new ParameterizedSparqlString();
+
+		knowledgeBaseQueryTemplate.setCommandText(
+			// Most of these concatenations can be done at compile time
+			"PREFIX rdf:<http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
+			"SELECT ?type ?id ?sentence\n" +
+			"WHERE {\n" +
+			// Query the whole dataset, so that TDB2 evaluates the query with
+			// its own engine, which uses the query optimizer statistics
+			"        GRAPH ?knowledgeBaseGraphUri {\n" +
+			// The object is the most selective pattern, so it goes first. This
+			// order is kept when the optimizer has no statistics to do better
+			"                ?t rdf:object ?objectUri .\n" +
+			"                ?t rdf:predicate ?predicateUri .\n" +
+			"                ?t ?documentTypePropertyUri ?type .\n" +
+			"                ?t ?documentIdPropertyUri ?id .\n" +
+			"                ?t ?documentSentenceNumberUri ?sentence .\n" +
+			"                ?t ?sentimentPropertyUri ?sentiment .\n" +
+			"                ?t ?confidencePropertyUri ?confidence .\n" +
+			"                FILTER(" + sentimentFilterExpression + ")\n" +
+			"        }\n" +
+			"}\n" +
+			"ORDER BY DESC(?confidence)\n" +
+			"LIMIT 1"
+		);
+
+		knowledgeBaseQueryTemplate.setIri(
+			"knowledgeBaseGraphUri", settings.getKnowledgeBaseSettings().getBaseModelUri().toASCIIString()
+		);
+		knowledgeBaseQueryTemplate.setIri("documentTypePropertyUri", documentTypePropertyUri);
+		knowledgeBaseQueryTemplate.setIri("documentIdPropertyUri", documentIdPropertyUri);
+		knowledgeBaseQueryTemplate.setIri("documentSentenceNumberUri", documentSentenceNumberUri);
+		knowledgeBaseQueryTemplate.setIri("sentimentPropertyUri", sentimentPropertyUri);
+		knowledgeBaseQueryTemplate.setIri("confidencePropertyUri", confidencePropertyUri);
+
+		// The knowledge base might have been loaded in the background
+		// while we loaded the NLP models. Wait for it to be ready
+		final KnowledgeBaseConnectionSettings.Connection knowledgeBaseConnection =
+			settings.getKnowledgeBaseSettings().connect();
+
+		logKnowledgeBaseQueryPlan(knowledgeBaseConnection);
+
+		if (settings.getBehaviorSettings().isGazetteerFastPathEnabled()) {
+			final long gazetteerBuildStart = System.nanoTime();
+
+			knowledgeBaseGazetteer = Txn.calculateRead(
+				knowledgeBaseConnection.getDataset(),
+				() -> new KnowledgeBaseGazetteer(knowledgeBaseConnection.getModel(), basePropertyUri, baseEntityUri)
+			);
+
+			LOGGER.info(
+				"Knowledge base gazetteer built. Surface forms: {}, build time: {} ms",
+				knowledgeBaseGazetteer.getSurfaceFormCount(), (System.nanoTime() - gazetteerBuildStart) / 1_000_000
+			);
+		}
+	}
+
+	/**
+	 * Logs the query engine that ARQ chooses to run the knowledge base query
+	 * against the knowledge base dataset, as the probes do, and the order in which
+	 * that engine will evaluate the triple patterns of the query, so that
+	 * inefficient plans can be easily spotted.
+	 *
+	 * @param connection The connection to the knowledge base.
+	 */
+	private static void logKnowledgeBaseQueryPlan(final KnowledgeBaseConnectionSettings.Connection connection) {
+		if (LOGGER.isInfoEnabled()) {
+			final ParameterizedSparqlString sampleQueryString = knowledgeBaseQueryTemplate.copy();
+			sampleQueryString.setIri(
+				"predicateUri", UriBuilder.fromUri(basePropertyUri).fragment("predicate").build().toASCIIString()
+			);
+			sampleQueryString.setIri(
+				"objectUri", UriBuilder.fromUri(baseEntityUri).fragment("object").build().toASCIIString()
+			);
+
+			final org.apache.jena.query.Query sampleQuery = sampleQueryString.asQuery();
+			final QueryEngineFactory queryEngineFactory = connection.getQueryEngineFactory(sampleQuery);
+			final ReorderTransformation reorderTransformation = connection.getReorderTransformation(sampleQuery);
+
+			OpWalker.walk(Algebra.compile(sampleQuery), new OpVisitorBase() {
+				@Override
+				public void visit(final OpBGP opBgp) {
+					LOGGER.info(
+						"Knowledge base query engine: {}. Triple pattern evaluation order:\n{}",
+						queryEngineFactory.getClass().getName(), reorderTransformation.reorder(opBgp.getPattern())
+					);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Runs the specified annotation pipeline on an annotation, waiting for a
+	 * natural language processing permit to be available first, if needed.
+	 *
+	 * @param pipeline   The pipeline to run.
+	 * @param annotation The annotation to run the pipeline on.
+	 */
+	private static void annotate(final AnnotationPipeline pipeline, final Annotation annotation) {
+		final Semaphore permits = naturalLanguageProcessingPermits;
+
+		if (permits != null) {
+			permits.acquireUninterruptibly();
+		}
+
+		try {
+			pipeline.annotate(annotation);
+		} finally {
+			if (permits != null) {
+				permits.release();
+			}
+		}
 	}
 
 	/**
@@ -314,27 +588,149 @@ public final class ResponseGenerator {
 	public static String generateResponseTo(
 		final String text, final VacBotSettings settings
 	) throws ResponseGenerationException {
-		String response;
+		return generateResponseTo(text, settings, ResponseGenerationContext.DEFAULT);
+	}
+
+	/**
+	 * Generates a response to the specified utterance, under the specified
+	 * circumstances. The execution of this method may be costly in terms of time
+	 * and/or memory, unless the context states that the bot is overloaded.
+	 * <p>
+	 * Before generating responses, the {@link #initialize(VacBotSettings)} method
+	 * need to be called.
+	 * </p>
+	 * <p>
+	 * This method is safe to be executed by concurrent threads. It is a blocking
+	 * wrapper around
+	 * {@link #generateResponseAsync(String, VacBotSettings, ResponseGenerationContext, Executor)}
+	 * that runs the natural language processing steps in the calling thread.
+	 * </p>
+	 *
+	 * @param text     The utterance text to respond to. It need not be
+	 *                 {@code null}.
+	 * @param settings The settings of the bot, which may affect response
+	 *                 generation. It need not be {@code null}.
+	 * @param context  The context to generate the response with. It need not be
+	 *                 {@code null}.
+	 * @return The response text. If no response is generated, {@code null} will be
+	 *         returned.
+	 * @throws ResponseGenerationException If the response couldn't be generated
+	 *                                     because an error occurred.
+	 */
+	public static String generateResponseTo(
+		final String text, final VacBotSettings settings, final ResponseGenerationContext context
+	) throws ResponseGenerationException {
+		// Run the tasks submitted to this executor in this thread,
+		// until the response is generated
+		final BlockingQueue<Runnable> callerThreadTasks = new LinkedBlockingQueue<>();
+		final CompletableFuture<String> responseFuture = generateResponseAsync(
+			text, settings, context, callerThreadTasks::add
+		).toCompletableFuture();
+
+		responseFuture.whenComplete((final String response, final Throwable exc) -> callerThreadTasks.add(() -> {}));
 
+		try {
+			while (!responseFuture.isDone()) {
+				callerThreadTasks.take().run();
+			}
+
+			return responseFuture.join();
+		} catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new ResponseGenerationException(exc);
+		} catch (final CompletionException exc) {
+			throw asResponseGenerationException(exc.getCause());
+		}
+	}
+
+	/**
+	 * Asynchronously generates a response to the specified utterance, under the
+	 * specified circumstances. Each step of the generation runs as a separate
+	 * task: natural language processing steps run in the specified executor, and
+	 * steps that access the document database, document index or knowledge base
+	 * run in the storage stage, so independent steps can overlap and no thread
+	 * is blocked waiting for another step.
+	 * <p>
+	 * Before generating responses, the {@link #initialize(VacBotSettings)} method
+	 * need to be called.
+	 * </p>
+	 * <p>
+	 * This method is safe to be executed by concurrent threads, and returns
+	 * without doing any significant work. Busy responses are generated in the
+	 * calling thread, without using the executor, so they can be sent even if
+	 * it is saturated.
+	 * </p>
+	 *
+	 * @param text                              The utterance text to respond to.
+	 *                                          It need not be {@code null}.
+	 * @param settings                          The settings of the bot, which
+	 *                                          may affect response generation. It
+	 *                                          need not be {@code null}.
+	 * @param context                           The context to generate the
+	 *                                          response with. It need not be
+	 *                                          {@code null}.
+	 * @param naturalLanguageProcessingExecutor The executor that will run the
+	 *                                          natural language processing
+	 *                                          steps. It need not be
+	 *                                          {@code null}.
+	 * @return A completion stage that completes with the response text, or
+	 *         {@code null} if no response is generated. If the response couldn't
+	 *         be generated, it completes exceptionally with a
+	 *         {@link ResponseGenerationException}.
+	 */
+	public static CompletionStage<String> generateResponseAsync(
+		final String text, final VacBotSettings settings, final ResponseGenerationContext context,
+		final Executor naturalLanguageProcessingExecutor
+	) {
 		if (text == null) {
-			throw new ResponseGenerationException("The utterance text can't be null");
+			return CompletableFuture.failedFuture(
+				new ResponseGenerationException("The utterance text can't be null")
+			);
 		}
 
 		if (settings == null) {
-			throw new ResponseGenerationException("The bot settings can't be null");
+			return CompletableFuture.failedFuture(
+				new ResponseGenerationException("The bot settings can't be null")
+			);
+		}
+
+		if (context == null) {
+			return CompletableFuture.failedFuture(
+				new ResponseGenerationException("The response generation context can't be null")
+			);
+		}
+
+		if (naturalLanguageProcessingExecutor == null) {
+			return CompletableFuture.failedFuture(
+				new ResponseGenerationException("The natural language processing executor can't be null")
+			);
 		}
 
 		if (tokenizationAndPosPipeline == null) {
-			throw new ResponseGenerationException("The response generator was not initialized properly");
+			return CompletableFuture.failedFuture(
+				new ResponseGenerationException("The response generator was not initialized properly")
+			);
 		}
 
-		if (hasResponseTo(text)) {
-			response = analyzeUtteranceAndGenerateResponse(text, settings);
-		} else {
-			response = null;
+		if (text.isBlank()) {
+			return CompletableFuture.completedFuture(null);
 		}
 
-		return response;
+		// Too busy to do anything else, not even handing the work to the executor
+		if (context.getOverloadAction() == OverloadAction.BUSY_RESPONSE) {
+			return CompletableFuture.completedFuture(generateBusyResponse());
+		}
+
+		return callAsync(
+			() -> analyzeUtteranceAndGenerateResponse(text, settings, context, naturalLanguageProcessingExecutor),
+			naturalLanguageProcessingExecutor
+		).thenCompose(Function.identity()).handle((final String response, final Throwable exc) -> {
+			if (exc != null) {
+				throw new CompletionException(asResponseGenerationException(exc));
+			}
+
+			return response;
+		});
 	}
 
 	/**
@@ -354,108 +750,337 @@ public final class ResponseGenerator {
 	/**
 	 * Executes the actual response generation logic, analyzing the user utterance
 	 * text and deciding the most appropriate way to respond to it.
+	 * <p>
+	 * Cheap canned responses are generated right away. Otherwise, concurrent
+	 * requests to respond the same utterance share its analysis and candidate
+	 * retrieval, which is the costly part, and then pick their own response among
+	 * the candidates.
+	 * </p>
 	 *
-	 * @param text     The utterance text to generate a response to.
-	 * @param settings The settings of the bot.
-	 * @return The generated response text.
-	 * @throws ResponseGenerationException If an error occurs while generating the
-	 *                                     response, or the parameters are
-	 *                                     {@code null}.
+	 * @param text                              The utterance text to generate a
+	 *                                          response to.
+	 * @param settings                          The settings of the bot.
+	 * @param context                           The context to generate the
+	 *                                          response with.
+	 * @param naturalLanguageProcessingExecutor The executor that will run the
+	 *                                          next natural language processing
+	 *                                          steps.
+	 * @return A completion stage that completes with the generated response text.
 	 */
-	private static String analyzeUtteranceAndGenerateResponse(
-		final String text, final VacBotSettings settings
-	) throws ResponseGenerationException {
-		final String response;
+	private static CompletionStage<String> analyzeUtteranceAndGenerateResponse(
+		final String text, final VacBotSettings settings, final ResponseGenerationContext context,
+		final Executor naturalLanguageProcessingExecutor
+	) {
+		final CompletionStage<String> response;
+
+		if (GREETING_PATTERN.matcher(text).lookingAt() && ONE_OR_MORE_SPACES.split(text).length < 8) {
+			// Greetings canned responses
+			response = CompletableFuture.completedFuture(generateGreetingResponse());
+		} else if (GOODBYE_PATTERN.matcher(text).lookingAt() && ONE_OR_MORE_SPACES.split(text).length < 8) {
+			// Goodbyes canned responses
+			response = CompletableFuture.completedFuture(generateGoodbyeResponse());
+		} else if (context.getRemainingNanos() <= 0) {
+			// Too late to do anything else
+			recordDeadlineEvent(settings, ResponseDeadlineStatistics::recordExpiredResponse);
+			response = CompletableFuture.completedFuture(generateNonCommitalResponse());
+		} else {
+			// Viral utterances are received from many chats at once, so do not
+			// analyze each of them independently. The analysis is degraded when
+			// the time budget is nearly spent, so only share it with messages
+			// in the same situation
+			response = RESPONSE_CANDIDATES_FLIGHTS.execute(
+				new UtteranceKey(
+					text, settings.getBehaviorSettings().getResponseBias(), context.getOverloadAction(),
+					isTimeBudgetNearlySpent(context, settings)
+				),
+				() -> findResponseCandidates(text, settings, context, naturalLanguageProcessingExecutor)
+			).thenCompose((final ResponseCandidates candidates) ->
+				pickResponse(candidates, settings, context, naturalLanguageProcessingExecutor)
+			);
+		}
 
-		if (text == null || settings == null) {
-			throw new ResponseGenerationException("The text or settings can't be null");
+		return response;
+	}
+
+	/**
+	 * Analyzes the user utterance text, and finds the candidate responses for it
+	 * using the most appropriate strategy.
+	 *
+	 * @param text                              The utterance text to find
+	 *                                          candidate responses for.
+	 * @param settings                          The settings of the bot.
+	 * @param context                           The context to generate the
+	 *                                          response with.
+	 * @param naturalLanguageProcessingExecutor The executor that will run the
+	 *                                          next natural language processing
+	 *                                          steps.
+	 * @return A completion stage that completes with the response candidates.
+	 */
+	private static CompletionStage<ResponseCandidates> findResponseCandidates(
+		final String text, final VacBotSettings settings, final ResponseGenerationContext context,
+		final Executor naturalLanguageProcessingExecutor
+	) {
+		final CompletionStage<ResponseCandidates> candidates;
+
+		if (context.getOverloadAction() == OverloadAction.DOCUMENT_INDEX_ONLY) {
+			// Skip parsing, which is the most costly step
+			candidates = generateResponseUsingIndex(text, settings, context);
+		} else if (knowledgeBaseGazetteer != null && SUBJECT_QUESTION_PATTERN.matcher(text).lookingAt()) {
+			// Try to answer subject questions with the knowledge base gazetteer
+			// first, as that doesn't need to parse the text
+			candidates = generateResponseUsingGazetteer(
+				text, settings, context, naturalLanguageProcessingExecutor
+			).thenCompose(
+				(final String gazetteerAnswer) -> gazetteerAnswer != null ?
+					CompletableFuture.completedFuture(new ResponseCandidates(gazetteerAnswer)) :
+					callAsync(
+						() -> parseAndGenerateResponse(text, settings, context, naturalLanguageProcessingExecutor),
+						naturalLanguageProcessingExecutor
+					).thenCompose(Function.identity())
+			);
+		} else {
+			candidates = parseAndGenerateResponse(text, settings, context, naturalLanguageProcessingExecutor);
 		}
 
-		try {
-			if (GREETING_PATTERN.matcher(text).lookingAt() && ONE_OR_MORE_SPACES.split(text).length < 8) {
-				// Greetings canned responses
-				response = generateGreetingResponse();
-			} else if (GOODBYE_PATTERN.matcher(text).lookingAt() && ONE_OR_MORE_SPACES.split(text).length < 8) {
-				// Goodbyes canned responses
-				response = generateGoodbyeResponse();
-			} else {
-				final Annotation textAnnotation = new Annotation(text);
-				parserPipeline.annotate(textAnnotation);
-
-				final List<CoreMap> textSentences = textAnnotation.get(SentencesAnnotation.class);
-				if (!textSentences.isEmpty()) {
-					String questionAnswer = null;
-
-					// Search for questions in the user utterance
-					final Iterator<CoreMap> sentencesIter = textSentences.iterator();
-					while (questionAnswer == null && sentencesIter.hasNext()) {
-						final CoreMap sentence = sentencesIter.next();
-						final Tree constituencyTree = sentence.get(TreeAnnotation.class);
-
-						final TregexMatcher questionConstituencyTreeMatcher = DIRECT_QUESTION_PATTERN
-							.matcher(constituencyTree);
-
-						// Does the constituency tree matches a direct question tree pattern?
-						if (questionConstituencyTreeMatcher.find()) {
-							final Tree sbarqTree = questionConstituencyTreeMatcher.getMatch();
-							questionAnswer = generateResponseUsingKnowledgeBase(
-								sbarqTree,
-								SemanticGraphFactory.makeFromTree(
-									sbarqTree, SemanticGraphFactory.Mode.BASIC, GrammaticalStructure.Extras.NONE
-								),
-								settings
-							);
-						}
-					}
+		return candidates;
+	}
+
+	/**
+	 * Parses the user utterance text, and finds candidate responses to it with the
+	 * knowledge base if it contains a direct question, or the document index
+	 * otherwise.
+	 * <p>
+	 * If the time budget of the message is nearly spent, the utterance is not
+	 * parsed, and the candidates are found with the document index.
+	 * </p>
+	 * <p>
+	 * If hedged retrieval is enabled, the document index is searched while the
+	 * utterance is parsed and the knowledge base is queried, and the first
+	 * acceptable candidates are used, preferring the knowledge base. When the
+	 * utterance looks like a question, the document index is searched for the
+	 * question alone, as the fallback of the knowledge base does when hedged
+	 * retrieval is disabled. If the parser disagrees with that guess, the search
+	 * is restarted with the appropriate text once the utterance is parsed.
+	 * </p>
+	 *
+	 * @param text                              The utterance text to find
+	 *                                          candidate responses for.
+	 * @param settings                          The settings of the bot.
+	 * @param context                           The context to generate the
+	 *                                          response with.
+	 * @param naturalLanguageProcessingExecutor The executor that will run the
+	 *                                          next natural language processing
+	 *                                          steps.
+	 * @return A completion stage that completes with the response candidates.
+	 */
+	private static CompletionStage<ResponseCandidates> parseAndGenerateResponse(
+		final String text, final VacBotSettings settings, final ResponseGenerationContext context,
+		final Executor naturalLanguageProcessingExecutor
+	) {
+		if (isTimeBudgetNearlySpent(context, settings)) {
+			recordDeadlineEvent(settings, ResponseDeadlineStatistics::recordSkippedParse);
+			return generateResponseUsingIndex(text, settings, context);
+		}
 
-					// Update the response to send accordingly
-					if (questionAnswer == null) {
-						// Fallback to IR if a question was not detected
-						response = generateResponseUsingIndex(text, settings);
+		// Start searching the document index right away, so the results are
+		// ready when the knowledge base can't answer. The knowledge base only
+		// answers questions, so guess the question the parser will find
+		final HedgedRetrievalSettings hedgedRetrievalSettings = settings.getBehaviorSettings()
+			.getHedgedRetrievalSettings();
+		final AtomicBoolean hedgedRetrievalCancelled = new AtomicBoolean();
+		String hedgedIndexQueryText = null;
+		IndexQuery hedgedIndexQuery = null;
+		CompletableFuture<ResponseCandidates> hedgedIndexCandidates = null;
+		if (hedgedRetrievalSettings != null) {
+			final Matcher likelyQuestionMatcher = LIKELY_DIRECT_QUESTION_PATTERN.matcher(text);
+
+			hedgedIndexQueryText = likelyQuestionMatcher.find() ? likelyQuestionMatcher.group(1) : text;
+			hedgedIndexQuery = prepareIndexQuery(hedgedIndexQueryText, settings);
+			hedgedIndexCandidates = searchIndex(hedgedIndexQuery, settings, context, hedgedRetrievalCancelled);
+		}
+
+		final Annotation textAnnotation = new Annotation(text);
+		annotate(parserPipeline, textAnnotation);
+
+		final List<CoreMap> sentences = textAnnotation.get(SentencesAnnotation.class);
+
+		// The parser gives up on sentences that take longer than the maximum
+		// parse time, and returns a flat fallback tree for them
+		for (final CoreMap sentence : sentences) {
+			if (PARSER_FALLBACK_TREE_ROOT_LABEL.equals(sentence.get(TreeAnnotation.class).label().value())) {
+				recordDeadlineEvent(settings, ResponseDeadlineStatistics::recordTimedOutParse);
+			}
+		}
+
+		// Search for the first question in the user utterance
+		for (final CoreMap sentence : sentences) {
+			final Tree constituencyTree = sentence.get(TreeAnnotation.class);
+
+			final TregexMatcher questionConstituencyTreeMatcher = DIRECT_QUESTION_PATTERN
+				.matcher(constituencyTree);
+
+			// Does the constituency tree matches a direct question tree pattern?
+			if (questionConstituencyTreeMatcher.find()) {
+				final Tree sbarqTree = questionConstituencyTreeMatcher.getMatch();
+
+				if (hedgedIndexCandidates != null) {
+					final AtomicBoolean knowledgeBaseProbesCancelled = new AtomicBoolean();
+					final IndexQuery questionIndexQuery = prepareIndexQuery(getQuestionText(sbarqTree), settings);
+					final CompletableFuture<ResponseCandidates> questionIndexCandidates;
+					final AtomicBoolean questionRetrievalCancelled;
+
+					if (questionIndexQuery.tokens.equals(hedgedIndexQuery.tokens)) {
+						// The search started before parsing is for this question
+						questionIndexCandidates = hedgedIndexCandidates;
+						questionRetrievalCancelled = hedgedRetrievalCancelled;
 					} else {
-						response = questionAnswer;
+						// The guess was wrong. Hedging should not change the answers
+						// to the questions the knowledge base misses
+						hedgedRetrievalCancelled.set(true);
+
+						questionRetrievalCancelled = new AtomicBoolean();
+						questionIndexCandidates = searchIndex(
+							questionIndexQuery, settings, context, questionRetrievalCancelled
+						);
 					}
-				} else {
-					// This shouldn't happen, but fallback sensibly to IR
-					response = generateResponseUsingIndex(text, settings);
+
+					return hedgeResponses(
+						answerQuestionUsingKnowledgeBase(
+							SemanticGraphFactory.makeFromTree(
+								sbarqTree, SemanticGraphFactory.Mode.BASIC, GrammaticalStructure.Extras.NONE
+							),
+							settings, context, knowledgeBaseProbesCancelled, naturalLanguageProcessingExecutor
+						), knowledgeBaseProbesCancelled,
+						questionIndexCandidates, questionRetrievalCancelled,
+						hedgedRetrievalSettings.getMaximumKnowledgeBaseWait(), naturalLanguageProcessingExecutor
+					);
 				}
+
+				return generateResponseUsingKnowledgeBase(
+					sbarqTree,
+					SemanticGraphFactory.makeFromTree(
+						sbarqTree, SemanticGraphFactory.Mode.BASIC, GrammaticalStructure.Extras.NONE
+					),
+					settings, context, naturalLanguageProcessingExecutor
+				);
 			}
-		} catch (final Exception exc) {
-			throw new ResponseGenerationException(exc);
 		}
 
-		return response;
+		// Fallback to IR if a question was not detected. The search started
+		// before parsing is only useful if it was for the whole utterance
+		if (hedgedIndexCandidates == null) {
+			return generateResponseUsingIndex(text, settings, context);
+		}
+
+		final IndexQuery indexQuery = hedgedIndexQueryText.equals(text) ?
+			hedgedIndexQuery : prepareIndexQuery(text, settings);
+		if (indexQuery.tokens.equals(hedgedIndexQuery.tokens)) {
+			return hedgedIndexCandidates;
+		}
+
+		hedgedRetrievalCancelled.set(true);
+
+		return searchIndex(indexQuery, settings, context, null);
 	}
 
 	/**
-	 * Uses the corpus document index to generate a response to the provided user
-	 * utterance text. If that's not possible, a fallback non-commital canned
-	 * response is returned.
+	 * Combines a knowledge base answer and document index candidates that are
+	 * being retrieved concurrently. The knowledge base answer is preferred, but
+	 * once the document index candidates are available, the knowledge base is
+	 * only waited for a bounded time. The work of the side that is not used is
+	 * cancelled.
 	 *
-	 * @param text     The utterance text to generate a response to. It must not be
-	 *                 empty, and this method assumes that without checking.
-	 * @param settings The settings of the bot, which influence how it generates the
-	 *                 response.
-	 * @return The generated response.
-	 * @throws IOException              If an I/O error occurs reading the index.
-	 * @throws PersistenceException     If an error occurs while accessing the
-	 *                                  relational document database.
-	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 * @param knowledgeBaseAnswer               The knowledge base answer. It
+	 *                                          completes with {@code null} if the
+	 *                                          knowledge base can't answer.
+	 * @param knowledgeBaseProbesCancelled      The flag that cancels the
+	 *                                          knowledge base probes.
+	 * @param indexCandidates                   The document index candidates.
+	 * @param indexRetrievalCancelled           The flag that cancels the document
+	 *                                          index retrieval.
+	 * @param maximumKnowledgeBaseWait          How long to wait for the knowledge
+	 *                                          base answer once the document
+	 *                                          index candidates are available, in
+	 *                                          milliseconds.
+	 * @param naturalLanguageProcessingExecutor The executor that will complete
+	 *                                          the combined candidates after the
+	 *                                          wait.
+	 * @return A completion stage that completes with the chosen candidates.
 	 */
-	private static String generateResponseUsingIndex(
-		@NonNull final String text, @NonNull final VacBotSettings settings
-	) throws IOException {
-		final String response;
+	private static CompletionStage<ResponseCandidates> hedgeResponses(
+		final CompletableFuture<String> knowledgeBaseAnswer, final AtomicBoolean knowledgeBaseProbesCancelled,
+		final CompletableFuture<ResponseCandidates> indexCandidates, final AtomicBoolean indexRetrievalCancelled,
+		final long maximumKnowledgeBaseWait, final Executor naturalLanguageProcessingExecutor
+	) {
+		final CompletableFuture<ResponseCandidates> candidates = new CompletableFuture<>();
 
-		final IndexSearcher indexSearcher = settings.getLuceneIndexSettings()
-			.openIndex().getIndexSearcher();
+		knowledgeBaseAnswer.whenComplete((final String answer, final Throwable exc) -> {
+			if (exc == null && answer != null) {
+				if (candidates.complete(new ResponseCandidates(answer))) {
+					indexRetrievalCancelled.set(true);
+				}
+			} else {
+				if (exc != null) {
+					LOGGER.warn(
+						"An exception has occurred while querying the knowledge base. Using the document index instead", exc
+					);
+				}
 
-		// Start by tokenizing and filtering the utterance tokens.
-		// The utterance tokens will be used to do a span fuzzy query
-		// on the corpus documents
+				// The knowledge base couldn't answer, so the index is all we have
+				indexCandidates.whenComplete((final ResponseCandidates indexResult, final Throwable indexExc) -> {
+					if (indexExc != null) {
+						candidates.completeExceptionally(indexExc);
+					} else {
+						candidates.complete(indexResult);
+					}
+				});
+			}
+		});
+
+		indexCandidates.thenRunAsync(() -> {
+			// The knowledge base was given enough time
+			if (!candidates.isDone() && indexCandidates.join() != null && candidates.complete(indexCandidates.join())) {
+				knowledgeBaseProbesCancelled.set(true);
+			}
+		}, CompletableFuture.delayedExecutor(
+			maximumKnowledgeBaseWait, TimeUnit.MILLISECONDS, naturalLanguageProcessingExecutor
+		));
+
+		return candidates;
+	}
+
+	/**
+	 * Uses the corpus document index to find candidate responses to the provided
+	 * user utterance text.
+	 *
+	 * @param text     The utterance text to find candidate responses for. It must
+	 *                 not be empty, and this method assumes that without
+	 *                 checking.
+	 * @param settings The settings of the bot, which influence how it generates
+	 *                 the response.
+	 * @param context  The context to generate the response with.
+	 * @return A completion stage that completes with the response candidates.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	private static CompletionStage<ResponseCandidates> generateResponseUsingIndex(
+		@NonNull final String text, @NonNull final VacBotSettings settings,
+		@NonNull final ResponseGenerationContext context
+	) {
+		return searchIndex(prepareIndexQuery(text, settings), settings, context, null);
+	}
+
+	/**
+	 * Tokenizes and filters the utterance tokens, to build a fuzzy query for the
+	 * corpus documents in the document index.
+	 *
+	 * @param text     The utterance text to generate a response to.
+	 * @param settings The settings of the bot.
+	 * @return The document index query for the utterance.
+	 */
+	private static IndexQuery prepareIndexQuery(final String text, final VacBotSettings settings) {
 		final Annotation utteranceTextAnnotation = new Annotation(text);
 
-		tokenizationAndPosPipeline.annotate(utteranceTextAnnotation);
+		annotate(tokenizationAndPosPipeline, utteranceTextAnnotation);
 
 		final List<CoreLabel> coreNlpTokens = utteranceTextAnnotation.get(TokensAnnotation.class);
 		final List<String> tokens = new ArrayList<>(coreNlpTokens.size());
@@ -478,102 +1103,288 @@ public final class ResponseGenerator {
 			}
 		}
 
-		// Do the search using the index
-		final TopDocs results = indexSearcher.search(
-			queryBuilder.setMinimumNumberShouldMatch(1).build(),
-			settings.getLuceneIndexSettings().getMaxResults()
-		);
+		return new IndexQuery(queryBuilder.setMinimumNumberShouldMatch(1).build(), tokens);
+	}
 
-		// The document retrieval was only successful if we have at least one result
-		if (results.scoreDocs.length > 0) {
-			// Get the Lucene document ID (not the same as the actual ID of the indexed entity),
-			// the document entity type and its text
-			final int documentId =
-				results.scoreDocs[ThreadLocalRandom.current().nextInt(results.scoreDocs.length)].doc;
-
-			// We leverage the storage of term vectors per attribute to distinguish
-			// between document types, without the need of rebuilding indexes and
-			// storing any metadata about the document type. This feels smart
-			final Class<? extends Document> documentType =
-				indexSearcher.getIndexReader().getTermVector(documentId, "title") != null ?
-				OriginalDocumentWithTitle.class : OriginalDocument.class;
-
-			final String documentText = getDocumentText(
-				indexSearcher.doc(
-					documentId,
-					LUCENE_DOCUMENT_FIELDS_SET
-				).getField(LUCENE_DOCUMENT_ID_FIELD).numericValue().intValue(), // DOCUMENT_ID_FIELD is present so no NPE
-				documentType, settings
+	/**
+	 * Searches the document index with the specified query in the storage stage,
+	 * and resolves the corpus documents that match it. If the time budget of the
+	 * message is spent before searching, no documents are returned.
+	 *
+	 * @param indexQuery The document index query.
+	 * @param settings   The settings of the bot.
+	 * @param context    The context to generate the response with.
+	 * @param cancelled  A flag that abandons the search when set, completing the
+	 *                   returned future with {@code null}. It may be
+	 *                   {@code null} if the search can't be cancelled.
+	 * @return A future that completes with the matching documents as response
+	 *         candidates.
+	 */
+	private static CompletableFuture<ResponseCandidates> searchIndex(
+		final IndexQuery indexQuery, final VacBotSettings settings, final ResponseGenerationContext context,
+		final AtomicBoolean cancelled
+	) {
+		return callAsync(() -> {
+			if (cancelled != null && cancelled.get()) {
+				return null;
+			}
+
+			if (context.getRemainingNanos() <= 0) {
+				recordDeadlineEvent(settings, ResponseDeadlineStatistics::recordSkippedDocumentRetrieval);
+				return new ResponseCandidates(List.of(), indexQuery.tokens);
+			}
+
+			final IndexSearcher indexSearcher = settings.getLuceneIndexSettings()
+				.openIndex().getIndexSearcher();
+
+			final TopDocs results = indexSearcher.search(
+				indexQuery.query, settings.getLuceneIndexSettings().getMaxResults()
 			);
 
-			// Now split its text in sentences
-			final Annotation documentTextAnnotation = new Annotation(documentText);
-
-			sentenceSplitPipeline.annotate(documentTextAnnotation);
-
-			// Get the most relevant sentence in the document for the utterance
-			float bestSentenceScore = Float.NEGATIVE_INFINITY;
-			String bestSentenceText = documentText;
-			for (final CoreMap sentence : documentTextAnnotation.get(SentencesAnnotation.class)) {
-				float sentenceScore = 0;
-
-				for (final CoreLabel documentToken : sentence.get(TokensAnnotation.class)) {
-					float maximumTokenScore = Float.NEGATIVE_INFINITY;
-
-					// The score for this document token is the maximum score
-					// of similarity with any utterance token, as giving extra
-					// score in the case that several tokens are similar is not
-					// desired
-					for (final String utteranceToken : tokens) {
-						maximumTokenScore = Math.max(
-							new LevenshteinDistance().getDistance(
-								documentToken.get(TextAnnotation.class).toLowerCase(Locale.ROOT),
-								utteranceToken
-							), maximumTokenScore
-						);
-					}
+			final List<DocumentReference> documents = new ArrayList<>(results.scoreDocs.length);
+			for (final ScoreDoc result : results.scoreDocs) {
+				// Get the Lucene document ID (not the same as the actual ID of the
+				// indexed entity) and the document entity type
+				final int documentId = result.doc;
+
+				// We leverage the storage of term vectors per attribute to distinguish
+				// between document types, without the need of rebuilding indexes and
+				// storing any metadata about the document type. This feels smart
+				final Class<? extends Document> documentType =
+					indexSearcher.getIndexReader().getTermVector(documentId, "title") != null ?
+					OriginalDocumentWithTitle.class : OriginalDocument.class;
+
+				documents.add(new DocumentReference(
+					indexSearcher.doc(
+						documentId,
+						LUCENE_DOCUMENT_FIELDS_SET
+					).getField(LUCENE_DOCUMENT_ID_FIELD).numericValue().intValue(), // DOCUMENT_ID_FIELD is present so no NPE
+					documentType
+				));
+			}
 
-					sentenceScore += maximumTokenScore;
-				}
+			return new ResponseCandidates(documents, indexQuery.tokens);
+		}, settings.getStorageStageExecutor());
+	}
+
+	/**
+	 * Picks a response among the specified candidates. If the candidates are
+	 * documents, a random one is fetched in the storage stage, and then its
+	 * sentence that is most relevant for the utterance is selected. If there are
+	 * no candidates, a non-commital canned response is returned.
+	 *
+	 * @param candidates                        The response candidates.
+	 * @param settings                          The settings of the bot.
+	 * @param context                           The context to generate the
+	 *                                          response with.
+	 * @param naturalLanguageProcessingExecutor The executor that will run the
+	 *                                          sentence selection step.
+	 * @return A completion stage that completes with the picked response.
+	 */
+	private static CompletionStage<String> pickResponse(
+		final ResponseCandidates candidates, final VacBotSettings settings, final ResponseGenerationContext context,
+		final Executor naturalLanguageProcessingExecutor
+	) {
+		if (candidates.response != null) {
+			return CompletableFuture.completedFuture(candidates.response);
+		}
+
+		// The document retrieval was only successful if we have at least one result
+		if (candidates.documents.isEmpty()) {
+			return CompletableFuture.completedFuture(generateNonCommitalResponse());
+		}
+
+		final DocumentReference document = candidates.documents.get(
+			ThreadLocalRandom.current().nextInt(candidates.documents.size())
+		);
 
-				if (bestSentenceScore < sentenceScore) {
-					bestSentenceScore = sentenceScore;
-					bestSentenceText = sentence.get(TextAnnotation.class);
+		return callAsync(() -> {
+			if (context.getRemainingNanos() <= 0) {
+				recordDeadlineEvent(settings, ResponseDeadlineStatistics::recordSkippedDocumentRetrieval);
+				return null;
+			}
+
+			return getDocumentText(document.id, document.type, settings);
+		}, settings.getStorageStageExecutor()).thenApplyAsync(
+			(final String documentText) -> documentText != null ?
+				selectMostRelevantSentence(documentText, candidates.tokens) :
+				// Fallback to non-commital response
+				generateNonCommitalResponse(),
+			naturalLanguageProcessingExecutor
+		);
+	}
+
+	/**
+	 * Selects the sentence of a document that is most similar to the specified
+	 * utterance tokens.
+	 *
+	 * @param documentText The text of the document.
+	 * @param tokens       The utterance tokens.
+	 * @return The most relevant sentence.
+	 */
+	private static String selectMostRelevantSentence(final String documentText, final List<String> tokens) {
+		// Split the document text in sentences
+		final Annotation documentTextAnnotation = new Annotation(documentText);
+
+		annotate(sentenceSplitPipeline, documentTextAnnotation);
+
+		// Get the most relevant sentence in the document for the utterance
+		float bestSentenceScore = Float.NEGATIVE_INFINITY;
+		String bestSentenceText = documentText;
+		for (final CoreMap sentence : documentTextAnnotation.get(SentencesAnnotation.class)) {
+			float sentenceScore = 0;
+
+			for (final CoreLabel documentToken : sentence.get(TokensAnnotation.class)) {
+				float maximumTokenScore = Float.NEGATIVE_INFINITY;
+
+				// The score for this document token is the maximum score
+				// of similarity with any utterance token, as giving extra
+				// score in the case that several tokens are similar is not
+				// desired
+				for (final String utteranceToken : tokens) {
+					maximumTokenScore = Math.max(
+						new LevenshteinDistance().getDistance(
+							documentToken.get(TextAnnotation.class).toLowerCase(Locale.ROOT),
+							utteranceToken
+						), maximumTokenScore
+					);
 				}
+
+				sentenceScore += maximumTokenScore;
 			}
 
-			// The most relevant sentence is our response
-			response = bestSentenceText;
-		} else {
-			// Fallback to non-commital response
-			response = generateNonCommitalResponse();
+			if (bestSentenceScore < sentenceScore) {
+				bestSentenceScore = sentenceScore;
+				bestSentenceText = sentence.get(TextAnnotation.class);
+			}
 		}
 
-		return response;
+		// The most relevant sentence is our response
+		return bestSentenceText;
 	}
 
 	/**
-	 * Uses the knowledge base to generate a response to the provided user direct
+	 * Uses the knowledge base gazetteer to generate a response to the provided
+	 * user utterance, by querying the knowledge base with the predicates and
+	 * entities that appear verbatim in it, without parsing it.
+	 *
+	 * @param text                              The utterance text to generate a
+	 *                                          response to.
+	 * @param settings                          The bot settings to use to
+	 *                                          generate responses.
+	 * @param context                           The context to generate the
+	 *                                          response with.
+	 * @param naturalLanguageProcessingExecutor The executor that will run the
+	 *                                          sentence selection step.
+	 * @return A completion stage that completes with the generated response, or
+	 *         {@code null} if the knowledge base doesn't contain the appropriate
+	 *         facts.
+	 * @throws IllegalArgumentException If any parameter is {@code null}.
+	 */
+	private static CompletionStage<String> generateResponseUsingGazetteer(
+		@NonNull final String text, @NonNull final VacBotSettings settings,
+		@NonNull final ResponseGenerationContext context, @NonNull final Executor naturalLanguageProcessingExecutor
+	) {
+		final Annotation textAnnotation = new Annotation(text);
+		annotate(tokenizationPipeline, textAnnotation);
+
+		final List<CoreLabel> coreNlpTokens = textAnnotation.get(TokensAnnotation.class);
+		final List<String> tokens = new ArrayList<>(coreNlpTokens.size());
+		for (final CoreLabel token : coreNlpTokens) {
+			tokens.add(token.get(TextAnnotation.class).toLowerCase(Locale.ROOT));
+		}
+
+		final List<PredicateObjectCombination> predicateObjectCombinations = knowledgeBaseGazetteer.findCombinations(
+			tokens, settings.getBehaviorSettings().getMaxKnowledgeBaseProbes()
+		);
+
+		return predicateObjectCombinations.isEmpty() ? CompletableFuture.completedFuture(null) :
+			probeKnowledgeBase(
+				predicateObjectCombinations.iterator(), null, settings, context, null, naturalLanguageProcessingExecutor
+			);
+	}
+
+	/**
+	 * Uses the knowledge base to find the response to the provided user direct
 	 * question. If the knowledge base doesn't contain the appropriate facts for
-	 * generating a response, the response will be generated by searching the
-	 * document index instead, as if invoking
-	 * {@link #generateResponseUsingIndex(String, VacBotSettings)} instead.
+	 * generating a response, the response candidates will be found by searching
+	 * the document index instead, as if invoking
+	 * {@link #generateResponseUsingIndex(String, VacBotSettings, ResponseGenerationContext)}
+	 * instead. The fallback document index query is prepared while the knowledge
+	 * base is being queried.
 	 *
-	 * @param sbarqTree The constituency subtree of the direct question.
-	 * @param settings  The bot settings to use to generate responses.
-	 * @return The generated response.
-	 * @throws IOException              If the response generation via the fallback
-	 *                                  index failed.
-	 * @throws QueryException           If some error occurred while creating the
-	 *                                  Jena query.
+	 * @param sbarqTree                         The constituency subtree of the
+	 *                                          direct question.
+	 * @param dependencyGraph                   The dependency graph of the direct
+	 *                                          question.
+	 * @param settings                          The bot settings to use to
+	 *                                          generate responses.
+	 * @param context                           The context to generate the
+	 *                                          response with.
+	 * @param naturalLanguageProcessingExecutor The executor that will run the
+	 *                                          sentence selection step.
+	 * @return A completion stage that completes with the response candidates.
 	 * @throws IllegalArgumentException If any parameter is {@code null}.
 	 */
-	private static String generateResponseUsingKnowledgeBase(
+	private static CompletionStage<ResponseCandidates> generateResponseUsingKnowledgeBase(
 		@NonNull final Tree sbarqTree, @NonNull final SemanticGraph dependencyGraph,
-		@NonNull final VacBotSettings settings
-	) throws IOException, QueryException {
-		final String response;
+		@NonNull final VacBotSettings settings, @NonNull final ResponseGenerationContext context,
+		@NonNull final Executor naturalLanguageProcessingExecutor
+	) {
+		final CompletableFuture<String> knowledgeBaseResponse = answerQuestionUsingKnowledgeBase(
+			dependencyGraph, settings, context, null, naturalLanguageProcessingExecutor
+		);
+
+		// Prepare the fallback IR query while the knowledge base is queried
+		final IndexQuery fallbackIndexQuery = prepareIndexQuery(getQuestionText(sbarqTree), settings);
+
+		return knowledgeBaseResponse.thenCompose((final String knowledgeBaseAnswer) ->
+			knowledgeBaseAnswer != null ?
+				CompletableFuture.completedFuture(new ResponseCandidates(knowledgeBaseAnswer)) :
+				// Fallback to IR if the knowledge base queries
+				// were not successful
+				searchIndex(fallbackIndexQuery, settings, context, null)
+		);
+	}
+
+	/**
+	 * Returns the text of a direct question, to search the document index for
+	 * it.
+	 *
+	 * @param sbarqTree The constituency subtree of the direct question.
+	 * @return The text of the question.
+	 */
+	private static String getQuestionText(final Tree sbarqTree) {
+		return SentenceUtils.listToOriginalTextString(sbarqTree.taggedLabeledYield()).trim();
+	}
 
+	/**
+	 * Starts querying the knowledge base for the answer to the provided user
+	 * direct question, if it is of a kind that the knowledge base can answer.
+	 *
+	 * @param dependencyGraph                   The dependency graph of the direct
+	 *                                          question.
+	 * @param settings                          The bot settings to use to
+	 *                                          generate responses.
+	 * @param context                           The context to generate the
+	 *                                          response with.
+	 * @param cancelled                         A flag that abandons the knowledge
+	 *                                          base probes when set. It may be
+	 *                                          {@code null} if the probes can't be
+	 *                                          cancelled.
+	 * @param naturalLanguageProcessingExecutor The executor that will run the
+	 *                                          sentence selection step.
+	 * @return A future that completes with the answer, or {@code null} if the
+	 *         knowledge base doesn't contain the appropriate facts or can't
+	 *         answer this kind of question.
+	 * @throws IllegalArgumentException If any parameter but {@code cancelled} is
+	 *                                  {@code null}.
+	 */
+	private static CompletableFuture<String> answerQuestionUsingKnowledgeBase(
+		@NonNull final SemanticGraph dependencyGraph, @NonNull final VacBotSettings settings,
+		@NonNull final ResponseGenerationContext context, final AtomicBoolean cancelled,
+		@NonNull final Executor naturalLanguageProcessingExecutor
+	) {
 		// Get the root word and its constituency tag
 		final IndexedWord root = dependencyGraph.getFirstRoot();
 		final String rootTag = Objects.requireNonNullElse(
@@ -609,308 +1420,202 @@ public final class ResponseGenerator {
 						root, UniversalGrammaticalRelations.DIRECT_OBJECT
 					);
 
-					// Get different ways of expressing the direct object,
-					// in preference order (first ones should be better)
-					final LinkedList<String> objectCombinationsDeque = new LinkedList<>();
-					generateOrderedDependentCombinations(
-						dependencyGraph, directObject,
-						directObject, objectCombinationsDeque
-					);
-
-					// Generate alternative ways of saying the verb, too
-					final List<String> predicateCombinationsList = generateOrderedPredicateCombinations(
+					// Get alternative ways of saying the verb
+					final List<KnowledgeBaseTerm> predicateCombinationsList = generateOrderedPredicateCombinations(
 						dependencyGraph, root
 					);
 
-					// Do the ordered cartesian product with the lists of combinations,
-					// so we try all possible combinations of combinations exhaustively in order
-					final List<List<String>> predicateObjectCombinations = Lists.cartesianProduct(
-						List.of(predicateCombinationsList, objectCombinationsDeque)
-					);
-
-					// Get some base URIs that we will use for querying the KB
-					final UriBuilder basePropertyUriBuilder = UriBuilder.fromUri(
-						settings.getKnowledgeBaseSettings()
-							.getBaseModelUri().resolve("property")
-					);
+					// Lazily combine them with the different ways of expressing the
+					// direct object, in preference order (first ones should be better),
+					// so we try all possible combinations of combinations in order,
+					// up to the configured limit
+					final int maxKnowledgeBaseProbes = settings.getBehaviorSettings().getMaxKnowledgeBaseProbes();
+					final Iterator<PredicateObjectCombination> predicateObjectCombinationsGenerator =
+						new PredicateObjectCombinationGenerator(
+							predicateCombinationsList, dependencyGraph, directObject, maxKnowledgeBaseProbes
+						);
 
-					final UriBuilder baseEntityUriBuilder = UriBuilder.fromUri(
-						settings.getKnowledgeBaseSettings()
-							.getBaseModelUri().resolve("entity")
-					);
+					// Try the combinations that were observed to be more
+					// successful first, if the user wants so. This requires
+					// generating every combination that may be probed beforehand
+					final AdaptiveProbeOrderingSettings adaptiveProbeOrderingSettings = settings.getBehaviorSettings()
+						.getAdaptiveProbeOrderingSettings();
+					final KnowledgeBaseProbeStatistics probeStatistics = adaptiveProbeOrderingSettings != null ?
+						adaptiveProbeOrderingSettings.getStatistics() : null;
 
-					// TODO: conform these 4 URI formats to the current version of TextProc,
-					// not the older one we are using here for compatibility with an
-					// already generated KB. These formats make Jena complain that we use
-					// bad IRIs (and he's right!), although that doesn't affect functionality
-
-					final String documentTypePropertyUri = basePropertyUriBuilder.fragment(
-						"document-type"
-					).build().toASCIIString();
-
-					final String documentIdPropertyUri = basePropertyUriBuilder.fragment(
-						"document-id"
-					).build().toASCIIString();
-
-					final String documentSentenceNumberUri = basePropertyUriBuilder.fragment(
-						"document-sentence-number"
-					).build().toASCIIString();
-
-					final String sentimentPropertyUri = basePropertyUriBuilder.fragment(
-						"sentiment-class"
-					).build().toASCIIString();
-
-					final String confidencePropertyUri = basePropertyUriBuilder.fragment(
-						"confidence"
-					).build().toASCIIString();
-
-					final String sentimentFilterExpression = settings.getBehaviorSettings()
-						.getResponseBias().toSparqlConditionExpression("sentiment");
-
-					// We will likely submit queries to the KB, so start a transaction
-					final Dataset jenaDataset = settings.getKnowledgeBaseSettings().connect().getDataset();
-					String knowledgeBaseResponse = null;
-
-					jenaDataset.begin(ReadWrite.READ);
-					try {
-						// Generate and execute queries using the computed
-						// predicate-object combinations
-						final Iterator<List<String>> predicateObjectCombinationsIter = predicateObjectCombinations.iterator();
-
-						while (knowledgeBaseResponse == null && predicateObjectCombinationsIter.hasNext()) {
-							final Iterator<String> predicateObjectCombinationIter =
-								predicateObjectCombinationsIter.next().iterator();
-
-							final String predicateUri = basePropertyUriBuilder.fragment(
-								predicateObjectCombinationIter.next().toLowerCase(Locale.ROOT)
-							).build().toASCIIString();
-
-							final String objectUri = baseEntityUriBuilder.fragment(
-								predicateObjectCombinationIter.next().toLowerCase(Locale.ROOT)
-							).build().toASCIIString();
-
-							// "While this class was in part designed to prevent SPARQL injection it is by no
-							// means foolproof because it works purely at the textual level. The current version
-							// of the code addresses some possible attack vectors that the developers have identified
-							// but we do not claim to be sufficiently devious to have thought of and prevented every
-							// possible attack vector."
-							// However, as we previously sanitized the URI inputs, things should be fine...
-							final ParameterizedSparqlString queryString = new ParameterizedSparqlString();
-
-							queryString.setCommandText(
-								// Most of these concatenations can be done at compile time
-								"PREFIX rdf:<http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n" +
-								"SELECT ?type ?id ?sentence\n" +
-								"WHERE {\n" +
-								"        ?t rdf:predicate ?predicateUri .\n" +
-								"        ?t rdf:object ?objectUri .\n" +
-								"        ?t ?documentTypePropertyUri ?type .\n" +
-								"        ?t ?documentIdPropertyUri ?id .\n" +
-								"        ?t ?documentSentenceNumberUri ?sentence .\n" +
-								"        ?t ?sentimentPropertyUri ?sentiment .\n" +
-								"        ?t ?confidencePropertyUri ?confidence .\n" +
-								"        FILTER(" + sentimentFilterExpression + ")\n" +
-								"}\n" +
-								"ORDER BY DESC(?confidence)\n" +
-								"LIMIT 1"
-							);
-
-							queryString.setIri("predicateUri", predicateUri);
-							queryString.setIri("objectUri", objectUri);
-							queryString.setIri("documentTypePropertyUri", documentTypePropertyUri);
-							queryString.setIri("documentIdPropertyUri", documentIdPropertyUri);
-							queryString.setIri("documentSentenceNumberUri", documentSentenceNumberUri);
-							queryString.setIri("sentimentPropertyUri", sentimentPropertyUri);
-							queryString.setIri("confidencePropertyUri", confidencePropertyUri);
-
-							// Parse the generated SPARQL and execute it
-							try (final QueryExecution queryExecution = QueryExecutionFactory.create(
-								queryString.asQuery(),
-								settings.getKnowledgeBaseSettings().connect().getModel()
-							)) {
-								final ResultSet hits = queryExecution.execSelect();
-
-								// Because of the LIMIT 1 before, we get at most one result
-								if (hits.hasNext()) {
-									final QuerySolution solution = hits.next();
-
-									try {
-										final Class<? extends Document> documentType = URI_DOCUMENT_TYPE_TO_DOCUMENT_CLASS.get(
-											new URI(
-												solution.getResource("type").getURI()
-											).getFragment()
-										);
-										final int documentId = solution.getLiteral("id").getInt();
-										final int sentenceNumber = solution.getLiteral("sentence").getInt();
-
-										// Finally, we have material to answer!
-										knowledgeBaseResponse = getDocumentSentence(
-											getDocumentText(documentId, documentType, settings),
-											sentenceNumber
-										);
-									} catch (final NullPointerException | URISyntaxException ignored) {
-										// We can retry the next possibility or fallback to IR
-										// if the document type is invalid
-									}
-								}
-							}
-						}
-					} finally {
-						jenaDataset.commit();
-					}
+					final Iterator<PredicateObjectCombination> predicateObjectCombinationsIter;
+					if (probeStatistics != null) {
+						final List<PredicateObjectCombination> predicateObjectCombinations = new ArrayList<>();
+						predicateObjectCombinationsGenerator.forEachRemaining(predicateObjectCombinations::add);
 
-					if (knowledgeBaseResponse != null) {
-						response = knowledgeBaseResponse;
+						predicateObjectCombinationsIter = probeStatistics.order(predicateObjectCombinations).iterator();
 					} else {
-						// Fallback to IR if the knowledge base queries
-						// were not successful
-						response = generateResponseUsingIndex(
-							SentenceUtils.listToOriginalTextString(
-								sbarqTree.taggedLabeledYield()
-							).trim(), settings
-						);
+						predicateObjectCombinationsIter = predicateObjectCombinationsGenerator;
 					}
-				} else {
-					// We don't handle object questions for now
-					response = generateResponseUsingIndex(
-						SentenceUtils.listToOriginalTextString(
-							sbarqTree.taggedLabeledYield()
-						).trim(), settings
+
+					return probeKnowledgeBase(
+						predicateObjectCombinationsIter, probeStatistics, settings, context, cancelled,
+						naturalLanguageProcessingExecutor
 					);
 				}
-			} else {
-				// We don't know how to handle this, fallback to IR
-				response = generateResponseUsingIndex(
-					SentenceUtils.listToOriginalTextString(
-						sbarqTree.taggedLabeledYield()
-					).trim(), settings
-				);
 			}
-		} else {
-			// It is not a verb.
-			// If the root is a WP, we have a copulative verb,
-			// but we do not handle that for now
-			// (asking for what "is" something is prone to vague
-			// responses).
-			// Retrieve the original response text and use it with IR
-			response = generateResponseUsingIndex(
-				SentenceUtils.listToOriginalTextString(
-					sbarqTree.taggedLabeledYield()
-				).trim(), settings
-			);
 		}
 
-		return response;
+		// It is not a verb, we don't handle object questions for now, or we
+		// don't know how to handle this, so let the caller fallback to IR.
+		// If the root is a WP, we have a copulative verb,
+		// but we do not handle that for now
+		// (asking for what "is" something is prone to vague
+		// responses)
+		return CompletableFuture.completedFuture(null);
 	}
 
 	/**
-	 * Generates combinations of the specified root word with other words it
-	 * governs, in manners that elicits a more or less precise meaning about the
-	 * root word, and are suitable for querying the knowledge base.
+	 * Queries the knowledge base with the specified predicate-object combinations,
+	 * in order, until one of them yields a response. The queries are run in the
+	 * storage stage, within a read transaction, so that slow storage doesn't take
+	 * threads away from natural language processing. The probes are abandoned if
+	 * the time budget of the message is nearly spent.
 	 * <p>
-	 * The algorithm implemented here is relatively simple and may not capture the
-	 * most appropriate candidates for some complex grammatical graphs, which are
-	 * hopefully unlikely to occur in practice.
+	 * Once a matching triple is found, the text of the document it was extracted
+	 * from is fetched in the storage stage too, outside of the read transaction,
+	 * and the sentence is split from it in the specified executor, like when
+	 * picking a response among document candidates.
 	 * </p>
 	 *
-	 * @param dependencyGraph   The dependency graph of the sentence where the root
-	 *                          word belongs to.
-	 * @param currentRoot       The current root word, used for recursion.
-	 *                          Initially, the value of this parameter should be
-	 *                          equal to {@code root}.
-	 * @param root              The root word to generate its ordered combinations
-	 *                          with its dependents.
-	 * @param combinationsDeque The stack where the generated combinations will be
-	 *                          stored.
-	 * @throws IllegalArgumentException If any parameter is {@code null}.
+	 * @param combinations                      The predicate-object combinations
+	 *                                          to query the knowledge base with.
+	 * @param probeStatistics                   The statistics to record the probe
+	 *                                          results in. It may be {@code null}
+	 *                                          if they should not be recorded.
+	 * @param settings                          The bot settings to use to
+	 *                                          generate responses.
+	 * @param context                           The context to generate the
+	 *                                          response with.
+	 * @param cancelled                         A flag that abandons the probes
+	 *                                          when set. It may be {@code null} if
+	 *                                          the probes can't be cancelled.
+	 * @param naturalLanguageProcessingExecutor The executor that will run the
+	 *                                          sentence selection step.
+	 * @return A future that completes with the document sentence associated to
+	 *         the first combination with a matching triple, or {@code null} if
+	 *         there is no such combination.
 	 */
-	private static void generateOrderedDependentCombinations(
-		@NonNull final SemanticGraph dependencyGraph, @NonNull final IndexedWord currentRoot,
-		@NonNull final IndexedWord root, @NonNull final Deque<String> combinationsDeque
+	private static CompletableFuture<String> probeKnowledgeBase(
+		final Iterator<PredicateObjectCombination> combinations, final KnowledgeBaseProbeStatistics probeStatistics,
+		final VacBotSettings settings, final ResponseGenerationContext context, final AtomicBoolean cancelled,
+		final Executor naturalLanguageProcessingExecutor
 	) {
-		// Potential for improvement:
-		// Go back in the dependency path and somehow add to each node
-		// its dependents, without things exploding
-		final List<IndexedWord> pathToRoot = dependencyGraph
-			.getShortestDirectedPathNodes(root, currentRoot);
-
-		// Add the path to root, which includes ourselves
-		final List<String> pathToRootCombinations = indexedWordPathToCombinations(pathToRoot);
-		final ListIterator<String> pathToRootCombinationsIter = pathToRootCombinations
-			.listIterator(pathToRootCombinations.size());
-
-		while (pathToRootCombinationsIter.hasPrevious()) {
-			combinationsDeque.push(pathToRootCombinationsIter.previous());
-		}
+		return callAsync(() -> {
+			// TDB2 transactions are bound to the thread that starts them
+			final Dataset jenaDataset = settings.getKnowledgeBaseSettings().connect().getDataset();
+			SentenceReference knowledgeBaseSentence = null;
 
-		// Do the same for the dependencies of the current root
-		for (final SemanticGraphEdge dependentsOfCurrentRoot : dependencyGraph.getOutEdgesSorted(currentRoot)) {
-			generateOrderedDependentCombinations(
-				dependencyGraph, dependentsOfCurrentRoot.getTarget(), root, combinationsDeque
-			);
-		}
-	}
-
-	/**
-	 * Creates a list which contains different ways to express the provided word
-	 * path.
-	 *
-	 * @param wordPath The word path whose different ways to be expressed should be
-	 *                 calculated.
-	 * @return The described list.
-	 * @throws IllegalArgumentException If the argument is {@code null}.
-	 */
-	private static List<String> indexedWordPathToCombinations(
-		@NonNull final List<IndexedWord> wordPath
-	) {
-		final List<String> result = new ArrayList<>();
-		final StringBuilder stringBuilder = new StringBuilder();
-		ListIterator<IndexedWord> wordPathIter = wordPath.listIterator(wordPath.size());
-
-		// First add the path with the original texts
-		while (wordPathIter.hasPrevious()) {
-			final IndexedWord word = wordPathIter.previous();
-
-			// The path is just the concatenation of words
-			stringBuilder
-				.append(word.originalText())
-				.append(" ");
-		}
-
-		if (stringBuilder.length() > 0) {
-			// Delete trailing space
-			stringBuilder.deleteCharAt(stringBuilder.length() - 1);
-			result.add(stringBuilder.toString());
-		}
+			jenaDataset.begin(ReadWrite.READ);
+			try {
+				while (
+					knowledgeBaseSentence == null && combinations.hasNext() && (cancelled == null || !cancelled.get())
+				) {
+					if (isTimeBudgetNearlySpent(context, settings)) {
+						recordDeadlineEvent(settings, ResponseDeadlineStatistics::recordAbandonedKnowledgeBaseProbes);
+						break;
+					}
 
-		// Discard string builder contents, but preserve its reserved buffer
-		// to reuse it efficiently
-		stringBuilder.setLength(0);
+					final PredicateObjectCombination combination = combinations.next();
 
-		// Reset the iterator position
-		wordPathIter = wordPath.listIterator(wordPath.size());
+					final long probeStart = System.nanoTime();
+					knowledgeBaseSentence = probeKnowledgeBase(combination, settings);
 
-		// Then add the path with the lemmatized text
-		while (wordPathIter.hasPrevious()) {
-			final IndexedWord word = wordPathIter.previous();
+					if (probeStatistics != null) {
+						probeStatistics.recordProbe(
+							combination.getShape(), knowledgeBaseSentence != null, System.nanoTime() - probeStart
+						);
+					}
+				}
+			} finally {
+				jenaDataset.commit();
+			}
 
-			stringBuilder
-				.append(word.lemma())
-				.append(" ");
-		}
+			return knowledgeBaseSentence;
+		}, settings.getStorageStageExecutor()).thenCompose((final SentenceReference sentence) ->
+			sentence == null ? CompletableFuture.completedFuture(null) :
+			callAsync(
+				() -> getDocumentText(sentence.document.id, sentence.document.type, settings),
+				settings.getStorageStageExecutor()
+			).thenApplyAsync(
+				(final String documentText) -> getDocumentSentence(documentText, sentence.number),
+				naturalLanguageProcessingExecutor
+			)
+		);
+	}
 
-		if (stringBuilder.length() > 0) {
-			// Delete trailing space
-			stringBuilder.deleteCharAt(stringBuilder.length() - 1);
+	/**
+	 * Queries the knowledge base for a RDF triple with the predicate and object of
+	 * the specified combination, and returns a reference to the document sentence
+	 * it was extracted from. The caller is responsible for starting a read
+	 * transaction on the knowledge base dataset.
+	 *
+	 * @param combination The predicate-object combination to query the knowledge
+	 *                    base with.
+	 * @param settings    The bot settings to use to generate responses.
+	 * @return The reference to the document sentence associated to the most
+	 *         confident matching triple, or {@code null} if there is no such
+	 *         triple.
+	 * @throws QueryException           If some error occurred while creating the
+	 *                                  Jena query.
+	 * @throws IllegalArgumentException If any parameter is {@code null}.
+	 */
+	private static SentenceReference probeKnowledgeBase(
+		@NonNull final PredicateObjectCombination combination, @NonNull final VacBotSettings settings
+	) throws QueryException {
+		SentenceReference knowledgeBaseSentence = null;
+
+		final String predicateUri = UriBuilder.fromUri(basePropertyUri).fragment(
+			combination.getPredicate().getText().toLowerCase(Locale.ROOT)
+		).build().toASCIIString();
+
+		final String objectUri = UriBuilder.fromUri(baseEntityUri).fragment(
+			combination.getObject().getText().toLowerCase(Locale.ROOT)
+		).build().toASCIIString();
+
+		final ParameterizedSparqlString queryString = knowledgeBaseQueryTemplate.copy();
+		queryString.setIri("predicateUri", predicateUri);
+		queryString.setIri("objectUri", objectUri);
+
+		// Parse the generated SPARQL and execute it against the whole dataset,
+		// as the query selects the knowledge base graph by itself
+		try (final QueryExecution queryExecution = QueryExecutionFactory.create(
+			queryString.asQuery(),
+			settings.getKnowledgeBaseSettings().connect().getDataset()
+		)) {
+			final ResultSet hits = queryExecution.execSelect();
+
+			// Because of the LIMIT 1 before, we get at most one result
+			if (hits.hasNext()) {
+				final QuerySolution solution = hits.next();
+
+				try {
+					final Class<? extends Document> documentType = URI_DOCUMENT_TYPE_TO_DOCUMENT_CLASS.get(
+						new URI(
+							solution.getResource("type").getURI()
+						).getFragment()
+					);
+					final int documentId = solution.getLiteral("id").getInt();
+					final int sentenceNumber = solution.getLiteral("sentence").getInt();
 
-			// Do not add the string to the result if it is the same
-			final String pathString = stringBuilder.toString();
-			if (!result.get(0).equalsIgnoreCase(pathString)) {
-				result.add(pathString);
+					// Finally, we have material to answer! A missing document type
+					// is not valid, so check it here
+					knowledgeBaseSentence = new SentenceReference(
+						new DocumentReference(documentId, Objects.requireNonNull(documentType)), sentenceNumber
+					);
+				} catch (final NullPointerException | URISyntaxException ignored) {
+					// We can retry the next possibility or fallback to IR
+					// if the document type is invalid
+				}
 			}
 		}
 
-		return result;
+		return knowledgeBaseSentence;
 	}
 
 	/**
@@ -923,7 +1628,7 @@ public final class ResponseGenerator {
 	 *         triple, in preference order.
 	 * @throws IllegalArgumentException If some parameter is {@code null}.
 	 */
-	private static List<String> generateOrderedPredicateCombinations(
+	private static List<KnowledgeBaseTerm> generateOrderedPredicateCombinations(
 		@NonNull final SemanticGraph dependencyGraph, @NonNull final IndexedWord verb
 	) {
 		final String rootString = verb.originalText();
@@ -933,7 +1638,7 @@ public final class ResponseGenerator {
 		// according to their sentence position. This is necessary
 		// so the generated predicates are natural
 		final SortedSet<IndexedWord> verbDependents = new TreeSet<>();
-		final List<String> alternativePredicates = new ArrayList<>(4);
+		final List<KnowledgeBaseTerm> alternativePredicates = new ArrayList<>(4);
 
 		addDependentWithGrammaticalRelationToCollection(
 			dependencyGraph, verb, UniversalGrammaticalRelations.MARKER,
@@ -966,6 +1671,7 @@ public final class ResponseGenerator {
 					currentStartDependent
 				);
 				IndexedWord firstDifferentDependent = null;
+				final int wordCount = currentDependentsSet.size() + 1;
 
 				// Discard string builder contents, but not the memory they allocated
 				combinationStringBuilder.setLength(0);
@@ -999,7 +1705,7 @@ public final class ResponseGenerator {
 				);
 
 				final String combinationString = combinationStringBuilder.toString();
-				alternativePredicates.add(combinationString);
+				alternativePredicates.add(new KnowledgeBaseTerm(combinationString, false, wordCount));
 
 				// Add the lemmatized version too, but later so it's less prioritary
 				combinationLemmaStringBuilder
@@ -1012,7 +1718,7 @@ public final class ResponseGenerator {
 
 				final String combinationLemmaString = combinationLemmaStringBuilder.toString();
 				if (!combinationLemmaString.equalsIgnoreCase(combinationString)) {
-					alternativePredicates.add(combinationLemmaStringBuilder.toString());
+					alternativePredicates.add(new KnowledgeBaseTerm(combinationLemmaString, true, wordCount));
 				}
 
 				currentStartDependent = firstDifferentDependent;
@@ -1020,10 +1726,10 @@ public final class ResponseGenerator {
 		}
 
 		// Add just the original verb
-		alternativePredicates.add(rootString);
+		alternativePredicates.add(new KnowledgeBaseTerm(rootString, false, 1));
 
 		if (!rootString.equalsIgnoreCase(lemmaRootString)) {
-			alternativePredicates.add(lemmaRootString);
+			alternativePredicates.add(new KnowledgeBaseTerm(lemmaRootString, true, 1));
 		}
 
 		return alternativePredicates;
@@ -1092,7 +1798,7 @@ public final class ResponseGenerator {
 		}
 
 		documentAnnotation = new Annotation(document);
-		sentenceSplitPipeline.annotate(documentAnnotation);
+		annotate(sentenceSplitPipeline, documentAnnotation);
 
 		final List<CoreMap> sentences = documentAnnotation.get(SentencesAnnotation.class);
 		if (sentenceNumber < sentences.size()) {
@@ -1123,6 +1829,15 @@ public final class ResponseGenerator {
 		return GOODBYE_RESPONSES[ThreadLocalRandom.current().nextInt(GOODBYE_RESPONSES.length)];
 	}
 
+	/**
+	 * Generates a canned response that tells the user that the bot is busy.
+	 *
+	 * @return The generated busy response.
+	 */
+	private static String generateBusyResponse() {
+		return BUSY_RESPONSES[ThreadLocalRandom.current().nextInt(BUSY_RESPONSES.length)];
+	}
+
 	/**
 	 * Generates a non-commital response, hopefully kind of appropriate for any
 	 * text.
@@ -1199,4 +1914,189 @@ public final class ResponseGenerator {
 			}
 		}
 	}
+
+	/**
+	 * Checks whether the time budget of a message is so close to being spent that
+	 * costly response generation stages should not be started or continued.
+	 *
+	 * @param context  The context the response is being generated with.
+	 * @param settings The settings of the bot.
+	 * @return True if cheaper stages should be used, false otherwise.
+	 */
+	private static boolean isTimeBudgetNearlySpent(
+		final ResponseGenerationContext context, final VacBotSettings settings
+	) {
+		final ResponseDeadlineSettings responseDeadlineSettings = settings.getBehaviorSettings()
+			.getResponseDeadlineSettings();
+
+		return responseDeadlineSettings != null &&
+			context.getRemainingNanos() < TimeUnit.MILLISECONDS.toNanos(responseDeadlineSettings.getReserve());
+	}
+
+	/**
+	 * Records a response generation stage that was degraded because of the time
+	 * budget of a message in the response deadline statistics, if response
+	 * deadlines are enabled.
+	 *
+	 * @param settings The settings of the bot.
+	 * @param recorder The statistics method that records the event.
+	 */
+	private static void recordDeadlineEvent(
+		final VacBotSettings settings, final Consumer<ResponseDeadlineStatistics> recorder
+	) {
+		final ResponseDeadlineSettings responseDeadlineSettings = settings.getBehaviorSettings()
+			.getResponseDeadlineSettings();
+
+		if (responseDeadlineSettings != null) {
+			recorder.accept(responseDeadlineSettings.getStatistics());
+		}
+	}
+
+	/**
+	 * Runs the specified callable in the specified executor, returning a future
+	 * for its result. If the executor rejects the callable, the returned future
+	 * is completed exceptionally.
+	 *
+	 * @param <V>      The type of the result of the callable.
+	 * @param callable The callable to run.
+	 * @param executor The executor to run the callable in.
+	 * @return The future for the result of the callable.
+	 */
+	private static <V> CompletableFuture<V> callAsync(final Callable<V> callable, final Executor executor) {
+		final CompletableFuture<V> future = new CompletableFuture<>();
+
+		try {
+			executor.execute(() -> {
+				try {
+					future.complete(callable.call());
+				} catch (final Throwable exc) {
+					future.completeExceptionally(exc);
+				}
+			});
+		} catch (final RejectedExecutionException exc) {
+			future.completeExceptionally(exc);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Converts the cause of a failed response generation stage to a response
+	 * generation exception, unwrapping completion exceptions.
+	 *
+	 * @param exc The cause of the failure.
+	 * @return The response generation exception.
+	 */
+	private static ResponseGenerationException asResponseGenerationException(final Throwable exc) {
+		Throwable cause = exc;
+		while (cause instanceof CompletionException && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+
+		return cause instanceof ResponseGenerationException ?
+			(ResponseGenerationException) cause : new ResponseGenerationException(cause);
+	}
+
+	/**
+	 * A document index query for an utterance, along with the utterance tokens
+	 * used to select the most relevant sentence of the retrieved document.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class IndexQuery {
+		private final Query query;
+		private final List<String> tokens;
+
+		private IndexQuery(final Query query, final List<String> tokens) {
+			this.query = query;
+			this.tokens = tokens;
+		}
+	}
+
+	/**
+	 * Identifies the utterances that get the same response candidates, to share
+	 * their analysis while it is in flight. Utterances are compared after
+	 * normalizing their case and whitespace, and their analysis is only shared
+	 * among messages whose time budget is in the same state.
+	 *
+	 * @author Alejandro González García
+	 */
+	@EqualsAndHashCode
+	private static final class UtteranceKey {
+		private final String normalizedText;
+		private final ResponseBias responseBias;
+		private final OverloadAction overloadAction;
+		/**
+		 * Whether the time budget of the message was nearly spent when its
+		 * analysis started, which makes it skip costly stages.
+		 */
+		private final boolean timeBudgetNearlySpent;
+
+		private UtteranceKey(
+			final String text, final ResponseBias responseBias, final OverloadAction overloadAction,
+			final boolean timeBudgetNearlySpent
+		) {
+			this.normalizedText = ONE_OR_MORE_SPACES.matcher(text.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+			this.responseBias = responseBias;
+			this.overloadAction = overloadAction;
+			this.timeBudgetNearlySpent = timeBudgetNearlySpent;
+		}
+	}
+
+	/**
+	 * The candidate responses to an utterance: either a response that was
+	 * generated directly, like a knowledge base answer, or the corpus documents
+	 * that are relevant to the utterance, along with its tokens, to pick a
+	 * response from.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class ResponseCandidates {
+		private final String response;
+		private final List<DocumentReference> documents;
+		private final List<String> tokens;
+
+		private ResponseCandidates(final String response) {
+			this.response = response;
+			this.documents = null;
+			this.tokens = null;
+		}
+
+		private ResponseCandidates(final List<DocumentReference> documents, final List<String> tokens) {
+			this.response = null;
+			this.documents = documents;
+			this.tokens = tokens;
+		}
+	}
+
+	/**
+	 * References a sentence of a corpus document by the document and its number
+	 * within it.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class SentenceReference {
+		private final DocumentReference document;
+		private final int number;
+
+		private SentenceReference(final DocumentReference document, final int number) {
+			this.document = document;
+			this.number = number;
+		}
+	}
+
+	/**
+	 * References a corpus document by its identifier and type.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class DocumentReference {
+		private final int id;
+		private final Class<? extends Document> type;
+
+		private DocumentReference(final int id, final Class<? extends Document> type) {
+			this.id = id;
+			this.type = type;
+		}
+	}
 }
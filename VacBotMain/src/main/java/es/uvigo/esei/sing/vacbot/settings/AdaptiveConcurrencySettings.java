@@ -0,0 +1,46 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Contains the settings that control how the number of responses that are
+ * generated concurrently is adapted at runtime, according to the measured
+ * response generation latency.
+ *
+ * @author Alejandro González García
+ * @see VacBotSettings
+ */
+@XmlRootElement(name = "adaptiveConcurrency")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString
+public final class AdaptiveConcurrencySettings {
+	/**
+	 * The number of responses that may be generated concurrently at startup. If
+	 * {@code null}, the number of worker threads is used.
+	 */
+	@Getter
+	@XmlElement(name = "initialLimit")
+	private final Integer initialLimit = null;
+
+	/**
+	 * The minimum number of responses that may be generated concurrently.
+	 */
+	@Getter
+	@XmlElement(name = "minimumLimit")
+	private int minimumLimit = 1;
+
+	/**
+	 * The maximum number of responses that may be generated concurrently. If
+	 * {@code null}, 32 times the number of worker threads is used.
+	 */
+	@Getter
+	@XmlElement(name = "maximumLimit")
+	private final Integer maximumLimit = null;
+}
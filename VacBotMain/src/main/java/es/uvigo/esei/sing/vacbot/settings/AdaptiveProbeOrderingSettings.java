@@ -0,0 +1,132 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import es.uvigo.esei.sing.vacbot.responsegen.KnowledgeBaseProbeStatistics;
+import jakarta.xml.bind.Unmarshaller;
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Contains the settings that control how the order in which predicate-object
+ * combinations are tried against the knowledge base is learned from the
+ * observed probe results.
+ *
+ * @author Alejandro González García
+ * @see BehaviorSettings
+ */
+@XmlRootElement(name = "adaptiveProbeOrdering")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString(exclude = "statistics")
+public final class AdaptiveProbeOrderingSettings implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveProbeOrderingSettings.class);
+
+	/**
+	 * The file where the probe statistics are persisted across restarts. If
+	 * {@code null}, the statistics are not persisted.
+	 */
+	@Getter
+	@XmlElement(name = "statisticsFile")
+	@XmlJavaTypeAdapter(CommonJAXBAdapters.PathAdapter.class)
+	private final Path statisticsFile = null;
+
+	/**
+	 * The probability of trying every combination in its default order, so that
+	 * the statistics of rarely successful combination shapes keep being updated.
+	 */
+	@Getter
+	@XmlElement(name = "explorationRate")
+	private double explorationRate = 0.1;
+
+	/**
+	 * The number of probes of a combination shape that must be observed before
+	 * its combinations can be discarded.
+	 */
+	@Getter
+	@XmlElement(name = "minimumSamples")
+	private long minimumSamples = 100;
+
+	/**
+	 * The observed success probability below which the combinations of a shape
+	 * are not tried.
+	 */
+	@Getter
+	@XmlElement(name = "minimumSuccessProbability")
+	private double minimumSuccessProbability = 0.001;
+
+	/**
+	 * The actual probe statistics.
+	 */
+	private KnowledgeBaseProbeStatistics statistics = null;
+
+	/**
+	 * Creates the probe statistics object if necessary, loading the persisted
+	 * statistics, and returns it. If it was already created, the same object will
+	 * be returned in subsequent invocations of this method.
+	 * <p>
+	 * This method is not thread-safe: if executed concurrently by several threads,
+	 * the statistics object isn't updated with happens-before semantics.
+	 * </p>
+	 *
+	 * @return The knowledge base probe statistics.
+	 * @throws IllegalStateException If the persisted statistics couldn't be
+	 *                               loaded.
+	 */
+	public KnowledgeBaseProbeStatistics getStatistics() {
+		if (statistics == null) {
+			final KnowledgeBaseProbeStatistics newStatistics = new KnowledgeBaseProbeStatistics(
+				explorationRate, minimumSamples, minimumSuccessProbability
+			);
+
+			if (statisticsFile != null) {
+				try {
+					newStatistics.load(statisticsFile);
+
+					LOGGER.info("Knowledge base probe statistics loaded from {}", statisticsFile);
+				} catch (final IOException | IllegalArgumentException exc) {
+					throw new IllegalStateException("Couldn't load the knowledge base probe statistics", exc);
+				}
+			}
+
+			statistics = newStatistics;
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * Loads the probe statistics just after these settings are unmarshalled from
+	 * the configuration file.
+	 * <p>
+	 * Any exception thrown by this method will abort the unmarshalling process as
+	 * if a parse error occurred.
+	 * </p>
+	 *
+	 * @param unmarshaller The unmarshaller that is unmarshalling this class.
+	 * @param parent       The parent object. It can be {@code null}.
+	 */
+	@SuppressWarnings("unused") // Called by JAXB
+	private void afterUnmarshal(final Unmarshaller unmarshaller, final Object parent) {
+		getStatistics();
+	}
+
+	@Override
+	public void close() throws Exception {
+		if (statistics != null && statisticsFile != null) {
+			statistics.save(statisticsFile);
+
+			LOGGER.info("Knowledge base probe statistics saved to {}", statisticsFile);
+		}
+	}
+}
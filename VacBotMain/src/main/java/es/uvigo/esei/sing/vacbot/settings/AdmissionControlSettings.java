@@ -0,0 +1,47 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Contains the settings that control how incoming text messages are shed when
+ * they wait too long before being processed, so the bot keeps responding in a
+ * timely manner during load spikes.
+ *
+ * @author Alejandro González García
+ * @see VacBotSettings
+ */
+@XmlRootElement(name = "admissionControl")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString
+public final class AdmissionControlSettings {
+	/**
+	 * The acceptable time a message may wait to be processed, in milliseconds.
+	 */
+	@Getter
+	@XmlElement(name = "targetQueueDelay")
+	private long targetQueueDelay = 2000;
+
+	/**
+	 * How long the waiting time of messages must stay above the target before
+	 * messages start being shed, in milliseconds. It should be in the order of
+	 * the time it takes to respond to a message.
+	 */
+	@Getter
+	@XmlElement(name = "interval")
+	private long interval = 10000;
+
+	/**
+	 * How shed messages are responded.
+	 */
+	@Getter @NonNull
+	@XmlElement(name = "overloadAction")
+	private final OverloadAction overloadAction = OverloadAction.BUSY_RESPONSE;
+}
@@ -20,7 +20,7 @@ import lombok.ToString;
 @XmlRootElement(name = "behavior")
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 @ToString
-public final class BehaviorSettings {
+public final class BehaviorSettings implements AutoCloseable {
 	/**
 	 * The bias towards vaccination topics expressed by the bot, achieved by trying
 	 * to select only responses that manifest that sentiment category towards the
@@ -29,4 +29,76 @@ public final class BehaviorSettings {
 	@Getter @NonNull
 	@XmlElement(required = true)
 	private final ResponseBias responseBias = null;
+
+	/**
+	 * The maximum number of predicate-object combinations that will be probed
+	 * against the knowledge base for a single question, which bounds the time
+	 * spent answering long, deeply nested questions.
+	 */
+	@Getter
+	@XmlElement(name = "maxKnowledgeBaseProbes")
+	private int maxKnowledgeBaseProbes = 128;
+
+	/**
+	 * Marks whether the knowledge base gazetteer fast path is enabled. If
+	 * {@code null}, it is disabled.
+	 */
+	@XmlElement(name = "gazetteerFastPath")
+	private final GazetteerFastPathSetting gazetteerFastPathSetting = null;
+
+	/**
+	 * The settings for learning the order in which knowledge base probes are
+	 * tried. If {@code null}, the probes are tried in a fixed order.
+	 */
+	@Getter
+	@XmlElement(name = "adaptiveProbeOrdering")
+	private final AdaptiveProbeOrderingSettings adaptiveProbeOrderingSettings = null;
+
+	/**
+	 * The settings that bound the time spent responding to each message. If
+	 * {@code null}, messages are responded without a time budget.
+	 */
+	@Getter
+	@XmlElement(name = "responseDeadline")
+	private final ResponseDeadlineSettings responseDeadlineSettings = null;
+
+	/**
+	 * The settings for retrieving responses from the document index while
+	 * questions are answered with the knowledge base. If {@code null}, the
+	 * document index is only used when the knowledge base can't answer.
+	 */
+	@Getter
+	@XmlElement(name = "hedgedRetrieval")
+	private final HedgedRetrievalSettings hedgedRetrievalSettings = null;
+
+	/**
+	 * Checks whether subject questions will be first answered by looking up the
+	 * knowledge base predicates and entities that appear verbatim in them, before
+	 * parsing them.
+	 *
+	 * @return True if and only if the gazetteer fast path is enabled, false
+	 *         otherwise.
+	 */
+	public boolean isGazetteerFastPathEnabled() {
+		return gazetteerFastPathSetting != null;
+	}
+
+	@Override
+	public void close() throws Exception {
+		if (responseDeadlineSettings != null) {
+			responseDeadlineSettings.close();
+		}
+
+		if (adaptiveProbeOrderingSettings != null) {
+			adaptiveProbeOrderingSettings.close();
+		}
+	}
+
+	/**
+	 * A helper class to map the empty {@code <gazetteerFastPath>} element.
+	 *
+	 * @author Alejandro González García
+	 */
+	@XmlRootElement(name = "gazetteerFastPath")
+	private static final class GazetteerFastPathSetting {}
 }
@@ -42,6 +42,48 @@ final class CommonJAXBAdapters {
 		}
 	}
 
+	/**
+	 * A XML type adapter to map {@link PathSetting}, a POJO representing an element
+	 * whose value is a path to a file that may not exist yet, to its value.
+	 *
+	 * @author Alejandro González García
+	 */
+	static final class PathAdapter extends XmlAdapter<PathSetting, Path> {
+		@Override
+		public Path unmarshal(@NonNull final PathSetting v) throws Exception {
+			final Path path = Path.of(v.getPathString());
+
+			if (Files.isDirectory(path)) {
+				throw new IllegalArgumentException("The provided path is a directory");
+			}
+
+			return path;
+		}
+
+		@Override
+		public PathSetting marshal(@NonNull final Path v) throws Exception {
+			return new PathSetting(v.toAbsolutePath().toString());
+		}
+	}
+
+	/**
+	 * A helper class to map a path string value wrapped in a element to a string.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class PathSetting {
+		@XmlValue @Getter
+		private final String pathString;
+
+		private PathSetting() {
+			this.pathString = null;
+		}
+
+		private PathSetting(@NonNull final String pathString) {
+			this.pathString = pathString;
+		}
+	}
+
 	/**
 	 * A helper class to map a directory path string value wrapped in a element to a
 	 * string.
@@ -0,0 +1,29 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import jakarta.xml.bind.annotation.XmlEnum;
+import jakarta.xml.bind.annotation.XmlEnumValue;
+
+/**
+ * Represents how the text message dispatcher runs the tasks that respond to
+ * incoming text messages.
+ *
+ * @author Alejandro González García
+ */
+@XmlEnum(String.class)
+public enum DispatchMode {
+	/**
+	 * Messages are processed by a pool of platform threads, which grows when
+	 * load is high and queues messages when it can't grow further.
+	 */
+	@XmlEnumValue("threadPool") THREAD_POOL,
+	/**
+	 * Each message is processed in its own virtual thread, and the number of
+	 * messages that are concurrently running CPU-bound natural language
+	 * processing stages is limited to the number of worker threads. This mode
+	 * requires Java 21 or later: on older runtimes, the thread pool mode is used
+	 * instead.
+	 */
+	@XmlEnumValue("virtual") VIRTUAL_THREADS;
+}
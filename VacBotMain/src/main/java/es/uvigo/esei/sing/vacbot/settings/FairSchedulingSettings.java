@@ -0,0 +1,40 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Contains the settings that control how incoming text messages of different
+ * conversations share the worker threads, so that very active conversations
+ * don't starve the rest.
+ *
+ * @author Alejandro González García
+ * @see VacBotSettings
+ */
+@XmlRootElement(name = "fairScheduling")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString
+public final class FairSchedulingSettings {
+	/**
+	 * How many messages of a private conversation are handed to the worker
+	 * threads in each scheduling round, before handing messages of other
+	 * conversations.
+	 */
+	@Getter
+	@XmlElement(name = "privateConversationWeight")
+	private int privateConversationWeight = 4;
+
+	/**
+	 * How many messages of a group conversation are handed to the worker threads
+	 * in each scheduling round, before handing messages of other conversations.
+	 */
+	@Getter
+	@XmlElement(name = "groupConversationWeight")
+	private int groupConversationWeight = 1;
+}
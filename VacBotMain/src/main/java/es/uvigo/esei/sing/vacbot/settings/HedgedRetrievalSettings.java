@@ -0,0 +1,33 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Contains the settings that control the speculative retrieval of responses
+ * from the document index while questions are parsed and answered with the
+ * knowledge base, so that questions the knowledge base can't answer don't pay
+ * for both strategies one after another.
+ *
+ * @author Alejandro González García
+ * @see BehaviorSettings
+ */
+@XmlRootElement(name = "hedgedRetrieval")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString
+public final class HedgedRetrievalSettings {
+	/**
+	 * How long to wait for the knowledge base to answer once the document index
+	 * response is available, in milliseconds, before using the document index
+	 * response.
+	 */
+	@Getter
+	@XmlElement(name = "maximumKnowledgeBaseWait")
+	private long maximumKnowledgeBaseWait = 500;
+}
@@ -0,0 +1,48 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Contains the settings of the ring buffer that holds the received text
+ * messages until they are dispatched.
+ *
+ * @author Alejandro González García
+ * @see TelegramBotMessageDispatcherFactory
+ */
+@XmlRootElement(name = "ingressBuffer")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString
+public final class IngressBufferSettings {
+	/**
+	 * The maximum number of received messages that may wait to be dispatched.
+	 * It is rounded up to a power of two.
+	 */
+	@Getter
+	@XmlElement(name = "capacity")
+	private int capacity = 256;
+
+	/**
+	 * How the threads that put messages in the buffer and take messages from it
+	 * wait when it is full or empty, respectively.
+	 */
+	@Getter @NonNull
+	@XmlElement(name = "waitStrategy")
+	private final WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+
+	/**
+	 * Returns the settings that are used when none are provided.
+	 *
+	 * @return The described settings.
+	 */
+	static IngressBufferSettings defaultSettings() {
+		return new IngressBufferSettings();
+	}
+}
@@ -2,13 +2,32 @@
 
 package es.uvigo.esei.sing.vacbot.settings;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import org.apache.jena.query.ARQ;
 import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.Query;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.engine.QueryEngineFactory;
+import org.apache.jena.sparql.engine.QueryEngineRegistry;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderLib;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
+import org.apache.jena.sparql.sse.Item;
+import org.apache.jena.sparql.sse.ItemWriter;
+import org.apache.jena.system.Txn;
 import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.solver.QueryEngineTDB;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.sys.TDBInternal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,10 +51,16 @@ import lombok.ToString;
  * @see VacBotSettings
  */
 @XmlRootElement(name = "knowledgeBaseConnection")
-@ToString(exclude = "connection")
+@ToString(exclude = { "connection", "pendingConnection" })
 public final class KnowledgeBaseConnectionSettings implements AutoCloseable {
 	private static final Logger LOGGER = LoggerFactory.getLogger(KnowledgeBaseConnectionSettings.class);
 
+	/**
+	 * The name of the file, relative to the TDB2 storage location, where TDB2
+	 * reads query optimizer statistics from.
+	 */
+	private static final String QUERY_OPTIMIZER_STATISTICS_FILE_NAME = "stats.opt";
+
 	/**
 	 * The directory where the Jena dataset of the KB resides.
 	 */
@@ -52,11 +77,23 @@ public final class KnowledgeBaseConnectionSettings implements AutoCloseable {
 	@XmlJavaTypeAdapter(BaseUriAdapter.class)
 	private final URI baseModelUri;
 
+	/**
+	 * Marks whether the KB should be copied to an in-memory dataset on startup. If
+	 * {@code null}, the TDB2 dataset will be used directly.
+	 */
+	@XmlElement(name = "inMemory")
+	private final InMemorySetting inMemorySetting = null;
+
 	/**
 	 * The actual connection to the Jena dataset.
 	 */
 	private Connection connection = null;
 
+	/**
+	 * The connection that is being established in the background, if any.
+	 */
+	private CompletableFuture<Connection> pendingConnection = null;
+
 	/**
 	 * Initializes fields before JAXB unmarshalls this object.
 	 */
@@ -73,39 +110,223 @@ public final class KnowledgeBaseConnectionSettings implements AutoCloseable {
 	/**
 	 * Establishes a connection to the knowledge base if necessary and returns it.
 	 * If a connection was already established, it will be returned in subsequent
-	 * invocations of this method.
+	 * invocations of this method. If the knowledge base is being loaded into
+	 * memory in the background, this method waits for that load to complete.
 	 * <p>
 	 * This method is not thread-safe: if executed concurrently by several threads,
 	 * the connection isn't updated with happens-before semantics.
 	 * </p>
 	 *
-	 * @return The established knowledge base connection to a Jena TDB2 dataset.
+	 * @return The established knowledge base connection to a Jena dataset.
 	 * @throws IllegalStateException If the connection to the dataset couldn't be
 	 *                               established.
 	 */
 	public Connection connect() {
 		if (connection == null) {
+			if (pendingConnection != null) {
+				// Wait for the background connection to finish
+				try {
+					connection = pendingConnection.join();
+				} catch (final CompletionException exc) {
+					throw new IllegalStateException("Couldn't connect to the knowledge base", exc.getCause());
+				} finally {
+					pendingConnection = null;
+				}
+			} else {
+				connection = isInMemory() ? connectInMemory() : connectToTdb2Dataset();
+			}
+		}
+
+		return connection;
+	}
+
+	/**
+	 * Starts loading the knowledge base into memory in the background, if it is
+	 * to be loaded in memory and that was not started yet, so that other
+	 * initialization work can be done meanwhile. {@link #connect()} will wait for
+	 * the load to complete.
+	 * <p>
+	 * This method is not thread-safe.
+	 * </p>
+	 */
+	public void startInMemoryLoad() {
+		if (isInMemory() && connection == null && pendingConnection == null) {
+			pendingConnection = CompletableFuture.supplyAsync(
+				this::connectInMemory,
+				(final Runnable loadTask) -> {
+					final Thread loadThread = new Thread(loadTask, "KB in-memory load thread");
+					loadThread.setDaemon(true);
+					loadThread.start();
+				}
+			);
+		}
+	}
+
+	/**
+	 * Checks whether the knowledge base will be loaded in memory, instead of being
+	 * accessed via the on-disk TDB2 dataset.
+	 *
+	 * @return True if and only if the KB is to be loaded in memory, false
+	 *         otherwise.
+	 */
+	public boolean isInMemory() {
+		return inMemorySetting != null;
+	}
+
+	/**
+	 * Connects to the configured on-disk Jena TDB2 dataset.
+	 *
+	 * @return The established connection.
+	 * @throws IllegalStateException If the connection to the dataset couldn't be
+	 *                               established.
+	 */
+	private Connection connectToTdb2Dataset() {
+		try {
+			LOGGER.info("Connecting to the Jena TDB2 KB...");
+
+			final Dataset dataset = TDB2Factory.connectDataset(directory.toString());
+			final Model model = getKnowledgeBaseModel(dataset);
+
+			LOGGER.info("Connection to the Jena TDB2 KB established");
+
+			if (!Files.exists(getQueryOptimizerStatisticsFile(dataset))) {
+				LOGGER.warn(
+					"The Jena TDB2 KB has no query optimizer statistics, so queries may be slower. " +
+					"Consider generating them with the kb analyze command"
+				);
+			}
+
+			return new Connection(dataset, model);
+		} catch (final Exception exc) {
+			throw new IllegalStateException("Couldn't connect to the knowledge base", exc);
+		}
+	}
+
+	/**
+	 * Copies the configured model of the on-disk Jena TDB2 dataset to an in-memory
+	 * transactional dataset, and connects to the latter. The TDB2 dataset is
+	 * closed afterwards.
+	 *
+	 * @return The established connection.
+	 * @throws IllegalStateException If the connection to the dataset couldn't be
+	 *                               established.
+	 */
+	private Connection connectInMemory() {
+		try {
+			LOGGER.info("Loading the Jena TDB2 KB into memory...");
+
+			final Runtime runtime = Runtime.getRuntime();
+			final long startTime = System.nanoTime();
+			final long usedHeapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+			final Dataset tdb2Dataset = TDB2Factory.connectDataset(directory.toString());
+			final Dataset memoryDataset = DatasetFactory.createTxnMem();
+
 			try {
-				LOGGER.info("Connecting to the Jena TDB2 KB...");
+				Txn.executeRead(tdb2Dataset, () -> {
+					Txn.executeWrite(memoryDataset, () -> {
+						getKnowledgeBaseModel(memoryDataset).add(getKnowledgeBaseModel(tdb2Dataset));
+					});
+				});
+			} finally {
+				tdb2Dataset.close();
+			}
 
-				final Dataset dataset = TDB2Factory.connectDataset(directory.toString());
-				final Model model = baseModelUri != null ?
-					dataset.getNamedModel(baseModelUri.toASCIIString()) : dataset.getDefaultModel();
+			final Model model = getKnowledgeBaseModel(memoryDataset);
+			final long triples = Txn.calculateRead(memoryDataset, model::size);
 
-				connection = new Connection(dataset, model);
+			// Other initialization work may be going on concurrently, so the heap
+			// usage is only a rough estimation
+			LOGGER.info(
+				"Jena TDB2 KB loaded into memory. Triples: {}, load time: {} ms, approximate heap cost: {} MiB",
+				triples, (System.nanoTime() - startTime) / 1_000_000,
+				Math.max(runtime.totalMemory() - runtime.freeMemory() - usedHeapBefore, 0) / 1_048_576
+			);
 
-				LOGGER.info("Connection to the Jena TDB2 KB established");
-			} catch (final Exception exc) {
-				throw new IllegalStateException("Couldn't connect to the knowledge base", exc);
+			return new Connection(memoryDataset, model);
+		} catch (final Exception exc) {
+			throw new IllegalStateException("Couldn't load the knowledge base into memory", exc);
+		}
+	}
+
+	/**
+	 * Computes the statistics that the TDB2 query optimizer uses to choose the
+	 * order in which triple patterns are evaluated, for the configured model, and
+	 * stores them in the TDB2 dataset, replacing any previous statistics. TDB2
+	 * will read them the next time the dataset is opened.
+	 * <p>
+	 * This method is not thread-safe.
+	 * </p>
+	 *
+	 * @return The file where the statistics were written to.
+	 * @throws IOException           If an I/O error occurs while writing the
+	 *                               statistics file.
+	 * @throws IllegalStateException If the connection to the dataset couldn't be
+	 *                               established.
+	 */
+	public Path writeQueryOptimizerStatistics() throws IOException {
+		// In-memory connections don't use the TDB2 dataset, so open it aside
+		final Dataset tdb2Dataset = isInMemory() ?
+			TDB2Factory.connectDataset(directory.toString()) : connect().getDataset();
+
+		try {
+			LOGGER.info("Computing Jena TDB2 KB query optimizer statistics...");
+
+			final Item statistics = Txn.calculateRead(
+				tdb2Dataset, () -> KnowledgeBaseQueryStatistics.gather(getKnowledgeBaseModel(tdb2Dataset).getGraph())
+			);
+
+			final Path statisticsFile = getQueryOptimizerStatisticsFile(tdb2Dataset);
+			final Path temporaryFile = statisticsFile.resolveSibling(statisticsFile.getFileName() + ".tmp");
+
+			try (final OutputStream outputStream = Files.newOutputStream(temporaryFile)) {
+				ItemWriter.write(outputStream, statistics);
+			}
+
+			Files.move(temporaryFile, statisticsFile, StandardCopyOption.REPLACE_EXISTING);
+
+			LOGGER.info("Jena TDB2 KB query optimizer statistics written to {}", statisticsFile);
+
+			return statisticsFile;
+		} finally {
+			if (isInMemory()) {
+				tdb2Dataset.close();
 			}
 		}
+	}
 
-		return connection;
+	/**
+	 * Returns the path of the query optimizer statistics file of a TDB2 dataset.
+	 * The file may not exist. As TDB2 stores each generation of a database in its
+	 * own directory, this path changes after the database is compacted.
+	 *
+	 * @param tdb2Dataset The TDB2 dataset.
+	 * @return The described path.
+	 */
+	private static Path getQueryOptimizerStatisticsFile(final Dataset tdb2Dataset) {
+		return Path.of(
+			TDBInternal.getDatasetGraphTDB(tdb2Dataset).getLocation().getPath(QUERY_OPTIMIZER_STATISTICS_FILE_NAME)
+		);
+	}
+
+	/**
+	 * Returns the model of the dataset that contains the knowledge base, according
+	 * to the configured base model URI.
+	 *
+	 * @param dataset The dataset to get the model from.
+	 * @return The described model.
+	 */
+	private Model getKnowledgeBaseModel(final Dataset dataset) {
+		return baseModelUri != null ?
+			dataset.getNamedModel(baseModelUri.toASCIIString()) : dataset.getDefaultModel();
 	}
 
 	/**
 	 * Initializes the connection to the knowledge base just after the knowledge
-	 * base settings are unmarshalled from the configuration file.
+	 * base settings are unmarshalled from the configuration file, unless the
+	 * knowledge base is to be loaded in memory. Commands that don't respond
+	 * messages don't need that copy, so the load is started by
+	 * {@link #startInMemoryLoad()} or {@link #connect()} instead.
 	 * <p>
 	 * Any exception thrown by this method will abort the unmarshalling process as
 	 * if a parse error occurred.
@@ -116,7 +337,9 @@ public final class KnowledgeBaseConnectionSettings implements AutoCloseable {
 	 */
 	@SuppressWarnings("unused") // Called by JAXB
 	private void afterUnmarshal(final Unmarshaller unmarshaller, final Object parent) {
-		connect();
+		if (!isInMemory()) {
+			connect();
+		}
 	}
 
 	/**
@@ -158,7 +381,16 @@ public final class KnowledgeBaseConnectionSettings implements AutoCloseable {
 	}
 
 	/**
-	 * Represents a connection to a Jena TDB2 dataset containing a knowledge base.
+	 * A helper class to map the empty {@code <inMemory>} element.
+	 *
+	 * @author Alejandro González García
+	 */
+	@XmlRootElement(name = "inMemory")
+	private static final class InMemorySetting {}
+
+	/**
+	 * Represents a connection to a Jena dataset containing a knowledge base, which
+	 * may be either a TDB2 dataset or an in-memory copy of it.
 	 *
 	 * @author Alejandro González García
 	 */
@@ -168,10 +400,56 @@ public final class KnowledgeBaseConnectionSettings implements AutoCloseable {
 		private final Dataset dataset;
 		@Getter
 		private final Model model;
+
+		/**
+		 * Returns the query engine factory that ARQ chooses to run the specified
+		 * query against this dataset.
+		 *
+		 * @param query The query.
+		 * @return The described query engine factory.
+		 * @throws IllegalArgumentException If {@code query} is {@code null}.
+		 */
+		public QueryEngineFactory getQueryEngineFactory(@NonNull final Query query) {
+			return QueryEngineRegistry.findFactory(query, dataset.asDatasetGraph(), ARQ.getContext());
+		}
+
+		/**
+		 * Returns the transformation that the query engine will use to reorder the
+		 * triple patterns of the basic graph patterns of the specified query
+		 * against this dataset, so that the most selective patterns are evaluated
+		 * first.
+		 * <p>
+		 * Only the TDB2 query engine takes the query optimizer statistics into
+		 * account, and ARQ only chooses it for queries against the whole TDB2
+		 * dataset, not against models or graphs extracted from it.
+		 * </p>
+		 *
+		 * @param query The query.
+		 * @return The described transformation.
+		 * @throws IllegalArgumentException If {@code query} is {@code null}.
+		 */
+		public ReorderTransformation getReorderTransformation(@NonNull final Query query) {
+			ReorderTransformation reorderTransformation = null;
+
+			if (getQueryEngineFactory(query) == QueryEngineTDB.getFactory()) {
+				final DatasetGraphTDB datasetGraph = TDBInternal.getDatasetGraphTDB(dataset);
+				reorderTransformation = datasetGraph != null ? datasetGraph.getReorderTransform() : null;
+			}
+
+			// The general purpose query engine uses the fixed transformation
+			return reorderTransformation != null ? reorderTransformation : ReorderLib.fixed();
+		}
 	}
 
 	@Override
 	public void close() throws Exception {
+		if (connection == null && pendingConnection != null) {
+			// Make sure that we close the connection that is being established
+			try {
+				connect();
+			} catch (final IllegalStateException ignored) {}
+		}
+
 		if (connection != null) {
 			Exception thrownException = null;
 
@@ -0,0 +1,158 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.sse.Item;
+import org.apache.jena.sparql.sse.ItemList;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Computes the statistics that the TDB2 query optimizer uses to reorder the
+ * triple patterns of basic graph patterns, in the format of a
+ * {@code stats.opt} file.
+ * <p>
+ * Besides the number of triples of each predicate, which is what TDB2 tools
+ * compute, the average number of triples per distinct subject and object of
+ * each predicate is computed too. This allows the optimizer to know that
+ * patterns like {@code ?t rdf:object <entity>} are very selective, while
+ * patterns like {@code ?t <confidence> ?c} are not.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @see <a href="https://jena.apache.org/documentation/tdb/optimizer.html">TDB
+ *      optimizer documentation</a>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class KnowledgeBaseQueryStatistics {
+	/**
+	 * Computes the query optimizer statistics for the specified graph. The caller
+	 * is responsible for starting a read transaction if needed.
+	 *
+	 * @param graph The graph to compute statistics for.
+	 * @return The statistics, as a SSE item.
+	 * @throws IllegalArgumentException If {@code graph} is {@code null}.
+	 */
+	static Item gather(@NonNull final Graph graph) {
+		final Map<Node, PredicateStatistics> predicateStatistics = new LinkedHashMap<>();
+		long tripleCount = 0;
+
+		final ExtendedIterator<Triple> tripleIter = graph.find(Node.ANY, Node.ANY, Node.ANY);
+		try {
+			while (tripleIter.hasNext()) {
+				final Triple triple = tripleIter.next();
+
+				predicateStatistics.computeIfAbsent(
+					triple.getPredicate(), (final Node predicate) -> new PredicateStatistics()
+				).record(triple);
+
+				++tripleCount;
+			}
+		} finally {
+			tripleIter.close();
+		}
+
+		final Item statistics = Item.createList();
+		final ItemList statisticsList = statistics.getList();
+		statisticsList.add("stats");
+
+		final Item meta = Item.createTagged("meta");
+		Item.addPair(meta.getList(), "timestamp", NodeFactoryExtra.nowAsDateTime());
+		Item.addPair(meta.getList(), "count", NodeFactoryExtra.intToNode(tripleCount));
+		statisticsList.add(meta);
+
+		for (final Map.Entry<Node, PredicateStatistics> entry : predicateStatistics.entrySet()) {
+			final Node predicate = entry.getKey();
+			final PredicateStatistics statisticsForPredicate = entry.getValue();
+
+			// The first matching rule is the one used by the optimizer,
+			// so the patterns must go before the predicate abbreviation
+			statisticsList.add(patternRule(
+				"VAR", predicate, "TERM",
+				averageTriples(statisticsForPredicate.triples, statisticsForPredicate.objects.size())
+			));
+			statisticsList.add(patternRule(
+				"TERM", predicate, "VAR",
+				averageTriples(statisticsForPredicate.triples, statisticsForPredicate.subjects.size())
+			));
+
+			final Item predicateRule = Item.createList();
+			predicateRule.getList().add(Item.createNode(predicate));
+			predicateRule.getList().add(Item.createNode(NodeFactoryExtra.intToNode(statisticsForPredicate.triples)));
+			statisticsList.add(predicateRule);
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * Creates a pattern rule for the statistics file, which associates a triple
+	 * pattern to its expected number of matches.
+	 *
+	 * @param subjectSymbol The symbol that describes the subject of the pattern.
+	 * @param predicate     The predicate of the pattern.
+	 * @param objectSymbol  The symbol that describes the object of the pattern.
+	 * @param matches       The expected number of matches.
+	 * @return The pattern rule.
+	 */
+	private static Item patternRule(
+		final String subjectSymbol, final Node predicate, final String objectSymbol, final long matches
+	) {
+		final Item pattern = Item.createList();
+		pattern.getList().add(Item.createSymbol(subjectSymbol));
+		pattern.getList().add(Item.createNode(predicate));
+		pattern.getList().add(Item.createSymbol(objectSymbol));
+
+		final Item rule = Item.createList();
+		rule.getList().add(pattern);
+		rule.getList().add(Item.createNode(NodeFactoryExtra.intToNode(matches)));
+
+		return rule;
+	}
+
+	/**
+	 * Computes the average number of triples per distinct value, rounded up, so
+	 * that a non-empty pattern never looks free to the optimizer.
+	 *
+	 * @param triples        The number of triples.
+	 * @param distinctValues The number of distinct values.
+	 * @return The described average.
+	 */
+	private static long averageTriples(final long triples, final int distinctValues) {
+		return distinctValues > 0 ? Math.max((triples + distinctValues - 1) / distinctValues, 1) : 1;
+	}
+
+	/**
+	 * Holds the counters of a predicate.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class PredicateStatistics {
+		private final Set<Node> subjects = new HashSet<>();
+		private final Set<Node> objects = new HashSet<>();
+		private long triples = 0;
+
+		/**
+		 * Updates the counters with a triple that has this predicate.
+		 *
+		 * @param triple The triple.
+		 */
+		private void record(final Triple triple) {
+			subjects.add(triple.getSubject());
+			objects.add(triple.getObject());
+			++triples;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Contains the settings that control how consecutive text messages sent by a
+ * user in quick succession are merged, so that they are responded as a single
+ * utterance.
+ *
+ * @author Alejandro González García
+ * @see VacBotSettings
+ */
+@XmlRootElement(name = "messageCoalescing")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString
+public final class MessageCoalescingSettings {
+	/**
+	 * How long to wait for another message of the same user in the same
+	 * conversation before responding, in milliseconds.
+	 */
+	@Getter
+	@XmlElement(name = "window")
+	private long window = 1000;
+
+	/**
+	 * The maximum time the first message of a burst may wait for the following
+	 * ones, in milliseconds.
+	 */
+	@Getter
+	@XmlElement(name = "maximumDelay")
+	private long maximumDelay = 4000;
+}
@@ -0,0 +1,60 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Contains the settings that control how fast responses are sent through the
+ * Telegram API, so that its rate limits are not exceeded.
+ *
+ * @author Alejandro González García
+ * @see TelegramBotMessageDispatcherFactory
+ * @see <a href="https://core.telegram.org/bots/faq#my-bot-is-hitting-limits-how-do-i-avoid-this">Telegram
+ *      bot limits</a>
+ */
+@XmlRootElement(name = "outboundRateLimits")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString
+public final class OutboundRateLimitSettings {
+	/**
+	 * The maximum number of messages sent per second, to any chat.
+	 */
+	@Getter
+	@XmlElement(name = "globalMessagesPerSecond")
+	private int globalMessagesPerSecond = 30;
+
+	/**
+	 * The maximum number of messages sent per second to a private chat.
+	 */
+	@Getter
+	@XmlElement(name = "privateChatMessagesPerSecond")
+	private int privateChatMessagesPerSecond = 1;
+
+	/**
+	 * The maximum number of messages sent per minute to a group chat.
+	 */
+	@Getter
+	@XmlElement(name = "groupChatMessagesPerMinute")
+	private int groupChatMessagesPerMinute = 20;
+
+	/**
+	 * The number of threads that send messages.
+	 */
+	@Getter
+	@XmlElement(name = "senderThreads")
+	private int senderThreads = 4;
+
+	/**
+	 * How many times a message is sent again when Telegram asks to retry later,
+	 * before giving up.
+	 */
+	@Getter
+	@XmlElement(name = "maximumRetries")
+	private int maximumRetries = 3;
+}
@@ -0,0 +1,26 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import jakarta.xml.bind.annotation.XmlEnum;
+import jakarta.xml.bind.annotation.XmlEnumValue;
+
+/**
+ * Represents how the bot responds to the messages it sheds when it is
+ * overloaded, so that it stays responsive.
+ *
+ * @author Alejandro González García
+ */
+@XmlEnum(String.class)
+public enum OverloadAction {
+	/**
+	 * A canned response that tells the user that the bot is busy is sent right
+	 * away.
+	 */
+	@XmlEnumValue("busyResponse") BUSY_RESPONSE,
+	/**
+	 * The response is generated with the document index only, skipping the
+	 * costly natural language analysis needed to query the knowledge base.
+	 */
+	@XmlEnumValue("documentIndexOnly") DOCUMENT_INDEX_ONLY;
+}
@@ -0,0 +1,76 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import es.uvigo.esei.sing.vacbot.responsegen.ResponseDeadlineStatistics;
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Contains the settings that bound the time spent responding to each message.
+ * When the time budget of a message is nearly spent, response generation
+ * degrades to cheaper strategies instead of going on with costly ones.
+ *
+ * @author Alejandro González García
+ * @see BehaviorSettings
+ */
+@XmlRootElement(name = "responseDeadline")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString(exclude = "statistics")
+public final class ResponseDeadlineSettings implements AutoCloseable {
+	/**
+	 * The time budget to respond to a message, in milliseconds, counted from the
+	 * moment it is received. When it is spent, a non-commital response is sent.
+	 */
+	@Getter
+	@XmlElement(name = "budget")
+	private long budget = 5000;
+
+	/**
+	 * The minimum remaining time budget, in milliseconds, to start parsing a
+	 * message or to go on probing the knowledge base. With less time left, the
+	 * cheaper document index is used to respond instead.
+	 */
+	@Getter
+	@XmlElement(name = "reserve")
+	private long reserve = 1000;
+
+	/**
+	 * The maximum time the parser may spend parsing a sentence, in milliseconds,
+	 * before giving up on it.
+	 */
+	@Getter
+	@XmlElement(name = "maximumParseTime")
+	private long maximumParseTime = 2000;
+
+	/**
+	 * The counters of degraded response generation stages.
+	 */
+	private ResponseDeadlineStatistics statistics = null;
+
+	/**
+	 * Creates the response deadline statistics object if necessary, and returns
+	 * it. If it was already created, the same object will be returned in
+	 * subsequent invocations of this method.
+	 *
+	 * @return The response deadline statistics.
+	 */
+	public synchronized ResponseDeadlineStatistics getStatistics() {
+		if (statistics == null) {
+			statistics = new ResponseDeadlineStatistics();
+		}
+
+		return statistics;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (statistics != null) {
+			statistics.close();
+		}
+	}
+}
@@ -0,0 +1,36 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Contains the settings that size the executor of a processing stage.
+ *
+ * @author Alejandro González García
+ * @see VacBotSettings
+ */
+@XmlRootElement(name = "stage")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString
+public final class StageSettings {
+	/**
+	 * The number of threads of the stage. If {@code null}, the number of worker
+	 * threads is used.
+	 */
+	@Getter
+	@XmlElement(name = "threads")
+	private final Integer threads = null;
+
+	/**
+	 * The maximum number of tasks that may wait for a thread of the stage.
+	 */
+	@Getter
+	@XmlElement(name = "queueCapacity")
+	private int queueCapacity = 1024;
+}
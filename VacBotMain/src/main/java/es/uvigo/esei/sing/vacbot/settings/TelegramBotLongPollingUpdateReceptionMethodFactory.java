@@ -4,8 +4,10 @@ package es.uvigo.esei.sing.vacbot.settings;
 
 import es.uvigo.esei.sing.vacbot.frontend.FrontendCommunicationException;
 import es.uvigo.esei.sing.vacbot.frontend.telegrambot.TelegramBotFrontendInterface;
+import jakarta.xml.bind.annotation.XmlElement;
 import jakarta.xml.bind.annotation.XmlRootElement;
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import lombok.ToString;
@@ -20,6 +22,14 @@ import lombok.ToString;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 @ToString
 public final class TelegramBotLongPollingUpdateReceptionMethodFactory implements TelegramBotUpdateReceptionMethodFactory {
+	/**
+	 * How long each request waits for updates to be available, in seconds. The
+	 * default is 50.
+	 */
+	@Getter
+	@XmlElement(name = "timeout")
+	private int timeout = 50;
+
 	@Override
 	public TelegramBotFrontendInterface getFrontendInterface(@NonNull final TelegramBotMessageDispatcherFactory factory) throws FrontendCommunicationException {
 		return new TelegramBotFrontendInterface(this, factory);
@@ -62,11 +62,44 @@ public final class TelegramBotMessageDispatcherFactory implements MessageDispatc
 	private final int maxWebhookConnections = 40;
 
 	/**
-	 * The Telegram API base URL. A sane default value is automatically chosen.
+	 * The Telegram API base URL, which the token is appended to. A sane default
+	 * value is automatically chosen.
 	 */
 	@Getter
 	@XmlElement(name = "telegramBaseUrl")
-	private final String baseUrl = ApiConstants.BASE_URL;
+	private String baseUrl = ApiConstants.BASE_URL;
+
+	/**
+	 * The settings of the buffer that holds received messages until they are
+	 * dispatched.
+	 */
+	@Getter @NonNull
+	@XmlElement(name = "ingressBuffer")
+	private final IngressBufferSettings ingressBufferSettings = IngressBufferSettings.defaultSettings();
+
+	/**
+	 * The settings for sending responses without exceeding the Telegram API rate
+	 * limits. If {@code null}, responses are sent right away, in the thread that
+	 * sends them.
+	 */
+	@Getter
+	@XmlElement(name = "outboundRateLimits")
+	private final OutboundRateLimitSettings outboundRateLimitSettings = null;
+
+	/**
+	 * How long to wait for a response before showing that the bot is typing in
+	 * its chat, in milliseconds. The default is 1000.
+	 */
+	@Getter
+	@XmlElement(name = "typingActionDelay")
+	private long typingActionDelay = 1000;
+
+	/**
+	 * Marks whether Telegram API methods are executed with the HTTP client of the
+	 * JDK. If {@code null}, the HTTP client of the Telegram bot library is used.
+	 */
+	@XmlElement(name = "httpClientTransport")
+	private final HttpClientTransportSetting httpClientTransportSetting = null;
 
 	@Getter @NonNull
 	@XmlElements({
@@ -75,6 +108,18 @@ public final class TelegramBotMessageDispatcherFactory implements MessageDispatc
 	})
 	private final TelegramBotUpdateReceptionMethodFactory updateReceptionMethodFactory = null;
 
+	/**
+	 * Checks whether Telegram API methods will be executed with the HTTP client of
+	 * the JDK, which sends requests asynchronously over a persistent HTTP/2
+	 * connection.
+	 *
+	 * @return True if and only if the JDK HTTP client transport is enabled, false
+	 *         otherwise.
+	 */
+	public boolean isHttpClientTransportEnabled() {
+		return httpClientTransportSetting != null;
+	}
+
 	@Override
 	public TextMessageDispatcher<TelegramTextMessage, Chat> getTextMessageDispatcher(
 		final VacBotSettings settings
@@ -130,4 +175,12 @@ public final class TelegramBotMessageDispatcherFactory implements MessageDispatc
 			return new TokenSetting(v);
 		}
 	}
+
+	/**
+	 * A helper class to map the empty {@code <httpClientTransport>} element.
+	 *
+	 * @author Alejandro González García
+	 */
+	@XmlRootElement(name = "httpClientTransport")
+	private static final class HttpClientTransportSetting {}
 }
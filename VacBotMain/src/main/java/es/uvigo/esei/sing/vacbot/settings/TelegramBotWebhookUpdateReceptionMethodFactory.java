@@ -85,6 +85,41 @@ public final class TelegramBotWebhookUpdateReceptionMethodFactory implements Tel
 	@XmlJavaTypeAdapter(PublicKeyPathAdapter.class)
 	private final Path publicKeyPath = null;
 
+	/**
+	 * How long to keep the HTTPS request of an update open waiting for its
+	 * response, in milliseconds, so that it can be sent in the HTTPS response. If
+	 * {@code null}, responses are always sent with separate requests.
+	 */
+	@Getter
+	@XmlElement(name = "inlineReplyDeadline")
+	private final Long inlineReplyDeadline = null;
+
+	/**
+	 * The settings of the journal where received updates are stored until they
+	 * are handled. If {@code null}, they are only held in memory.
+	 */
+	@Getter
+	@XmlElement(name = "journal")
+	private final UpdateJournalSettings updateJournalSettings = null;
+
+	/**
+	 * Marks whether updates are received by the built-in webhook server. If
+	 * {@code null}, the server of the Telegram bot library is used.
+	 */
+	@XmlElement(name = "builtInServer")
+	private final BuiltInServerSetting builtInServerSetting = null;
+
+	/**
+	 * Checks whether updates will be received by a lightweight built-in webhook
+	 * server, which parses only the update fields that the bot uses.
+	 *
+	 * @return True if and only if the built-in server is enabled, false
+	 *         otherwise.
+	 */
+	public boolean isBuiltInServerEnabled() {
+		return builtInServerSetting != null;
+	}
+
 	@Override
 	public TelegramBotFrontendInterface getFrontendInterface(@NonNull final TelegramBotMessageDispatcherFactory factory) throws FrontendCommunicationException {
 		return new TelegramBotFrontendInterface(this, factory);
@@ -227,4 +262,12 @@ public final class TelegramBotWebhookUpdateReceptionMethodFactory implements Tel
 			return new PublicKeyPathSetting(v.toAbsolutePath().toString());
 		}
 	}
+
+	/**
+	 * A helper class to map the empty {@code <builtInServer>} element.
+	 *
+	 * @author Alejandro González García
+	 */
+	@XmlRootElement(name = "builtInServer")
+	private static final class BuiltInServerSetting {}
 }
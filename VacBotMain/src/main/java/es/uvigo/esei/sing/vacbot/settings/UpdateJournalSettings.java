@@ -0,0 +1,42 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import java.nio.file.Path;
+
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Contains the settings of the journal where the updates received via webhooks
+ * are stored until they are handled, so that they are not lost if the bot
+ * stops, and they don't take heap space while they wait.
+ *
+ * @author Alejandro González García
+ * @see TelegramBotWebhookUpdateReceptionMethodFactory
+ */
+@XmlRootElement(name = "journal")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString
+public final class UpdateJournalSettings {
+	/**
+	 * The directory where the journal files are stored.
+	 */
+	@Getter @NonNull
+	@XmlElement(name = "directory", required = true)
+	@XmlJavaTypeAdapter(CommonJAXBAdapters.DirectoryAdapter.class)
+	private final Path directory = null;
+
+	/**
+	 * The size of each journal segment file, in MiB.
+	 */
+	@Getter
+	@XmlElement(name = "segmentSize")
+	private int segmentSize = 64;
+}
@@ -3,6 +3,7 @@
 package es.uvigo.esei.sing.vacbot.settings;
 
 import es.uvigo.esei.sing.vacbot.frontend.TextMessage;
+import es.uvigo.esei.sing.vacbot.util.StageExecutor;
 import jakarta.xml.bind.annotation.XmlElement;
 import jakarta.xml.bind.annotation.XmlElements;
 import jakarta.xml.bind.annotation.XmlRootElement;
@@ -23,16 +24,75 @@ import lombok.ToString;
  */
 @XmlRootElement(name = "settings")
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
-@ToString
+@ToString(exclude = { "storageStageExecutor", "sendStageExecutor" })
 public final class VacBotSettings implements AutoCloseable {
 	/**
 	 * The number of threads that will be processing responses to incoming text
-	 * messages.
+	 * messages. In virtual thread dispatch mode, this is the number of messages
+	 * that may run natural language processing stages concurrently.
 	 */
 	@Getter
 	@XmlElement(name = "workerThreads")
 	private final int workerThreads = Runtime.getRuntime().availableProcessors();
 
+	/**
+	 * How the threads that process responses to incoming text messages are
+	 * managed.
+	 */
+	@Getter @NonNull
+	@XmlElement(name = "dispatchMode")
+	private final DispatchMode dispatchMode = DispatchMode.THREAD_POOL;
+
+	/**
+	 * The settings for merging consecutive messages sent by a user in quick
+	 * succession. If {@code null}, every message is responded on its own.
+	 */
+	@Getter
+	@XmlElement(name = "messageCoalescing")
+	private final MessageCoalescingSettings messageCoalescingSettings = null;
+
+	/**
+	 * The settings for sharing the worker threads fairly among conversations.
+	 * If {@code null}, incoming text messages are handed to the worker threads
+	 * in arrival order.
+	 */
+	@Getter
+	@XmlElement(name = "fairScheduling")
+	private final FairSchedulingSettings fairSchedulingSettings = null;
+
+	/**
+	 * The settings for shedding incoming text messages when the bot is
+	 * overloaded. If {@code null}, every message is responded normally, no
+	 * matter how long it waited.
+	 */
+	@Getter
+	@XmlElement(name = "admissionControl")
+	private final AdmissionControlSettings admissionControlSettings = null;
+
+	/**
+	 * The settings for adapting how many responses are generated concurrently.
+	 * If {@code null}, that number is only bounded by the worker threads.
+	 */
+	@Getter
+	@XmlElement(name = "adaptiveConcurrency")
+	private final AdaptiveConcurrencySettings adaptiveConcurrencySettings = null;
+
+	/**
+	 * The settings for the stage that accesses the document database, document
+	 * index and knowledge base. If {@code null}, default settings are used.
+	 */
+	@Getter
+	@XmlElement(name = "storageStage")
+	private final StageSettings storageStageSettings = null;
+
+	/**
+	 * The settings for the stage that sends responses through the front-end
+	 * interface. If {@code null}, default settings are used.
+	 */
+	@Getter
+	@XmlElement(name = "sendStage")
+	private final StageSettings sendStageSettings = null;
+
 	/**
 	 * The parameters to pass to NLP algorithms.
 	 */
@@ -80,10 +140,70 @@ public final class VacBotSettings implements AutoCloseable {
 	})
 	private final MessageDispatcherFactory<? extends TextMessage, ? extends Object> messageDispatcherFactory = null;
 
+	private StageExecutor storageStageExecutor = null;
+	private StageExecutor sendStageExecutor = null;
+
+	/**
+	 * Returns the executor of the stage that accesses the document database,
+	 * document index and knowledge base, creating it if necessary.
+	 *
+	 * @return The storage stage executor.
+	 */
+	public synchronized StageExecutor getStorageStageExecutor() {
+		if (storageStageExecutor == null) {
+			storageStageExecutor = createStageExecutor("storage", storageStageSettings);
+		}
+
+		return storageStageExecutor;
+	}
+
+	/**
+	 * Returns the executor of the stage that sends responses through the
+	 * front-end interface, creating it if necessary.
+	 *
+	 * @return The send stage executor.
+	 */
+	public synchronized StageExecutor getSendStageExecutor() {
+		if (sendStageExecutor == null) {
+			sendStageExecutor = createStageExecutor("send", sendStageSettings);
+		}
+
+		return sendStageExecutor;
+	}
+
+	/**
+	 * Creates a stage executor with the specified settings.
+	 *
+	 * @param name          The name of the stage.
+	 * @param stageSettings The settings of the stage. It may be {@code null} to
+	 *                      use the default settings.
+	 * @return The created stage executor.
+	 */
+	private StageExecutor createStageExecutor(final String name, final StageSettings stageSettings) {
+		final Integer threads = stageSettings != null ? stageSettings.getThreads() : null;
+
+		return new StageExecutor(
+			name,
+			threads != null ? threads : workerThreads,
+			stageSettings != null ? stageSettings.getQueueCapacity() : 1024
+		);
+	}
+
 	@Override
 	public void close() throws Exception {
 		Exception thrownException = null;
 
+		// Complete pending stage tasks before releasing the resources they use
+		synchronized (this) {
+			if (sendStageExecutor != null) {
+				sendStageExecutor.close();
+			}
+
+			if (storageStageExecutor != null) {
+				storageStageExecutor.close();
+			}
+		}
+
 		if (documentDatabaseSettings != null) {
 			try {
 				documentDatabaseSettings.close();
@@ -114,6 +234,17 @@ public final class VacBotSettings implements AutoCloseable {
 			}
 		}
 
+		if (behaviorSettings != null) {
+			try {
+				behaviorSettings.close();
+			} catch (final Exception exc) {
+				if (thrownException != null) {
+					exc.addSuppressed(thrownException);
+				}
+				thrownException = exc;
+			}
+		}
+
 		if (thrownException != null) {
 			throw thrownException;
 		}
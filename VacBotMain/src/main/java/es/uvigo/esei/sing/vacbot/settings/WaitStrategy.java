@@ -0,0 +1,39 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.settings;
+
+import jakarta.xml.bind.annotation.XmlEnum;
+import jakarta.xml.bind.annotation.XmlEnumValue;
+
+/**
+ * Represents how a thread waits for a ring buffer to have elements to take, or
+ * free slots to put elements in, trading CPU usage for latency.
+ *
+ * @author Alejandro González García
+ */
+@XmlEnum(String.class)
+public enum WaitStrategy {
+	/**
+	 * The thread spins for a short while, and then blocks until it is signaled.
+	 * This uses no CPU while waiting, at the cost of some wake up latency.
+	 */
+	@XmlEnumValue("blocking") BLOCKING,
+	/**
+	 * The thread spins for a short while, then yields, and then sleeps for short
+	 * periods. This uses little CPU while waiting, and doesn't need producers to
+	 * signal consumers.
+	 */
+	@XmlEnumValue("sleeping") SLEEPING,
+	/**
+	 * The thread spins for a short while, and then yields to other threads. This
+	 * has low latency, but uses a CPU core while waiting if there are no other
+	 * threads to run.
+	 */
+	@XmlEnumValue("yielding") YIELDING,
+	/**
+	 * The thread spins until it can continue. This has the lowest latency, but
+	 * always uses a CPU core while waiting, so it is only appropriate when there
+	 * are spare cores.
+	 */
+	@XmlEnumValue("busySpin") BUSY_SPIN;
+}
@@ -0,0 +1,437 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * An append-only journal of records, stored in memory-mapped segment files
+ * within a directory, that is read back in order by a single reader.
+ * <p>
+ * Each record gets a sequence number, which increases by one with every
+ * record. Records remain in the journal until a checkpoint tells that every
+ * record up to some sequence number was handled. Then, the segments that only
+ * contain handled records are deleted. When a journal is opened, the records
+ * after the checkpoint are read again, so no record is lost when the process
+ * stops or crashes before handling them.
+ * </p>
+ * <p>
+ * Writes to the mapped segments reach the page cache of the operating system
+ * right away, so they survive crashes of the process. They are only forced to
+ * the storage device when a segment is full and when the journal is closed,
+ * so they might not survive crashes of the operating system.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+public final class MappedJournal implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedJournal.class);
+
+	private static final String SEGMENT_FILE_SUFFIX = ".journal";
+	private static final String CHECKPOINT_FILE_NAME = "checkpoint";
+	/**
+	 * The size of the header of each record: its payload length, the CRC-32 of
+	 * its payload and its sequence number. A zero length marks the end of the
+	 * records of a segment.
+	 */
+	private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+
+	private final Path directory;
+	private final int segmentSize;
+	private final MappedByteBuffer checkpointBuffer;
+	/**
+	 * The segments of this journal, from oldest to newest. The last one is the
+	 * segment records are appended to.
+	 */
+	private final Deque<Segment> segments = new ArrayDeque<>();
+	private long nextSequence;
+	private Segment readSegment;
+	private int readPosition;
+	private long nextReadSequence;
+	private boolean closed = false;
+
+	/**
+	 * Opens the journal stored in a directory, creating it if it is empty. The
+	 * records after the last checkpoint will be read first.
+	 *
+	 * @param directory   The directory where the journal files are stored.
+	 * @param segmentSize The size of each segment file, in bytes.
+	 * @throws IllegalArgumentException If {@code directory} is {@code null}, or
+	 *                                  {@code segmentSize} is too small.
+	 * @throws IOException              If an I/O error occurs.
+	 */
+	public MappedJournal(@NonNull final Path directory, final int segmentSize) throws IOException {
+		if (segmentSize <= RECORD_HEADER_SIZE * 2) {
+			throw new IllegalArgumentException("The segment size is too small");
+		}
+
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+
+		try (final FileChannel checkpointChannel = FileChannel.open(
+			directory.resolve(CHECKPOINT_FILE_NAME),
+			StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+		)) {
+			this.checkpointBuffer = checkpointChannel.map(MapMode.READ_WRITE, 0, Long.BYTES);
+		}
+
+		final long checkpoint = getCheckpoint();
+		long lastSequence = checkpoint;
+
+		for (final Path segmentPath : listSegmentFiles()) {
+			final Segment segment = new Segment(segmentPath);
+			segments.addLast(segment);
+
+			if (segment.lastSequence != null) {
+				lastSequence = Math.max(lastSequence, segment.lastSequence);
+			}
+		}
+
+		if (segments.isEmpty()) {
+			segments.addLast(new Segment(0));
+		}
+
+		this.nextSequence = lastSequence + 1;
+		this.readSegment = segments.getFirst();
+		this.readPosition = 0;
+		this.nextReadSequence = checkpoint + 1;
+
+		deleteHandledSegments(checkpoint);
+
+		LOGGER.info(
+			"Journal opened with {} segments and {} unhandled records", segments.size(), nextSequence - checkpoint - 1
+		);
+	}
+
+	/**
+	 * Appends a record to this journal, starting a new segment if the current one
+	 * is full.
+	 *
+	 * @param payload The payload of the record.
+	 * @return The sequence number of the appended record.
+	 * @throws IllegalArgumentException If {@code payload} is {@code null}, or too
+	 *                                  big to fit in a segment.
+	 * @throws IOException              If an I/O error occurs, or this journal was
+	 *                                  closed.
+	 */
+	public synchronized long append(@NonNull final byte[] payload) throws IOException {
+		if (closed) {
+			throw new IOException("The journal is closed");
+		}
+
+		// Leave room for the end mark
+		if (payload.length > segmentSize - RECORD_HEADER_SIZE * 2) {
+			throw new IllegalArgumentException("The record doesn't fit in a segment");
+		}
+
+		Segment segment = segments.getLast();
+		if (segment.writePosition + RECORD_HEADER_SIZE * 2 + payload.length > segment.buffer.capacity()) {
+			// The zeroed rest of the segment is the end mark
+			segment.buffer.force();
+
+			segment = new Segment(segment.index + 1);
+			segments.addLast(segment);
+		}
+
+		final CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		final long sequence = nextSequence++;
+		final int position = segment.writePosition;
+
+		// Write the length last, so a torn record is never taken as complete
+		segment.buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+		segment.buffer.putLong(position + Integer.BYTES * 2, sequence);
+		segment.buffer.duplicate().position(position + RECORD_HEADER_SIZE).put(payload);
+		segment.buffer.putInt(position, payload.length);
+
+		segment.writePosition += RECORD_HEADER_SIZE + payload.length;
+		segment.lastSequence = sequence;
+
+		notifyAll();
+
+		return sequence;
+	}
+
+	/**
+	 * Takes the next record of this journal, waiting for one to be appended if
+	 * every record was taken already. This method is meant to be called by a
+	 * single reader.
+	 *
+	 * @return The next record.
+	 * @throws InterruptedException If the calling thread was interrupted while
+	 *                              waiting, or this journal was closed.
+	 */
+	public synchronized Record take() throws InterruptedException {
+		while (true) {
+			if (closed) {
+				throw new InterruptedException("The journal is closed");
+			}
+
+			if (readPosition < readSegment.writePosition) {
+				final int length = readSegment.buffer.getInt(readPosition);
+				final long sequence = readSegment.buffer.getLong(readPosition + Integer.BYTES * 2);
+				final byte[] payload = new byte[length];
+
+				readSegment.buffer.duplicate().position(readPosition + RECORD_HEADER_SIZE).get(payload);
+				readPosition += RECORD_HEADER_SIZE + length;
+
+				// Skip the handled records that are replayed after opening
+				if (sequence >= nextReadSequence) {
+					nextReadSequence = sequence + 1;
+					return new Record(sequence, payload);
+				}
+			} else if (readSegment != segments.getLast()) {
+				readSegment = nextSegment(readSegment);
+				readPosition = 0;
+			} else {
+				wait();
+			}
+		}
+	}
+
+	/**
+	 * Records that every record up to the specified sequence number was handled,
+	 * so it won't be read again when this journal is opened, and deletes the
+	 * segments that are no longer needed.
+	 *
+	 * @param sequence The sequence number of the last handled record. It is
+	 *                 ignored if it is lower than the current checkpoint.
+	 */
+	public synchronized void checkpoint(final long sequence) {
+		if (closed || sequence <= getCheckpoint()) {
+			return;
+		}
+
+		checkpointBuffer.putLong(0, sequence);
+		deleteHandledSegments(sequence);
+	}
+
+	/**
+	 * Returns the sequence number of the last handled record, as recorded by the
+	 * last checkpoint.
+	 *
+	 * @return The described sequence number. It is zero if no checkpoint was made.
+	 */
+	public synchronized long getCheckpoint() {
+		return checkpointBuffer.getLong(0);
+	}
+
+	/**
+	 * Deletes the segments whose records were all handled, except the segment
+	 * records are appended to and the segment being read.
+	 *
+	 * @param checkpoint The sequence number of the last handled record.
+	 */
+	private void deleteHandledSegments(final long checkpoint) {
+		final Iterator<Segment> segmentIterator = segments.iterator();
+
+		while (segmentIterator.hasNext()) {
+			final Segment segment = segmentIterator.next();
+
+			if (
+				segment == segments.getLast() || segment == readSegment ||
+				(segment.lastSequence != null && segment.lastSequence > checkpoint)
+			) {
+				break;
+			}
+
+			try {
+				Files.deleteIfExists(segment.path);
+				segmentIterator.remove();
+
+				LOGGER.debug("Deleted journal segment {}", segment.path);
+			} catch (final IOException exc) {
+				LOGGER.warn("Couldn't delete the journal segment {}", segment.path, exc);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the segment that follows the specified one.
+	 *
+	 * @param segment The segment, which is not the last one.
+	 * @return The segment after it.
+	 */
+	private Segment nextSegment(final Segment segment) {
+		final Iterator<Segment> segmentIterator = segments.iterator();
+
+		while (segmentIterator.next() != segment) {
+			// Keep looking
+		}
+
+		return segmentIterator.next();
+	}
+
+	/**
+	 * Lists the segment files in the directory of this journal, from oldest to
+	 * newest.
+	 *
+	 * @return The described list.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private List<Path> listSegmentFiles() throws IOException {
+		final List<Path> segmentPaths = new ArrayList<>();
+
+		try (final DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, "*" + SEGMENT_FILE_SUFFIX)) {
+			for (final Path segmentPath : directoryStream) {
+				segmentPaths.add(segmentPath);
+			}
+		}
+
+		// The file names are zero-padded indexes
+		segmentPaths.sort(null);
+
+		return segmentPaths;
+	}
+
+	/**
+	 * Forces the pending writes to the storage device and stops accepting and
+	 * returning records. The reader, if waiting, is woken up.
+	 */
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+
+			segments.getLast().buffer.force();
+			checkpointBuffer.force();
+
+			notifyAll();
+		}
+	}
+
+	/**
+	 * A record read from the journal.
+	 *
+	 * @author Alejandro González García
+	 */
+	public static final class Record {
+		@Getter
+		private final long sequence;
+		private final byte[] payload;
+
+		private Record(final long sequence, final byte[] payload) {
+			this.sequence = sequence;
+			this.payload = payload;
+		}
+
+		/**
+		 * Returns the payload of this record.
+		 *
+		 * @return The payload. It must not be modified.
+		 */
+		public byte[] getPayload() {
+			return payload;
+		}
+	}
+
+	/**
+	 * A segment file of the journal, mapped to memory.
+	 *
+	 * @author Alejandro González García
+	 */
+	private final class Segment {
+		private final long index;
+		private final Path path;
+		private final MappedByteBuffer buffer;
+		private int writePosition = 0;
+		/**
+		 * The sequence number of the last record in this segment, or {@code null}
+		 * if it has no records.
+		 */
+		private Long lastSequence = null;
+
+		/**
+		 * Creates a new, empty segment file.
+		 *
+		 * @param index The index of the segment.
+		 * @throws IOException If an I/O error occurs.
+		 */
+		private Segment(final long index) throws IOException {
+			this.index = index;
+			this.path = directory.resolve(String.format("%020d%s", index, SEGMENT_FILE_SUFFIX));
+
+			try (final FileChannel channel = FileChannel.open(
+				path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE
+			)) {
+				this.buffer = channel.map(MapMode.READ_WRITE, 0, segmentSize);
+			}
+		}
+
+		/**
+		 * Opens an existing segment file, finding its valid records. Everything
+		 * after a torn or corrupt record is ignored, and will be overwritten if
+		 * the segment is the last one.
+		 *
+		 * @param path The path of the segment file.
+		 * @throws IOException If an I/O error occurs, or the file name is not
+		 *                     valid.
+		 */
+		private Segment(final Path path) throws IOException {
+			final String fileName = path.getFileName().toString();
+
+			try {
+				this.index = Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+			} catch (final NumberFormatException exc) {
+				throw new IOException("Unexpected file in the journal directory: " + path, exc);
+			}
+
+			this.path = path;
+
+			try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				// Segments created with another size are read with their own
+				this.buffer = channel.map(MapMode.READ_WRITE, 0, channel.size());
+			}
+
+			final CRC32 crc = new CRC32();
+			while (writePosition + RECORD_HEADER_SIZE <= buffer.capacity()) {
+				final int length = buffer.getInt(writePosition);
+
+				if (length <= 0 || writePosition + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+					break;
+				}
+
+				final byte[] payload = new byte[length];
+				buffer.duplicate().position(writePosition + RECORD_HEADER_SIZE).get(payload);
+
+				crc.reset();
+				crc.update(payload);
+
+				if ((int) crc.getValue() != buffer.getInt(writePosition + Integer.BYTES)) {
+					LOGGER.warn("Ignoring a corrupt record and the following ones in the journal segment {}", path);
+					break;
+				}
+
+				lastSequence = buffer.getLong(writePosition + Integer.BYTES * 2);
+				writePosition += RECORD_HEADER_SIZE + length;
+			}
+
+			// Clear what follows the last valid record, so the end mark is there
+			for (int i = writePosition; i < Math.min(writePosition + RECORD_HEADER_SIZE, buffer.capacity()); ++i) {
+				buffer.put(i, (byte) 0);
+			}
+		}
+	}
+}
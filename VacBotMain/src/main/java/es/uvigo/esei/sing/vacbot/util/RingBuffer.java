@@ -0,0 +1,247 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import es.uvigo.esei.sing.vacbot.settings.WaitStrategy;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A bounded, lock-free queue backed by a preallocated ring of slots, that any
+ * number of threads may put elements in and take elements from.
+ * <p>
+ * Like in the LMAX Disruptor, producers and consumers claim slots by advancing
+ * their own sequence counter, and every slot has a sequence number that tells
+ * whether it is ready to be written or read for a given lap around the ring.
+ * Therefore, putting and taking elements doesn't acquire any lock, unless the
+ * thread has to wait with the {@link WaitStrategy#BLOCKING} wait strategy.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @param <E> The type of the elements.
+ * @implNote The implementation of this class is thread-safe.
+ */
+public final class RingBuffer<E> {
+	/**
+	 * How many times a waiting thread spins before yielding, sleeping or
+	 * blocking, depending on the wait strategy.
+	 */
+	private static final int SPIN_TRIES = 100;
+	/**
+	 * How many times a waiting thread yields before sleeping, with the
+	 * {@link WaitStrategy#SLEEPING} wait strategy.
+	 */
+	private static final int YIELD_TRIES = 100;
+	private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	/**
+	 * The number of slots of this buffer, which is a power of two.
+	 */
+	@Getter
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	/**
+	 * The sequence number of each slot. A slot may be written by the producer
+	 * that claimed the sequence equal to it, and read by the consumer that
+	 * claimed the sequence that is one less than it.
+	 */
+	private final AtomicLongArray slotSequences;
+	private final AtomicLong producerSequence = new AtomicLong();
+	private final AtomicLong consumerSequence = new AtomicLong();
+	private final WaitStrategy waitStrategy;
+	private final ReentrantLock waitLock = new ReentrantLock();
+	private final Condition slotReleased = waitLock.newCondition();
+	/**
+	 * The number of threads blocked on {@link #slotReleased}, so that slots are
+	 * only signaled when somebody waits for them.
+	 */
+	private volatile int blockedThreads = 0;
+
+	/**
+	 * Creates a new, empty ring buffer.
+	 *
+	 * @param capacity     The minimum number of elements that the buffer may
+	 *                     hold. It is rounded up to a power of two.
+	 * @param waitStrategy How threads wait when the buffer is full or empty.
+	 * @throws IllegalArgumentException If {@code capacity} is not positive or
+	 *                                  too big, or {@code waitStrategy} is
+	 *                                  {@code null}.
+	 */
+	public RingBuffer(final int capacity, @NonNull final WaitStrategy waitStrategy) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("The capacity must be positive and at most 2^30");
+		}
+
+		this.capacity = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+		this.mask = this.capacity - 1;
+		this.elements = new AtomicReferenceArray<>(this.capacity);
+		this.slotSequences = new AtomicLongArray(this.capacity);
+		this.waitStrategy = waitStrategy;
+
+		for (int i = 0; i < this.capacity; ++i) {
+			slotSequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Puts an element in this buffer, waiting for a free slot if it is full.
+	 *
+	 * @param element The element to put.
+	 * @throws IllegalArgumentException If {@code element} is {@code null}.
+	 * @throws InterruptedException     If the calling thread was interrupted while
+	 *                                  waiting.
+	 */
+	public void put(@NonNull final E element) throws InterruptedException {
+		int waitTries = 0;
+
+		while (true) {
+			final long sequence = producerSequence.get();
+			final int slot = (int) sequence & mask;
+			final long slotSequence = slotSequences.get(slot);
+
+			if (slotSequence == sequence && producerSequence.compareAndSet(sequence, sequence + 1)) {
+				elements.lazySet(slot, element);
+				// Publish the element to consumers
+				slotSequences.set(slot, sequence + 1);
+				signalWaiters();
+
+				return;
+			} else if (slotSequence < sequence) {
+				// The consumer of the previous lap didn't take the element yet
+				waitTries = await(waitTries, () -> slotSequences.get(slot) < sequence);
+			}
+			// Otherwise, another producer claimed the sequence, so try again
+		}
+	}
+
+	/**
+	 * Takes the oldest element of this buffer, waiting for one to be put if it is
+	 * empty.
+	 *
+	 * @return The taken element. It is never {@code null}.
+	 * @throws InterruptedException If the calling thread was interrupted while
+	 *                              waiting.
+	 */
+	public E take() throws InterruptedException {
+		int waitTries = 0;
+
+		while (true) {
+			final long sequence = consumerSequence.get();
+			final int slot = (int) sequence & mask;
+			final long slotSequence = slotSequences.get(slot);
+
+			if (slotSequence == sequence + 1 && consumerSequence.compareAndSet(sequence, sequence + 1)) {
+				final E element = elements.get(slot);
+				// Do not hold on to the element while the slot is free
+				elements.lazySet(slot, null);
+				// Release the slot to the producer of the next lap
+				slotSequences.set(slot, sequence + capacity);
+				signalWaiters();
+
+				return element;
+			} else if (slotSequence < sequence + 1) {
+				// No producer published an element for this sequence yet
+				waitTries = await(waitTries, () -> slotSequences.get(slot) < sequence + 1);
+			}
+			// Otherwise, another consumer claimed the sequence, so try again
+		}
+	}
+
+	/**
+	 * Returns the number of elements in this buffer. The returned value is only an
+	 * estimate when other threads put or take elements concurrently.
+	 *
+	 * @return The described number of elements, between zero and the capacity.
+	 */
+	public int size() {
+		// Read the consumer sequence first, so that the difference is not negative
+		// if both advance meanwhile
+		final long consumed = consumerSequence.get();
+		final long produced = producerSequence.get();
+
+		return (int) Math.min(Math.max(produced - consumed, 0), capacity);
+	}
+
+	/**
+	 * Waits once according to the wait strategy of this buffer.
+	 *
+	 * @param waitTries         How many times the calling thread waited for the
+	 *                          same condition before.
+	 * @param stillWaitingCheck Checks whether the calling thread still has to
+	 *                          wait, before blocking.
+	 * @return The new number of times the calling thread waited.
+	 * @throws InterruptedException If the calling thread was interrupted.
+	 */
+	private int await(final int waitTries, final WaitCondition stillWaitingCheck) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		if (waitStrategy == WaitStrategy.BUSY_SPIN || waitTries < SPIN_TRIES) {
+			Thread.onSpinWait();
+		} else if (
+			waitStrategy == WaitStrategy.YIELDING ||
+			(waitStrategy == WaitStrategy.SLEEPING && waitTries < SPIN_TRIES + YIELD_TRIES)
+		) {
+			Thread.yield();
+		} else if (waitStrategy == WaitStrategy.SLEEPING) {
+			LockSupport.parkNanos(this, SLEEP_NANOS);
+		} else {
+			waitLock.lockInterruptibly();
+			try {
+				// Announce that we are going to block before checking again, so
+				// that a thread that releases a slot after the check signals us
+				++blockedThreads;
+				try {
+					if (stillWaitingCheck.isTrue()) {
+						slotReleased.await();
+					}
+				} finally {
+					--blockedThreads;
+				}
+			} finally {
+				waitLock.unlock();
+			}
+		}
+
+		return waitTries + 1;
+	}
+
+	/**
+	 * Wakes up the threads that are blocked waiting for a slot, if any.
+	 */
+	private void signalWaiters() {
+		if (blockedThreads > 0) {
+			waitLock.lock();
+			try {
+				slotReleased.signalAll();
+			} finally {
+				waitLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a thread still has to wait for a slot.
+	 *
+	 * @author Alejandro González García
+	 */
+	@FunctionalInterface
+	private interface WaitCondition {
+		/**
+		 * Checks whether the calling thread still has to wait.
+		 *
+		 * @return True if the calling thread still has to wait, false otherwise.
+		 */
+		boolean isTrue();
+	}
+}
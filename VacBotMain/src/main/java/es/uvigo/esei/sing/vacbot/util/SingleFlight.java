@@ -0,0 +1,70 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import lombok.NonNull;
+
+/**
+ * Deduplicates concurrent asynchronous computations with the same key: while a
+ * computation for a key is in flight, requests for the same key share its
+ * result instead of starting another computation. Once the computation
+ * completes, the next request for its key starts a new one, so results are
+ * never cached.
+ *
+ * @author Alejandro González García
+ * @param <K> The type of the keys that identify computations. It must have
+ *            proper {@link Object#equals(Object)} and {@link Object#hashCode()}
+ *            implementations.
+ * @param <V> The type of the results of the computations.
+ * @implNote The implementation of this class is thread-safe.
+ */
+public final class SingleFlight<K, V> {
+	private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the result of the in-flight computation for the specified key, or
+	 * starts a new computation for it if there is none.
+	 *
+	 * @param key         The key of the computation.
+	 * @param computation The computation to start if no computation with the same
+	 *                    key is in flight. It is run in the calling thread, and
+	 *                    returns a completion stage for its result.
+	 * @return A completion stage that completes with the result of the
+	 *         computation. Each caller gets a different stage, so callers can't
+	 *         interfere with each other by completing it.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	public CompletionStage<V> execute(
+		@NonNull final K key, @NonNull final Supplier<? extends CompletionStage<V>> computation
+	) {
+		final CompletableFuture<V> newFlight = new CompletableFuture<>();
+		final CompletableFuture<V> inFlight = flights.putIfAbsent(key, newFlight);
+
+		if (inFlight != null) {
+			return inFlight.copy();
+		}
+
+		try {
+			computation.get().whenComplete((final V result, final Throwable exc) -> {
+				flights.remove(key, newFlight);
+
+				if (exc != null) {
+					newFlight.completeExceptionally(exc);
+				} else {
+					newFlight.complete(result);
+				}
+			});
+		} catch (final RuntimeException exc) {
+			flights.remove(key, newFlight);
+			newFlight.completeExceptionally(exc);
+		}
+
+		return newFlight.copy();
+	}
+}
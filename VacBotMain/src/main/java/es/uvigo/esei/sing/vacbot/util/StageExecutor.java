@@ -0,0 +1,167 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A fixed size pool of threads, with a bounded task queue, that runs the tasks
+ * of a processing stage that depends on a particular resource. Stages act as
+ * bulkheads: when a resource is slow, only its stage saturates, and the tasks
+ * submitted to it are rejected right away, instead of taking threads away
+ * from the other stages.
+ * <p>
+ * Each stage is registered in the platform MBean server while it is running,
+ * so its saturation can be monitored.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+public final class StageExecutor implements Executor, StageExecutorMXBean, AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(StageExecutor.class);
+
+	/**
+	 * The name of this stage.
+	 */
+	@Getter
+	private final String name;
+	private final ThreadPoolExecutor threadPoolExecutor;
+	private final LongAdder rejectedTaskCount = new LongAdder();
+	private ObjectName objectName = null;
+
+	/**
+	 * Creates and starts a new stage executor.
+	 *
+	 * @param name          The name of the stage, used to name its threads and
+	 *                      management bean.
+	 * @param threads       The number of threads of the stage.
+	 * @param queueCapacity The maximum number of tasks that may wait for a thread
+	 *                      of the stage.
+	 * @throws IllegalArgumentException If {@code name} is {@code null}, or some
+	 *                                  number is not positive.
+	 */
+	public StageExecutor(@NonNull final String name, final int threads, final int queueCapacity) {
+		if (threads < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException("The number of threads and queue capacity must be positive");
+		}
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+
+		this.name = name;
+		this.threadPoolExecutor = new ThreadPoolExecutor(
+			threads, threads, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+			(final Runnable r) -> {
+				final Thread thread = new Thread(r, name + " stage thread " + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+
+				return thread;
+			},
+			(final Runnable r, final ThreadPoolExecutor e) -> {
+				rejectedTaskCount.increment();
+
+				throw new RejectedExecutionException("The " + name + " stage is saturated or shut down");
+			}
+		);
+
+		try {
+			final ObjectName stageObjectName = new ObjectName("es.uvigo.esei.sing.vacbot:type=Stage,name=" + name);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, stageObjectName);
+			objectName = stageObjectName;
+		} catch (final JMException exc) {
+			LOGGER.warn("Couldn't register the management bean of the {} stage", name, exc);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws RejectedExecutionException If the stage is saturated or was shut
+	 *                                    down.
+	 */
+	@Override
+	public void execute(@NonNull final Runnable task) {
+		threadPoolExecutor.execute(task);
+	}
+
+	@Override
+	public int getThreadCount() {
+		return threadPoolExecutor.getPoolSize();
+	}
+
+	@Override
+	public int getActiveThreadCount() {
+		return threadPoolExecutor.getActiveCount();
+	}
+
+	@Override
+	public int getQueuedTaskCount() {
+		return threadPoolExecutor.getQueue().size();
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return threadPoolExecutor.getQueue().size() + threadPoolExecutor.getQueue().remainingCapacity();
+	}
+
+	@Override
+	public double getSaturation() {
+		return (double) (getActiveThreadCount() + getQueuedTaskCount()) /
+			(threadPoolExecutor.getMaximumPoolSize() + getQueueCapacity());
+	}
+
+	@Override
+	public long getRejectedTaskCount() {
+		return rejectedTaskCount.sum();
+	}
+
+	@Override
+	public long getCompletedTaskCount() {
+		return threadPoolExecutor.getCompletedTaskCount();
+	}
+
+	/**
+	 * Stops accepting new tasks, and waits for the already submitted tasks to
+	 * complete, in a best-effort manner.
+	 */
+	@Override
+	public void close() {
+		threadPoolExecutor.shutdown();
+
+		try {
+			if (!threadPoolExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+				LOGGER.warn("The {} stage didn't complete its tasks in a reasonable time. Aborting them", name);
+				threadPoolExecutor.shutdownNow();
+			}
+		} catch (final InterruptedException exc) {
+			threadPoolExecutor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (final JMException exc) {
+				LOGGER.debug("Couldn't unregister the management bean of the {} stage", name, exc);
+			}
+
+			objectName = null;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.util;
+
+/**
+ * The management interface of a stage executor, which exposes how saturated
+ * the stage is.
+ *
+ * @author Alejandro González García
+ */
+public interface StageExecutorMXBean {
+	/**
+	 * Returns the number of threads of the stage.
+	 *
+	 * @return The described number of threads.
+	 */
+	public int getThreadCount();
+
+	/**
+	 * Returns the number of threads of the stage that are running a task.
+	 *
+	 * @return The described number of threads.
+	 */
+	public int getActiveThreadCount();
+
+	/**
+	 * Returns the number of tasks that are waiting for a thread of the stage.
+	 *
+	 * @return The described number of tasks.
+	 */
+	public int getQueuedTaskCount();
+
+	/**
+	 * Returns the maximum number of tasks that may wait for a thread of the
+	 * stage.
+	 *
+	 * @return The described number of tasks.
+	 */
+	public int getQueueCapacity();
+
+	/**
+	 * Returns the fraction of the capacity of the stage, threads and queue
+	 * included, that is being used. When it reaches 1, tasks are rejected.
+	 *
+	 * @return The described fraction, between 0 and 1.
+	 */
+	public double getSaturation();
+
+	/**
+	 * Returns the number of tasks that were rejected because the stage was
+	 * saturated.
+	 *
+	 * @return The described number of tasks.
+	 */
+	public long getRejectedTaskCount();
+
+	/**
+	 * Returns the number of tasks that the stage has run.
+	 *
+	 * @return The described number of tasks.
+	 */
+	public long getCompletedTaskCount();
+}
@@ -0,0 +1,119 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket rate limiter, that allows taking tokens at a sustained rate,
+ * with bursts of up to its capacity. Unlike blocking rate limiters, it tells
+ * how long to wait for the next token, so that callers can schedule their work
+ * for later instead of holding a thread.
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+public final class TokenBucket {
+	private final double tokensPerNanosecond;
+	private final double capacity;
+	private double tokens;
+	private long lastRefillTime;
+	/**
+	 * The value of {@link System#nanoTime()} until which no tokens may be taken,
+	 * no matter how many are available.
+	 */
+	private long pausedUntil;
+
+	/**
+	 * Creates a new token bucket, which is full.
+	 *
+	 * @param tokensPerSecond The sustained rate at which tokens may be taken.
+	 * @param capacity        The maximum number of tokens that may be taken in a
+	 *                        burst. It must be at least one.
+	 * @throws IllegalArgumentException If the rate is not positive, or the
+	 *                                  capacity is less than one.
+	 */
+	public TokenBucket(final double tokensPerSecond, final double capacity) {
+		if (!(tokensPerSecond > 0) || !(capacity >= 1)) {
+			throw new IllegalArgumentException("The rate must be positive, and the capacity at least one");
+		}
+
+		this.tokensPerNanosecond = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.capacity = capacity;
+		this.tokens = capacity;
+		this.lastRefillTime = System.nanoTime();
+		this.pausedUntil = lastRefillTime;
+	}
+
+	/**
+	 * Takes a token if one is available right now.
+	 *
+	 * @param now The current value of {@link System#nanoTime()}.
+	 * @return Zero if a token was taken. Otherwise, how long to wait until a token
+	 *         will be available, in nanoseconds.
+	 */
+	public synchronized long tryTake(final long now) {
+		refill(now);
+
+		if (now - pausedUntil < 0) {
+			return pausedUntil - now;
+		}
+
+		if (tokens >= 1) {
+			--tokens;
+			return 0;
+		}
+
+		return Math.max((long) Math.ceil((1 - tokens) / tokensPerNanosecond), 1);
+	}
+
+	/**
+	 * Gives back a token that was taken but not used.
+	 */
+	public synchronized void giveBack() {
+		tokens = Math.min(tokens + 1, capacity);
+	}
+
+	/**
+	 * Prevents tokens from being taken for the specified time, as when the rate
+	 * limited service asks to back off.
+	 *
+	 * @param now   The current value of {@link System#nanoTime()}.
+	 * @param nanos How long to prevent tokens from being taken, in nanoseconds.
+	 */
+	public synchronized void pause(final long now, final long nanos) {
+		if (now + nanos - pausedUntil > 0) {
+			pausedUntil = now + nanos;
+		}
+	}
+
+	/**
+	 * Returns how long it will take for this bucket to be full, if no tokens are
+	 * taken meanwhile.
+	 *
+	 * @param now The current value of {@link System#nanoTime()}.
+	 * @return The described time, in nanoseconds. It is zero if this bucket is
+	 *         full.
+	 */
+	public synchronized long nanosUntilFull(final long now) {
+		refill(now);
+
+		return Math.max(
+			(long) Math.ceil((capacity - tokens) / tokensPerNanosecond), Math.max(pausedUntil - now, 0)
+		);
+	}
+
+	/**
+	 * Adds the tokens accrued since the last refill.
+	 *
+	 * @param now The current value of {@link System#nanoTime()}.
+	 */
+	private void refill(final long now) {
+		final long elapsedNanos = now - lastRefillTime;
+
+		if (elapsedNanos > 0) {
+			tokens = Math.min(tokens + elapsedNanos * tokensPerNanosecond, capacity);
+			lastRefillTime = now;
+		}
+	}
+}
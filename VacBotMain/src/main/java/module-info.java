@@ -21,6 +21,7 @@ module es.uvigo.esei.sing.vacbot.main {
 
 	requires telegrambots;
 	requires telegrambots.meta;
+	requires com.fasterxml.jackson.databind;
 
 	requires jakarta.xml.bind;
 	requires java.ws.rs;
@@ -34,11 +35,21 @@ module es.uvigo.esei.sing.vacbot.main {
 	requires lombok;
 	requires java.xml;
 	requires java.sql;
+	requires java.management;
+	requires java.net.http;
+	requires jdk.httpserver;
+
+	// JMX requires management interfaces to be in an exported package
+	exports es.uvigo.esei.sing.vacbot.dispatchers;
+	exports es.uvigo.esei.sing.vacbot.responsegen;
+	exports es.uvigo.esei.sing.vacbot.util;
 
 	// JAXB requires deep reflection access
 	opens es.uvigo.esei.sing.vacbot.settings to jakarta.xml.bind;
 	// JCommander too
 	opens es.uvigo.esei.sing.vacbot to jcommander;
+	// Jackson too, to parse message entities
+	opens es.uvigo.esei.sing.vacbot.frontend.telegrambot to com.fasterxml.jackson.databind;
 	// Hibernate requires deep reflection access from an unnamed module
 	opens es.uvigo.esei.sing.vacbot.entity;
 }
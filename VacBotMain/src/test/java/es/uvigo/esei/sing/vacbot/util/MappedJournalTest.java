@@ -0,0 +1,118 @@
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package es.uvigo.esei.sing.vacbot.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a {@link MappedJournal} gives back the records it had when it is
+ * opened again, even if the last record was not completely written.
+ *
+ * @author Alejandro González García
+ */
+final class MappedJournalTest {
+	private static final int SEGMENT_SIZE = 4096;
+	/**
+	 * The size of the header of each record, as written by the journal.
+	 */
+	private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+	private static final Path FIRST_SEGMENT_FILE_NAME = Path.of(String.format("%020d.journal", 0));
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void reopenReadsUnhandledRecords() throws IOException, InterruptedException {
+		try (final MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE)) {
+			journal.append(bytes("first"));
+			journal.append(bytes("second"));
+			journal.append(bytes("third"));
+			journal.checkpoint(1);
+		}
+
+		try (final MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE)) {
+			assertEquals(1, journal.getCheckpoint());
+			assertRecord(journal.take(), 2, "second");
+			assertRecord(journal.take(), 3, "third");
+			assertEquals(4, journal.append(bytes("fourth")));
+		}
+	}
+
+	@Test
+	void reopenAfterTornRecordDropsIt() throws IOException, InterruptedException {
+		try (final MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE)) {
+			journal.append(bytes("first"));
+			journal.append(bytes("second"));
+		}
+
+		// The length was written, but the process stopped before the payload
+		// and its checksum got there
+		writeInt(directory.resolve(FIRST_SEGMENT_FILE_NAME), recordsSize("first", "second"), 32);
+
+		try (final MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE)) {
+			assertRecord(journal.take(), 1, "first");
+			assertRecord(journal.take(), 2, "second");
+
+			// The torn record is overwritten
+			assertEquals(3, journal.append(bytes("third")));
+			assertRecord(journal.take(), 3, "third");
+		}
+
+		try (final MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE)) {
+			assertRecord(journal.take(), 1, "first");
+			assertRecord(journal.take(), 2, "second");
+			assertRecord(journal.take(), 3, "third");
+		}
+	}
+
+	@Test
+	void reopenAfterRecordPastSegmentEndDropsIt() throws IOException, InterruptedException {
+		try (final MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE)) {
+			journal.append(bytes("first"));
+		}
+
+		writeInt(directory.resolve(FIRST_SEGMENT_FILE_NAME), recordsSize("first"), SEGMENT_SIZE);
+
+		try (final MappedJournal journal = new MappedJournal(directory, SEGMENT_SIZE)) {
+			assertRecord(journal.take(), 1, "first");
+			assertEquals(2, journal.append(bytes("second")));
+			assertRecord(journal.take(), 2, "second");
+		}
+	}
+
+	private static void assertRecord(final MappedJournal.Record record, final long sequence, final String payload) {
+		assertEquals(sequence, record.getSequence());
+		assertArrayEquals(bytes(payload), record.getPayload());
+	}
+
+	private static byte[] bytes(final String payload) {
+		return payload.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int recordsSize(final String... payloads) {
+		int size = 0;
+
+		for (final String payload : payloads) {
+			size += RECORD_HEADER_SIZE + bytes(payload).length;
+		}
+
+		return size;
+	}
+
+	private static void writeInt(final Path file, final int position, final int value) throws IOException {
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write((ByteBuffer) ByteBuffer.allocate(Integer.BYTES).putInt(value).flip(), position);
+		}
+	}
+}